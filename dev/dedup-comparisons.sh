@@ -0,0 +1,44 @@
+#! /usr/bin/env bash
+
+# Remove duplicate comparisons (same userId and cmpId) left by versions not backed by a unique index,
+# so the unique index can be created at startup. For every duplicated comparison, the document with
+# the highest version (the most recently upserted, on ties) is kept. Blobs referenced by removed
+# documents are released, and chunks not referenced by the kept document are removed. Run it before
+# starting the service, or while it's up and then restart it. Running it again is a no-op.
+mongo -u admin -p password --authenticationDatabase admin cmpdb --eval '
+  var removed = 0;
+  db.comparisons.aggregate([
+    {"$sort": {"version": -1, "_id": -1}},
+    {"$group": {"_id": {"userId": "$userId", "cmpId": "$cmpId"}, "ids": {"$push": "$_id"}, "count": {"$sum": 1}}},
+    {"$match": {"count": {"$gt": 1}}}
+  ], {"allowDiskUse": true}).forEach(function(group) {
+    var kept = db.comparisons.findOne({"_id": group.ids[0]});
+    group.ids.slice(1).forEach(function(id) {
+      var doc = db.comparisons.findOneAndDelete({"_id": id});
+      if (doc === null) {
+        return;
+      }
+      ["left", "right"].forEach(function(side) {
+        var blob = doc[side + "Blob"];
+        if (blob) {
+          db.sideBlobs.updateOne({"_id": blob}, {"$inc": {"refs": -1}});
+          db.sideBlobs.deleteOne({"_id": blob, "refs": {"$lte": 0}});
+        }
+        var chunks = doc[side + "Chunks"];
+        var keptChunks = kept[side + "Chunks"];
+        var shared = keptChunks && doc[side + "Digest"] === kept[side + "Digest"]
+            && (chunks.upload || null) === (keptChunks.upload || null);
+        if (chunks && !shared) {
+          db.sideChunks.deleteMany({
+            "userId": doc.userId,
+            "cmpId": doc.cmpId,
+            "side": side.toUpperCase(),
+            "digest": doc[side + "Digest"],
+            "upload": chunks.upload || null
+          });
+        }
+      });
+      removed++;
+    });
+  });
+  print(removed + " duplicate comparisons removed");'
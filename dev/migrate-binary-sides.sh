@@ -0,0 +1,19 @@
+#! /usr/bin/env bash
+
+# Convert comparison sides stored as base64 text into BSON binary. Documents are updated
+# only if the side didn't change since read, and versions are kept, so stored results stay
+# valid and it's safe to run this while the service is up. Running it again is a no-op.
+mongo -u admin -p password --authenticationDatabase admin cmpdb --eval '
+  ["left", "right"].forEach(function(side) {
+    var query = {};
+    query[side] = {"$type": "string"};
+    var migrated = 0;
+    db.comparisons.find(query).forEach(function(doc) {
+      var filter = {"_id": doc._id};
+      filter[side] = doc[side];
+      var update = {};
+      update[side] = BinData(0, doc[side]);
+      migrated += db.comparisons.updateOne(filter, {"$set": update}).modifiedCount;
+    });
+    print(side + ": " + migrated + " sides migrated");
+  })'
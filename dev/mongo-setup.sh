@@ -1,4 +1,16 @@
 #! /usr/bin/env bash
 
-mongo -u admin -p password --authenticationDatabase admin cmpdb \
-  --eval 'db.comparisons.createIndex({"userId": 1, "cmpId": 1, "_id": 1}, {"name": "byUserAndComparison"})'
+# The application creates these indexes at startup, creating them beforehand is optional.
+# Drops the non unique index created by older versions of this script, superseded by the unique one,
+# and the chunk index not including the upload, which would reject concurrent uploads of the same side.
+mongo -u admin -p password --authenticationDatabase admin cmpdb --eval '
+  if (db.comparisons.getIndexes().some(function(index) { return index.name === "byUserAndComparison"; })) {
+    db.comparisons.dropIndex("byUserAndComparison");
+  }
+  db.comparisons.createIndex({"userId": 1, "cmpId": 1}, {"name": "uniqueUserAndComparison", "unique": true});
+  db.sideChunks.createIndex(
+    {"userId": 1, "cmpId": 1, "side": 1, "digest": 1, "upload": 1, "n": 1},
+    {"name": "uniqueUploadChunk", "unique": true});
+  if (db.sideChunks.getIndexes().some(function(index) { return index.name === "uniqueChunk"; })) {
+    db.sideChunks.dropIndex("uniqueChunk");
+  }'
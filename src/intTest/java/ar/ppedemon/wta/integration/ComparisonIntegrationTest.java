@@ -22,11 +22,19 @@ import io.vertx.reactivex.ext.mongo.MongoClient;
 import org.junit.jupiter.api.*;
 import org.junit.jupiter.api.extension.ExtendWith;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.stream.Collectors;
 
 import static io.restassured.RestAssured.given;
 import static org.hamcrest.CoreMatchers.*;
+import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.hasKey;
 import static org.hamcrest.Matchers.hasSize;
 
@@ -40,6 +48,9 @@ class ComparisonIntegrationTest {
     private static Base64Encoder base64Encoder;
     private static ResourceReader resourceReader;
 
+    private JsonObject config;
+    private JsonObject mongoConfig;
+
     @BeforeAll
     static void init(Vertx vertx) {
         jwtUtil = new JWTUtil(vertx, "auth/pubkey", "auth/privkey");
@@ -57,15 +68,17 @@ class ComparisonIntegrationTest {
         RestAssured.basePath = "/v1";
         RestAssured.urlEncodingEnabled = false;
 
-        JsonObject config = new JsonObject()
+        config = new JsonObject()
                 .put("port", restPort)
                 .put("auth", new JsonObject().put("pubkey", jwtUtil.getPublicKey()))
                 .put("mongo", new JsonObject().put("host", "127.0.0.1").put("port", mongoPort))
                 .put("guice_binder", Binder.class.getCanonicalName());
+        mongoConfig = config.getJsonObject("mongo");
 
-        RxHelper.deployVerticle(vertx, new MainVerticle(), new DeploymentOptions().setConfig(config))
+        // Reset before deploying, so indexes created at startup are kept
+        resetDb(vertx, config.getJsonObject("mongo"))
+                .andThen(RxHelper.deployVerticle(vertx, new MainVerticle(), new DeploymentOptions().setConfig(config)))
                 .ignoreElement()
-                .andThen(resetDb(vertx, config.getJsonObject("mongo")))
                 .subscribe(context::completeNow, context::failNow);
     }
 
@@ -301,6 +314,42 @@ class ComparisonIntegrationTest {
         context.completeNow();
     }
 
+    @Test
+    @DisplayName("must store sides as binary data")
+    void upsert_always_mustStoreBinarySides(Vertx vertx, VertxTestContext context) {
+        insertSide("1", "left", "Left side");
+
+        JsonObject stored = MongoClient.createNonShared(vertx, mongoConfig)
+                .rxFindOne("comparisons", new JsonObject().put("cmpId", "1"), new JsonObject())
+                .blockingGet();
+
+        context.verify(() -> {
+            assertThat(stored.getJsonObject("left").getBinary("$binary"), equalTo("Left side".getBytes()));
+            context.completeNow();
+        });
+    }
+
+    @Test
+    @DisplayName("must compare sides stored as base64 text by older versions")
+    void compare_whenTextSides_mustReturnResult(Vertx vertx, VertxTestContext context) {
+        JsonObject legacy = new JsonObject()
+                .put("cmpId", "1")
+                .put("userId", USER_ID)
+                .put("left", base64Encoder.encode("Left side"))
+                .put("right", base64Encoder.encode("Left sida"))
+                .put("version", 1L);
+        MongoClient.createNonShared(vertx, mongoConfig).rxInsert("comparisons", legacy).blockingGet();
+
+        compare("1").then()
+                .log().ifValidationFails()
+        .and().assertThat()
+                .statusCode(200)
+                .body("status", equalTo(ComparisonResult.Status.EQUAL_LENGTH.toString()))
+                .body("differences", hasSize(1));
+
+        context.completeNow();
+    }
+
     @Test
     @DisplayName("must return status of existing comparison")
     void getStatus_whenExistingComparison_mustReturnStatus(VertxTestContext context) {
@@ -314,6 +363,23 @@ class ComparisonIntegrationTest {
         context.completeNow();
     }
 
+    @Test
+    @DisplayName("must return status of comparisons stored without side digests")
+    void getStatus_whenNoDigests_mustReturnStatus(Vertx vertx, VertxTestContext context) {
+        JsonObject legacy = new JsonObject()
+                .put("cmpId", "1")
+                .put("userId", USER_ID)
+                .put("left", base64Encoder.encode("Left side"))
+                .put("version", 1L);
+        MongoClient.createNonShared(vertx, mongoConfig).rxInsert("comparisons", legacy).blockingGet();
+
+        get("1").then().log().ifValidationFails().and().assertThat()
+                .statusCode(200)
+                .body("lhsReady", equalTo(true), "rhsReady", equalTo(false));
+
+        context.completeNow();
+    }
+
     @Test
     @DisplayName("deleting existing comparison must remove it")
     void delete_existingComparison_mustRemove(VertxTestContext context) {
@@ -336,6 +402,176 @@ class ComparisonIntegrationTest {
         context.completeNow();
     }
 
+    @Test
+    @DisplayName("must store deduplicated sides once, until no comparison uses them")
+    void upsert_whenDeduplicated_mustStoreSidesOnce(Vertx vertx, VertxTestContext context) {
+        redeploy(vertx, new JsonObject().put("deduplicated", true));
+        MongoClient client = MongoClient.createNonShared(vertx, mongoConfig);
+
+        insertSide("1", "left", "Baseline");
+        insertSide("1", "right", "Baselina");
+        insertSide("2", "left", "Baseline");
+        insertSide("2", "right", "Baseline");
+
+        compare("1").then().assertThat()
+                .statusCode(200)
+                .body("status", equalTo(ComparisonResult.Status.EQUAL_LENGTH.toString()))
+                .body("differences", hasSize(1));
+        compare("2").then().assertThat()
+                .statusCode(200)
+                .body("status", equalTo(ComparisonResult.Status.EQUAL.toString()));
+
+        List<Long> refs = client.rxFind("sideBlobs", new JsonObject()).blockingGet().stream()
+                .map(blob -> blob.getLong("refs"))
+                .sorted()
+                .collect(Collectors.toList());
+        context.verify(() -> assertThat(refs, equalTo(Arrays.asList(1L, 3L))));
+
+        insertSide("1", "right", "Baseline");
+        delete("2");
+        List<Long> remaining = client.rxFind("sideBlobs", new JsonObject()).blockingGet().stream()
+                .map(blob -> blob.getLong("refs"))
+                .collect(Collectors.toList());
+        context.verify(() -> assertThat(remaining, equalTo(Collections.singletonList(2L))));
+
+        delete("1");
+        long count = client.rxCount("sideBlobs", new JsonObject()).blockingGet();
+        context.verify(() -> {
+            assertThat(count, equalTo(0L));
+            context.completeNow();
+        });
+    }
+
+    @Test
+    @DisplayName("overwriting a deduplicated side after disabling deduplication must release its blob")
+    void upsert_whenDeduplicationDisabled_mustReleaseReplacedBlobs(Vertx vertx, VertxTestContext context) {
+        redeploy(vertx, new JsonObject().put("deduplicated", true));
+        MongoClient client = MongoClient.createNonShared(vertx, mongoConfig);
+
+        insertSide("1", "left", "Baseline");
+        insertSide("2", "left", "Baseline");
+        long refs = client.rxFindOne("sideBlobs", new JsonObject(), new JsonObject()).blockingGet().getLong("refs");
+        context.verify(() -> assertThat(refs, equalTo(2L)));
+
+        redeploy(vertx, new JsonObject().put("deduplicated", false).put("batchSize", 8));
+        insertSide("1", "left", "Payload");
+        long remaining = client.rxFindOne("sideBlobs", new JsonObject(), new JsonObject())
+                .blockingGet()
+                .getLong("refs");
+        context.verify(() -> assertThat(remaining, equalTo(1L)));
+
+        insertSide("2", "left", "Payload");
+        long count = client.rxCount("sideBlobs", new JsonObject()).blockingGet();
+        context.verify(() -> {
+            assertThat(count, equalTo(0L));
+            context.completeNow();
+        });
+    }
+
+    @Test
+    @DisplayName("batched upserts must report their own outcome and keep versions consistent")
+    void upsert_whenBatched_mustReportOwnOutcome(Vertx vertx, VertxTestContext context) throws Exception {
+        redeploy(vertx, new JsonObject().put("batchSize", 8).put("batchWindow", 20).put("blobs", false));
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Future<Integer>> statuses = new ArrayList<>();
+        for (int i = 0; i < 24; i++) {
+            String id = String.valueOf(i % 4);
+            String data = "Side " + i;
+            statuses.add(executor.submit(() -> insertSide(id, "left", data).statusCode()));
+        }
+        List<Integer> codes = new ArrayList<>();
+        for (Future<Integer> status : statuses) {
+            codes.add(status.get());
+        }
+        executor.shutdown();
+
+        context.verify(() -> {
+            assertThat(codes.stream().filter(code -> code == 201).count(), equalTo(4L));
+            assertThat(codes.stream().filter(code -> code == 200).count(), equalTo(20L));
+        });
+        for (int i = 0; i < 4; i++) {
+            get(String.valueOf(i)).then().assertThat().statusCode(200).body("version", equalTo(6));
+        }
+
+        context.completeNow();
+    }
+
+    @Test
+    @DisplayName("concurrent uploads of the same chunked side must never remove each other's chunks")
+    void upsert_whenConcurrentChunkedUploads_mustKeepReferencedChunks(Vertx vertx, VertxTestContext context)
+            throws Exception {
+        redeploy(vertx, new JsonObject().put("chunked", true).put("chunkThreshold", 16).put("chunkSize", 8));
+        MongoClient client = MongoClient.createNonShared(vertx, mongoConfig);
+
+        String baseline = "A baseline long enough for being chunked";
+        String payload = "A payload long enough for being chunked!";
+        insertSide("1", "right", baseline);
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Future<Integer>> statuses = new ArrayList<>();
+        for (int i = 0; i < 32; i++) {
+            String data = i % 2 == 0 ? baseline : payload;
+            statuses.add(executor.submit(() -> insertSide("1", "left", data).statusCode()));
+        }
+        for (Future<Integer> status : statuses) {
+            status.get();
+        }
+        executor.shutdown();
+
+        compare("1").then().assertThat().statusCode(200);
+        long chunks = client.rxCount("sideChunks", new JsonObject()).blockingGet();
+        context.verify(() -> {
+            assertThat(chunks, equalTo(10L));
+            context.completeNow();
+        });
+    }
+
+    @Test
+    @DisplayName("must start and keep serving despite duplicate comparisons")
+    void ready_whenDuplicateComparisons_mustReturn200(Vertx vertx, VertxTestContext context) {
+        MongoClient client = MongoClient.createNonShared(vertx, mongoConfig);
+        client.rxDropIndex("comparisons", "uniqueUserAndComparison").blockingAwait();
+        for (long version = 1; version <= 2; version++) {
+            client.rxInsert("comparisons", new JsonObject()
+                    .put("userId", USER_ID)
+                    .put("cmpId", "1")
+                    .put("version", version)
+                    .put("left", base64Encoder.encode("Duplicate"))).blockingGet();
+        }
+
+        redeploy(vertx, new JsonObject());
+        given().basePath("").get("/ready").then().assertThat().statusCode(200).body("ready", equalTo(true));
+        get("1").then().assertThat().statusCode(200);
+
+        context.completeNow();
+    }
+
+    @Test
+    @DisplayName("must be ready once indexes are created at startup")
+    void ready_afterStartup_mustReturn200(VertxTestContext context) {
+        given()
+                .basePath("")
+        .when()
+                .get("/ready")
+        .then()
+                .log().ifValidationFails()
+        .and().assertThat()
+                .statusCode(200)
+                .body("ready", equalTo(true));
+
+        context.completeNow();
+    }
+
+    private void redeploy(Vertx vertx, JsonObject storageConfig) {
+        Flowable.fromIterable(vertx.deploymentIDs()).flatMapCompletable(vertx::rxUndeploy)
+                .andThen(RxHelper.deployVerticle(
+                        vertx,
+                        new MainVerticle(),
+                        new DeploymentOptions().setConfig(config.copy().put("storage", storageConfig))))
+                .blockingGet();
+    }
+
     private Response insertSide(String id, String side, String data) {
         return given()
                 .headers("Authorization", jwtUtil.token(USER_ID))
@@ -0,0 +1,86 @@
+package ar.ppedemon.wta;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+/**
+ * Deterministic payload generation for benchmarks.
+ *
+ * @author ppedemon
+ */
+public final class Payloads {
+
+    private static final long SEED = 0x5eed;
+    private static final String ALPHABET = "abcdefghijklmnopqrstuvwxyz      \n";
+
+    private Payloads() {}
+
+    /**
+     * Generate random binary data.
+     *
+     * @param size  data size in bytes
+     * @return  random data
+     */
+    public static byte[] binary(int size) {
+        byte[] data = new byte[size];
+        new Random(SEED).nextBytes(data);
+        return data;
+    }
+
+    /**
+     * Generate random ASCII text made of lowercase words separated by spaces and newlines.
+     *
+     * @param size  text size in bytes
+     * @return  UTF-8 encoded text
+     */
+    public static byte[] text(int size) {
+        Random random = new Random(SEED);
+        StringBuilder text = new StringBuilder(size);
+        for (int i = 0; i < size; i++) {
+            text.append(ALPHABET.charAt(random.nextInt(ALPHABET.length())));
+        }
+        return text.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Generate log-like ASCII text: lines sharing a few templates, with varying fields.
+     * Unlike random text, it compresses about as well as typical text payloads.
+     *
+     * @param size  text size in bytes
+     * @return  UTF-8 encoded text
+     */
+    public static byte[] records(int size) {
+        String[] levels = {"INFO", "INFO", "INFO", "WARN", "DEBUG", "ERROR"};
+        String[] events = {"request served", "cache miss", "comparison stored", "token refreshed"};
+
+        Random random = new Random(SEED);
+        StringBuilder text = new StringBuilder(size + 128);
+        while (text.length() < size) {
+            text.append(String.format("2019-07-08T%02d:%02d:%02d.%03dZ %-5s [worker-%d] %s id=%d elapsed=%dms%n",
+                    random.nextInt(24), random.nextInt(60), random.nextInt(60), random.nextInt(1000),
+                    levels[random.nextInt(levels.length)], random.nextInt(8),
+                    events[random.nextInt(events.length)], random.nextInt(100000), random.nextInt(500)));
+        }
+        text.setLength(size);
+        return text.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Copy data, changing the given fraction of its bytes at random positions.
+     * Changed bytes remain in the ASCII lowercase range, so text stays text.
+     *
+     * @param data     data to copy
+     * @param density  fraction of bytes to change, in {@code [0, 1]}
+     * @return  changed copy
+     */
+    public static byte[] mutate(byte[] data, double density) {
+        Random random = new Random(SEED + 1);
+        byte[] copy = data.clone();
+        int changes = (int)(data.length * density);
+        for (int i = 0; i < changes; i++) {
+            int pos = random.nextInt(copy.length);
+            copy[pos] = (byte)(copy[pos] == 'x' ? 'y' : 'x');
+        }
+        return copy;
+    }
+}
@@ -0,0 +1,49 @@
+package ar.ppedemon.wta.api;
+
+import ar.ppedemon.wta.Payloads;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Base64;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark validation of base64 payloads, across payload sizes (1 KB to 50 MB).
+ *
+ * @author ppedemon
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class ValidationsBenchmark {
+
+    @Param({"1024", "65536", "1048576", "52428800"})
+    private int size;
+
+    private Validations validations;
+    private String payload;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        validations = new Validations();
+        payload = Base64.getEncoder().encodeToString(Payloads.binary(size));
+    }
+
+    @Benchmark
+    public void validBase64Text() {
+        validations.validBase64Text(payload, Integer.MAX_VALUE);
+    }
+}
@@ -0,0 +1,63 @@
+package ar.ppedemon.wta.comparator;
+
+import ar.ppedemon.wta.Payloads;
+import ar.ppedemon.wta.model.Comparison;
+import ar.ppedemon.wta.model.ComparisonResult;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Base64;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark {@link ByteArrayComparator} for sides of equal length, across payload
+ * sizes (1 KB to 50 MB) and densities of differing bytes.
+ *
+ * @author ppedemon
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class ByteArrayComparatorBenchmark {
+
+    @Param({"1024", "65536", "1048576", "52428800"})
+    private int size;
+
+    @Param({"0", "0.001", "0.1"})
+    private double density;
+
+    @Param({"BYTE", "WORD"})
+    private ScanMode scanMode;
+
+    private ByteArrayComparator comparator;
+    private Comparison comparison;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        byte[] lhs = Payloads.binary(size);
+        byte[] rhs = Payloads.mutate(lhs, density);
+
+        comparator = new ByteArrayComparator(scanMode);
+        comparison = new Comparison("1", "1")
+                .setLeft(Base64.getEncoder().encodeToString(lhs))
+                .setRight(Base64.getEncoder().encodeToString(rhs));
+    }
+
+    @Benchmark
+    public ComparisonResult compare() {
+        return comparator.compare(comparison);
+    }
+}
@@ -0,0 +1,72 @@
+package ar.ppedemon.wta.comparator;
+
+import org.apache.commons.codec.Charsets;
+
+import java.nio.charset.Charset;
+import java.util.Base64;
+
+/**
+ * String comparator as it was before comparing by code point: sides are decoded to a
+ * String and compared by UTF-16 char. Kept as the baseline for {@link StringComparatorBenchmark}.
+ *
+ * @author ppedemon
+ */
+public class CharStringComparator extends AbstractComparator<char[]> {
+
+    private final Charset charset;
+
+    public CharStringComparator() {
+        this(Charsets.UTF_8);
+    }
+
+    public CharStringComparator(Charset charset) {
+        this.charset = charset;
+    }
+
+    @Override
+    public boolean byteOriented() {
+        return false;
+    }
+
+    @Override
+    char[] decode(String base64Side) {
+        return new String(Base64.getDecoder().decode(base64Side), charset).toCharArray();
+    }
+
+    @Override
+    int length(char[] side) {
+        return side.length;
+    }
+
+    @Override
+    int mismatch(char[] lhs, char[] rhs, int from, int to) {
+        int i = from;
+        while (i < to && lhs[i] == rhs[i]) {
+            i++;
+        }
+        return i;
+    }
+
+    @Override
+    int match(char[] lhs, char[] rhs, int from, int to) {
+        int i = from;
+        while (i < to && lhs[i] != rhs[i]) {
+            i++;
+        }
+        return i;
+    }
+
+    @Override
+    boolean equal(char[] lhs, int i, char[] rhs, int j) {
+        return lhs[i] == rhs[j];
+    }
+
+    @Override
+    long differingBits(char[] lhs, char[] rhs, int from, int to) {
+        long bits = 0;
+        for (int i = from; i < to; i++) {
+            bits += Integer.bitCount(lhs[i] ^ rhs[i]);
+        }
+        return bits;
+    }
+}
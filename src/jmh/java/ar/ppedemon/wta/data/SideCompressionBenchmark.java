@@ -0,0 +1,116 @@
+package ar.ppedemon.wta.data;
+
+import ar.ppedemon.wta.Payloads;
+import ar.ppedemon.wta.comparator.GranularityComparator;
+import ar.ppedemon.wta.comparator.StoredSideComparator;
+import ar.ppedemon.wta.comparator.StreamingComparator;
+import ar.ppedemon.wta.model.BlockFingerprints;
+import ar.ppedemon.wta.model.Comparison;
+import ar.ppedemon.wta.model.ComparisonOptions;
+import ar.ppedemon.wta.model.ComparisonResult;
+import ar.ppedemon.wta.model.SideCodec;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.IterationParams;
+import org.openjdk.jmh.runner.IterationType;
+
+import java.util.Base64;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark the CPU cost of storing sides encoded by a {@link SideCodec}, against what
+ * it saves. Encoding is what side upserts do in a worker thread, and comparing streams
+ * both encoded sides through a {@link StoredSideComparator}, decoding them on the fly,
+ * as done in the comparison worker pool. Stored side sizes, that is, what Mongo stores
+ * and caches and what goes over the wire, and compression ratios are reported as
+ * secondary results of encoding, so they are recorded along with the timings. Since
+ * JMH only reports those in throughput and average time modes, encoding is measured
+ * in these modes.
+ *
+ * @author ppedemon
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class SideCompressionBenchmark {
+
+    @Param({"65536", "1048576", "5242880"})
+    private int size;
+
+    @Param({"binary", "text", "records"})
+    private String payload;
+
+    @Param({"NONE", "DEFLATE"})
+    private SideCodec codec;
+
+    @Param({"1", "6"})
+    private int level;
+
+    private byte[] lhs;
+    private byte[] stored;
+    private StoredSideComparator comparator;
+    private Comparison comparison;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        lhs = "binary".equals(payload)
+                ? Payloads.binary(size)
+                : "text".equals(payload) ? Payloads.text(size) : Payloads.records(size);
+        byte[] rhs = Payloads.mutate(lhs, 0.001);
+
+        stored = codec.encode(lhs, level);
+        comparator = new StoredSideComparator(
+                new GranularityComparator(new StreamingComparator(), 0), null, new StreamingComparator());
+        comparison = new Comparison("1", "1")
+                .setLeft(Base64.getEncoder().encodeToString(stored))
+                .setRight(Base64.getEncoder().encodeToString(codec.encode(rhs, level)))
+                .setLeftCodec(codec)
+                .setRightCodec(codec)
+                .setLeftBlocks(BlockFingerprints.of(lhs))
+                .setRightBlocks(BlockFingerprints.of(rhs));
+    }
+
+    @Benchmark
+    @BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+    public byte[] encode(Storage storage) {
+        return codec.encode(lhs, level);
+    }
+
+    @Benchmark
+    public ComparisonResult compare() {
+        return comparator.compare(comparison, ComparisonOptions.full());
+    }
+
+    /**
+     * Stored side size and compression ratio, reported as secondary results. Event counters
+     * are summed over measurement iterations, so each iteration reports its share.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Storage {
+
+        public double storedBytes;
+        public double compressionRatio;
+
+        @Setup(Level.Iteration)
+        public void setup(SideCompressionBenchmark benchmark, IterationParams iteration) {
+            double share = iteration.getType() == IterationType.MEASUREMENT ? 1.0 / iteration.getCount() : 0;
+            storedBytes = share * benchmark.stored.length;
+            compressionRatio = share * benchmark.size / benchmark.stored.length;
+        }
+    }
+}
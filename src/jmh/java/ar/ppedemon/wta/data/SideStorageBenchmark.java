@@ -0,0 +1,128 @@
+package ar.ppedemon.wta.data;
+
+import ar.ppedemon.wta.Payloads;
+import ar.ppedemon.wta.model.Comparison;
+import io.vertx.core.json.Json;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.mongo.impl.codec.json.JsonObjectCodec;
+import org.bson.BsonBinaryReader;
+import org.bson.BsonBinaryWriter;
+import org.bson.codecs.DecoderContext;
+import org.bson.codecs.EncoderContext;
+import org.bson.io.BasicOutputBuffer;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.infra.IterationParams;
+import org.openjdk.jmh.runner.IterationType;
+
+import java.nio.ByteBuffer;
+import java.util.Base64;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark the cost of storing and reading comparison sides as base64 text or as BSON
+ * binary. Comparison documents are encoded and decoded with the Vert.x Mongo codec, as
+ * done when talking to Mongo (server round trips aren't included). Reading also maps
+ * documents to {@link Comparison} instances and decodes both sides, as done before
+ * comparing them. Encoded document sizes, that is, what Mongo stores and caches and
+ * what goes over the wire, are reported as a secondary result of writing, so they are
+ * recorded along with the timings. Since JMH only reports those in throughput and
+ * average time modes, writing is measured in these modes.
+ *
+ * Reading binary sides is expected to be slower, since the codec base64 encodes them,
+ * while text sides just need their strings built. The difference is what storing sides
+ * as binary costs on every read.
+ *
+ * @author ppedemon
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class SideStorageBenchmark {
+
+    @Param({"1024", "65536", "1048576", "5242880"})
+    private int size;
+
+    @Param({"text", "binary"})
+    private String storage;
+
+    private final JsonObjectCodec codec = new JsonObjectCodec(new JsonObject());
+
+    private JsonObject document;
+    private byte[] encoded;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        byte[] lhs = Payloads.binary(size);
+        byte[] rhs = Payloads.mutate(lhs, 0.01);
+
+        document = new JsonObject()
+                .put("cmpId", "1")
+                .put("userId", "1")
+                .put("left", side(lhs))
+                .put("right", side(rhs))
+                .put("version", 1L);
+        encoded = encode();
+    }
+
+    private Object side(byte[] data) {
+        return "binary".equals(storage)
+                ? new JsonObject().put("$binary", data)
+                : Base64.getEncoder().encodeToString(data);
+    }
+
+    @Benchmark
+    @BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+    public byte[] write(DocumentSize documentSize) {
+        return encode();
+    }
+
+    private byte[] encode() {
+        BasicOutputBuffer buffer = new BasicOutputBuffer();
+        codec.encode(new BsonBinaryWriter(buffer), document, EncoderContext.builder().build());
+        return buffer.toByteArray();
+    }
+
+    @Benchmark
+    public void read(Blackhole blackhole) {
+        JsonObject json = codec.decode(new BsonBinaryReader(ByteBuffer.wrap(encoded)), DecoderContext.builder().build());
+        MongoComparisonDao.fromBinary(json, "left");
+        MongoComparisonDao.fromBinary(json, "right");
+
+        Comparison comparison = Json.mapper.convertValue(json, Comparison.class);
+        blackhole.consume(Base64.getDecoder().decode(comparison.getLeft()));
+        blackhole.consume(Base64.getDecoder().decode(comparison.getRight()));
+    }
+
+    /**
+     * Encoded document size, reported as a secondary result. Event counters are summed over
+     * measurement iterations, so each iteration reports its share.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class DocumentSize {
+
+        public double bytesPerDocument;
+
+        @Setup(Level.Iteration)
+        public void setup(SideStorageBenchmark benchmark, IterationParams iteration) {
+            double share = iteration.getType() == IterationType.MEASUREMENT ? 1.0 / iteration.getCount() : 0;
+            bytesPerDocument = share * benchmark.encoded.length;
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package ar.ppedemon.wta.model;
+
+import io.vertx.core.json.Json;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark Jackson encoding of {@link ComparisonResult} instances, as done when
+ * responding to comparison requests and storing results. Results have as many
+ * single byte spans as expected when comparing sides of the given size with the
+ * given density of differing bytes.
+ *
+ * @author ppedemon
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class ComparisonResultEncodingBenchmark {
+
+    @Param({"1024", "65536", "1048576", "52428800"})
+    private int size;
+
+    @Param({"0.001", "0.01", "0.1"})
+    private double density;
+
+    private ComparisonResult result;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        int spans = (int)(size * density);
+        int gap = spans == 0 ? size : size / spans;
+
+        List<Span> differences = new ArrayList<>(spans);
+        for (int i = 0; i < spans; i++) {
+            differences.add(new Span(i * gap, 1));
+        }
+        result = new ComparisonResult(ComparisonResult.Status.EQUAL_LENGTH, differences);
+    }
+
+    @Benchmark
+    public String encode() {
+        return Json.encode(result);
+    }
+
+    @Benchmark
+    public String encodePrettily() {
+        return Json.encodePrettily(result);
+    }
+}
@@ -1,36 +1,243 @@
 package ar.ppedemon.wta;
 
 import ar.ppedemon.wta.comparator.ByteArrayComparator;
+import ar.ppedemon.wta.comparator.ChunkedByteArrayComparator;
 import ar.ppedemon.wta.comparator.Comparator;
+import ar.ppedemon.wta.comparator.GranularityComparator;
+import ar.ppedemon.wta.comparator.IncrementalComparator;
+import ar.ppedemon.wta.comparator.MappedComparator;
+import ar.ppedemon.wta.comparator.ScanMode;
+import ar.ppedemon.wta.comparator.StoredSideComparator;
+import ar.ppedemon.wta.comparator.StreamingComparator;
 import ar.ppedemon.wta.data.ComparisonDao;
+import ar.ppedemon.wta.data.InMemoryComparisonDao;
+import ar.ppedemon.wta.data.LogComparisonDao;
 import ar.ppedemon.wta.data.MongoComparisonDao;
+import ar.ppedemon.wta.data.SideBlobStore;
+import ar.ppedemon.wta.data.SideChunkStore;
+import ar.ppedemon.wta.data.SideSpool;
+import ar.ppedemon.wta.data.SpoolingComparisonDao;
+import ar.ppedemon.wta.model.SideCodec;
 import ar.ppedemon.wta.service.ComparisonService;
 import ar.ppedemon.wta.service.PersistentComparisonService;
+import ar.ppedemon.wta.service.ResultCache;
 import com.google.inject.AbstractModule;
+import com.google.inject.Provider;
 import com.google.inject.Provides;
-import com.google.inject.name.Names;
+import com.google.inject.Singleton;
+import com.google.inject.name.Named;
 import io.vertx.core.json.JsonObject;
 import io.vertx.reactivex.core.Vertx;
 import io.vertx.reactivex.ext.mongo.MongoClient;
 
+import java.nio.file.Paths;
+import java.util.concurrent.ForkJoinPool;
+import java.util.zip.Deflater;
+
 /**
  * Dependency injection binders.
  */
 public class Binder extends AbstractModule {
 
     @Provides
-    public ComparisonService provideComparisonService(ComparisonDao comparisonDao, Comparator comparator, Vertx vertx) {
-        return new PersistentComparisonService(comparisonDao, comparator, vertx);
+    public ComparisonService provideComparisonService(
+            ComparisonDao comparisonDao,
+            Comparator comparator,
+            Vertx vertx,
+            ResultCache resultCache) {
+        return new PersistentComparisonService(comparisonDao, comparator, vertx, resultCache);
     }
 
+    /**
+     * Result cache, shared by all verticle instances so every change invalidates cached results.
+     * Disabled by default for Mongo storage, since other nodes might change comparisons behind
+     * the cache's back.
+     */
     @Provides
-    public ComparisonDao provideComparisonDao(MongoClient mongoClient) {
-        return new MongoComparisonDao(mongoClient);
+    @Singleton
+    public ResultCache provideResultCache(Vertx vertx) {
+        JsonObject storageConfig = storageConfig(vertx);
+        return new ResultCache(storageConfig.getLong("resultCacheSize", mongo(storageConfig) ? 0L : 64L << 20));
     }
 
     @Provides
-    public Comparator provideComparator() {
-        return new ByteArrayComparator();
+    public ComparisonDao provideComparisonDao(
+            Provider<MongoComparisonDao> mongoComparisonDao,
+            Provider<InMemoryComparisonDao> inMemoryComparisonDao,
+            Provider<LogComparisonDao> logComparisonDao,
+            SideSpool sideSpool,
+            ResultCache resultCache,
+            Vertx vertx) {
+
+        // Providers, so no Mongo client is created unless storing comparisons in Mongo
+        boolean mapped = mapped(comparatorConfig(vertx));
+        SideSpool spool = mapped ? sideSpool : null;
+        ComparisonDao comparisonDao;
+        JsonObject storageConfig = storageConfig(vertx);
+        switch (storageConfig.getString("type", "mongo")) {
+            case "mongo":
+                comparisonDao = mongoComparisonDao.get().spooled(spool);
+                break;
+            case "memory":
+                // Evicted comparisons are gone, so must be their cached results
+                comparisonDao = inMemoryComparisonDao.get().spooled(spool).evicted(resultCache::invalidate);
+                break;
+            case "log":
+                comparisonDao = logComparisonDao.get().spooled(spool);
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown storage type: " + storageConfig.getString("type"));
+        }
+
+        return mapped ? new SpoolingComparisonDao(comparisonDao, sideSpool, vertx) : comparisonDao;
+    }
+
+    @Provides
+    public MongoComparisonDao provideMongoComparisonDao(
+            MongoClient mongoClient,
+            SideChunkStore sideChunkStore,
+            SideBlobStore sideBlobStore,
+            Vertx vertx) {
+
+        JsonObject storageConfig = storageConfig(vertx);
+        MongoComparisonDao comparisonDao = chunked(storageConfig)
+                ? new MongoComparisonDao(
+                        mongoClient, vertx, sideChunkStore, storageConfig.getInteger("chunkThreshold", 1 << 22))
+                : new MongoComparisonDao(mongoClient, vertx);
+        comparisonDao.encoded(
+                SideCodec.valueOf(storageConfig.getString("compression", SideCodec.NONE.name())),
+                storageConfig.getInteger("compressionLevel", Deflater.BEST_SPEED));
+        // Blobs might be left from a deduplicated period, so keep the store unless told there are none
+        if (storageConfig.getBoolean("blobs", true)) {
+            comparisonDao.blobs(sideBlobStore, storageConfig.getBoolean("deduplicated", false));
+        }
+
+        int batchSize = storageConfig.getInteger("batchSize", 1);
+        if (batchSize > 1) {
+            comparisonDao.batched(vertx, batchSize, storageConfig.getLong("batchWindow", 2L));
+        }
+        return comparisonDao;
+    }
+
+    /**
+     * In memory DAO, shared by all verticle instances so they see the same comparisons.
+     */
+    @Provides
+    @Singleton
+    public InMemoryComparisonDao provideInMemoryComparisonDao(Vertx vertx) {
+        return new InMemoryComparisonDao(vertx, storageConfig(vertx).getLong("maxMemorySize", 256L << 20));
+    }
+
+    /**
+     * Log structured DAO, shared by all verticle instances since there must be one per log directory.
+     */
+    @Provides
+    @Singleton
+    public LogComparisonDao provideLogComparisonDao(Vertx vertx) {
+        JsonObject storageConfig = storageConfig(vertx);
+        return new LogComparisonDao(
+                vertx,
+                Paths.get(storageConfig.getString("directory", "data/comparisons")),
+                storageConfig.getLong("segmentSize", 1L << 26),
+                storageConfig.getLong("compactionInterval", 60000L),
+                storageConfig.getDouble("compactionRatio", 0.5));
+    }
+
+    @Provides
+    public Comparator provideComparator(
+            Vertx vertx,
+            @Named("comparisonPool") ForkJoinPool comparisonPool,
+            SideSpool sideSpool,
+            Provider<SideChunkStore> sideChunkStore) {
+
+        JsonObject config = comparatorConfig(vertx);
+        Comparator comparator = baseComparator(config, comparisonPool, sideSpool);
+        if (config.getBoolean("incremental", true) && comparator.byteOriented()) {
+            comparator = new IncrementalComparator(comparator);
+        }
+        comparator = new GranularityComparator(comparator, config.getInteger("maxLineEditDistance", 10000));
+
+        // Sides might be chunked or encoded even if storage config changed since they were stored
+        SideChunkStore chunkStore = mongo(storageConfig(vertx)) ? sideChunkStore.get() : null;
+        return new StoredSideComparator(comparator, chunkStore, sideSpool, streamingComparator(config));
+    }
+
+    private Comparator baseComparator(JsonObject config, ForkJoinPool comparisonPool, SideSpool sideSpool) {
+        ScanMode scanMode = ScanMode.valueOf(config.getString("scanMode", ScanMode.WORD.name()));
+        boolean bitCounts = config.getBoolean("bitCounts", false);
+
+        switch (config.getString("type", "bytes")) {
+            case "bytes":
+                return new ByteArrayComparator(scanMode)
+                        .parallel(comparisonPool, config.getInteger("parallelThreshold", 1 << 20))
+                        .maxEditDistance(config.getInteger("maxEditDistance", 1000))
+                        .bitCounts(bitCounts);
+            case "chunked":
+                return new ChunkedByteArrayComparator(scanMode, config.getInteger("averageChunkSize", 1 << 11))
+                        .parallel(comparisonPool, config.getInteger("parallelThreshold", 1 << 20))
+                        .maxEditDistance(config.getInteger("maxEditDistance", 1000))
+                        .bitCounts(bitCounts);
+            case "mapped":
+                return new MappedComparator(scanMode, sideSpool)
+                        .parallel(comparisonPool, config.getInteger("parallelThreshold", 1 << 20))
+                        .maxEditDistance(config.getInteger("maxEditDistance", 1000))
+                        .bitCounts(bitCounts);
+            case "streaming":
+                return streamingComparator(config);
+            default:
+                throw new IllegalArgumentException("Unknown comparator type: " + config.getString("type"));
+        }
+    }
+
+    private StreamingComparator streamingComparator(JsonObject config) {
+        return new StreamingComparator(
+                ScanMode.valueOf(config.getString("scanMode", ScanMode.WORD.name())),
+                config.getInteger("bufferSize", 1 << 16))
+                .bitCounts(config.getBoolean("bitCounts", false));
+    }
+
+    @Provides
+    @Singleton
+    @Named("comparisonPool")
+    public ForkJoinPool provideComparisonPool(Vertx vertx) {
+        JsonObject config = comparatorConfig(vertx);
+        return new ForkJoinPool(config.getInteger("parallelism", Runtime.getRuntime().availableProcessors()));
+    }
+
+    @Provides
+    @Singleton
+    public SideSpool provideSideSpool(Vertx vertx) {
+        JsonObject config = comparatorConfig(vertx);
+        String defaultDirectory = Paths.get(System.getProperty("java.io.tmpdir"), "waes-spool").toString();
+        return new SideSpool(
+                Paths.get(config.getString("spoolDirectory", defaultDirectory)),
+                config.getInteger("spoolThreshold", 1 << 20),
+                config.getLong("spoolGracePeriod", 60000L));
+    }
+
+    @Provides
+    @Singleton
+    public SideChunkStore provideSideChunkStore(MongoClient mongoClient, Vertx vertx) {
+        return new SideChunkStore(mongoClient, storageConfig(vertx).getInteger("chunkSize", 1 << 20));
+    }
+
+    @Provides
+    @Singleton
+    public SideBlobStore provideSideBlobStore(MongoClient mongoClient) {
+        return new SideBlobStore(mongoClient);
+    }
+
+    /**
+     * Maximum length of the base64 text of a comparison side, as uploaded. Decoded sides
+     * are three quarters of that. Sides are stored in comparison documents unless chunked
+     * storage is enabled, so they must be well below the Mongo document size limit.
+     * Chunked sides can be an order of magnitude larger.
+     */
+    @Provides
+    @Named("maxPayloadSize")
+    public Integer provideMaxPayloadSize(Vertx vertx) {
+        JsonObject config = storageConfig(vertx);
+        return config.getInteger("maxPayloadSize", chunked(config) ? 50 * (1 << 20) : 5 * (1 << 20));
     }
 
     @Provides
@@ -46,6 +253,26 @@ public class Binder extends AbstractModule {
 
     @Override
     protected void configure() {
-        bind(Integer.class).annotatedWith(Names.named("maxPayloadSize")).toInstance(5 * (1 << 20));
+        // Every binding is provided by the methods above
+    }
+
+    private boolean mapped(JsonObject comparatorConfig) {
+        return "mapped".equals(comparatorConfig.getString("type"));
+    }
+
+    private boolean mongo(JsonObject storageConfig) {
+        return "mongo".equals(storageConfig.getString("type", "mongo"));
+    }
+
+    private boolean chunked(JsonObject storageConfig) {
+        return storageConfig.getBoolean("chunked", false);
+    }
+
+    private JsonObject comparatorConfig(Vertx vertx) {
+        return vertx.getOrCreateContext().config().getJsonObject("comparator", new JsonObject());
+    }
+
+    private JsonObject storageConfig(Vertx vertx) {
+        return vertx.getOrCreateContext().config().getJsonObject("storage", new JsonObject());
     }
 }
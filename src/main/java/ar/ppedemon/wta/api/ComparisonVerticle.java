@@ -1,6 +1,6 @@
 package ar.ppedemon.wta.api;
 
-import ar.ppedemon.wta.model.ComparisonStatus;
+import ar.ppedemon.wta.model.ComparisonOptions;
 import ar.ppedemon.wta.model.UpsertResponse;
 import ar.ppedemon.wta.service.ComparisonService;
 import com.google.inject.name.Named;
@@ -62,6 +62,8 @@ public class ComparisonVerticle extends RestApiVerticle {
 
         router.get("/swagger/*").handler(StaticHandler.create());
 
+        router.get("/ready").handler(this::ready);
+
         router.route("/v1/*")
                 .handler(JWTAuthHandler.create(jwtAuth))
                 .failureHandler(this::failureHandler);
@@ -81,7 +83,11 @@ public class ComparisonVerticle extends RestApiVerticle {
                 .handler(sideValidator)
                 .handler(this::upsertRight);
 
+        HTTPRequestValidationHandler optionsValidator = HTTPRequestValidationHandler.create()
+                .addCustomValidatorFunction(validations.comparisonOptionsValidator());
+
         router.get("/v1/diff/:id")
+                .handler(optionsValidator)
                 .handler(this::compare);
 
         router.get("/v1/diff/:id/status")
@@ -93,14 +99,30 @@ public class ComparisonVerticle extends RestApiVerticle {
         int port = config.getInteger("port", DEFAULT_PORT);
         String host = config.getString("host", DEFAULT_HOST);
 
-        vertx.createHttpServer()
-                .requestHandler(router)
-                .rxListen(port, host)
+        comparisonService.initialize()
+                .andThen(vertx.createHttpServer().requestHandler(router).rxListen(port, host))
                 .ignoreElement()
                 .subscribe(startFuture::complete, startFuture::fail);
 
     }
 
+    /**
+     * Answer whether the service is ready to serve requests, for readiness probes.
+     * @param context  {@link RoutingContext} for the HTTP interaction
+     */
+    private void ready(RoutingContext context) {
+        comparisonService.ready().subscribe(
+                ready -> {
+                    if (ready) {
+                        ok(context, new JsonObject().put("ready", true).encode());
+                    } else {
+                        serviceUnavailable(context, "Storage not ready");
+                    }
+                },
+                error -> serviceUnavailable(context, error.getMessage())
+        );
+    }
+
     /**
      * Upsert left hand side of an equality.
      * @param context  {@link RoutingContext} for the HTTP interaction
@@ -145,14 +167,15 @@ public class ComparisonVerticle extends RestApiVerticle {
     }
 
     /**
-     * Return comparison results for some comparison.
+     * Return comparison results for some comparison, bounded by the options given as query parameters.
      * @param context  {@link RoutingContext} for the HTTP interaction
      */
     private void compare(RoutingContext context) {
         String userId = userId(context);
         String id = context.pathParam("id");
+        ComparisonOptions options = context.get(Validations.COMPARISON_OPTIONS);
 
-        comparisonService.compare(userId, id).subscribe(
+        comparisonService.compare(userId, id, options).subscribe(
                 result -> {
                     if (result.success()) {
                         ok(context, Json.encodePrettily(result.result()));
@@ -173,8 +196,8 @@ public class ComparisonVerticle extends RestApiVerticle {
         String userId = userId(context);
         String id = context.pathParam("id");
 
-        comparisonService.get(userId, id).subscribe(
-                comparison -> ok(context, Json.encodePrettily(ComparisonStatus.fromComparison(comparison))),
+        comparisonService.status(userId, id).subscribe(
+                status -> ok(context, Json.encodePrettily(status)),
                 error -> internalServerError(context, error),
                 () -> notFound(context)
         );
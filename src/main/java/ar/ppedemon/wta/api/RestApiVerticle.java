@@ -99,6 +99,16 @@ abstract class RestApiVerticle extends AbstractVerticle {
         fail(context, 400, message);
     }
 
+    /**
+     * Answer a 503 SERVICE UNAVAILABLE response in json format.
+     *
+     * @param context  {@link RoutingContext} for the HTTP interaction
+     * @param message  error message to include in json response payload
+     */
+    void serviceUnavailable(RoutingContext context, String message) {
+        fail(context, 503, message);
+    }
+
     /**
      * Answer a 500 INTERNAL SERVER ERROR response in json format.
      * @param context  {@link RoutingContext} for the HTTP interaction
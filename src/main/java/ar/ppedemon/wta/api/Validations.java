@@ -1,5 +1,8 @@
 package ar.ppedemon.wta.api;
 
+import ar.ppedemon.wta.model.ComparisonOptions;
+import ar.ppedemon.wta.model.Granularity;
+import io.vertx.core.http.HttpServerRequest;
 import io.vertx.ext.web.api.validation.ValidationException;
 import io.vertx.reactivex.ext.web.api.validation.CustomValidator;
 
@@ -11,6 +14,11 @@ import java.util.Objects;
  */
 class Validations {
 
+    /**
+     * Key under which valid comparison options are stored in the routing context.
+     */
+    static final String COMPARISON_OPTIONS = "comparisonOptions";
+
     /**
      * Check whether the given payload is a non null valid base64 string short than the given maximum length.
      *
@@ -43,4 +51,72 @@ class Validations {
     CustomValidator base64TextValidator(int maxSize) {
         return new CustomValidator(context -> validBase64Text(context.getBodyAsString("UTF-8"), maxSize));
     }
+
+    /**
+     * Build comparison options from the given query parameter values, any of which might be null.
+     *
+     * @param equalityOnly    whether to check for equality only, must be either true or false
+     * @param maxDifferences  maximum number of differences to report, must be a positive integer
+     * @param maxBytes        maximum number of bytes to scan, must be a positive integer
+     * @param granularity     granularity of differences, must be one of byte, line or token
+     * @return  {@link ComparisonOptions} instance, unbounded and with byte granularity for absent parameters
+     * @throws ValidationException if any parameter is invalid
+     */
+    ComparisonOptions comparisonOptions(String equalityOnly, String maxDifferences, String maxBytes, String granularity) {
+        if (Objects.nonNull(equalityOnly) && !"true".equals(equalityOnly) && !"false".equals(equalityOnly)) {
+            throw new ValidationException("equalityOnly must be either true or false");
+        }
+
+        return new ComparisonOptions(
+                Boolean.parseBoolean(equalityOnly),
+                positiveInt("maxDifferences", maxDifferences),
+                positiveInt("maxBytes", maxBytes),
+                granularity(granularity));
+    }
+
+    /**
+     * Provide a comparison options validator. Valid options are stored in the routing
+     * context under the {@link #COMPARISON_OPTIONS} key.
+     *
+     * @return  comparison options validator
+     */
+    CustomValidator comparisonOptionsValidator() {
+        return new CustomValidator(context -> {
+            HttpServerRequest request = context.request();
+            context.put(COMPARISON_OPTIONS, comparisonOptions(
+                    request.getParam("equalityOnly"),
+                    request.getParam("maxDifferences"),
+                    request.getParam("maxBytes"),
+                    request.getParam("granularity")));
+        });
+    }
+
+    private Granularity granularity(String value) {
+        if (Objects.isNull(value)) {
+            return Granularity.BYTE;
+        }
+
+        for (Granularity granularity : Granularity.values()) {
+            if (granularity.name().equalsIgnoreCase(value)) {
+                return granularity;
+            }
+        }
+        throw new ValidationException("granularity must be one of byte, line or token");
+    }
+
+    private int positiveInt(String name, String value) {
+        if (Objects.isNull(value)) {
+            return Integer.MAX_VALUE;
+        }
+
+        try {
+            int result = Integer.parseInt(value);
+            if (result > 0) {
+                return result;
+            }
+        } catch (NumberFormatException e) {
+            // Fall through
+        }
+        throw new ValidationException(String.format("%s must be a positive integer", name));
+    }
 }
@@ -1,83 +1,287 @@
 package ar.ppedemon.wta.comparator;
 
 import ar.ppedemon.wta.model.Comparison;
+import ar.ppedemon.wta.model.ComparisonOptions;
 import ar.ppedemon.wta.model.ComparisonResult;
+import ar.ppedemon.wta.model.Edit;
 import ar.ppedemon.wta.model.Span;
 import com.google.common.collect.Lists;
 
 import java.util.List;
 import java.util.Objects;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
 
 /**
  * Abstract comparator. Algorithm is here, it's up to subclasses
  * how to interpret the meaning of a base64 encoded string.
  *
- * @param <T> interpreted type for each character in base64 contents to compare
+ * Subclasses decode sides to primitive arrays, so the scan loop
+ * doesn't box elements nor allocate anything but the reported spans.
+ *
+ * Optionally, sides at least as long as a given threshold are split into chunks
+ * scanned in parallel in a {@link ForkJoinPool}. Spans crossing chunk boundaries
+ * are stitched together, so results are identical to the sequential ones.
+ *
+ * Also optionally, sides of different length are diffed with {@link MyersDiff},
+ * reporting edits transforming the left hand side into the right hand side.
+ *
+ * Finally, differing bits can be counted for every span as soon as the scan finds
+ * its end, while the span is still in cache. Equal regions are never revisited,
+ * so this adds no second scan of the sides.
+ *
+ * @param <T> interpreted type for base64 contents to compare (a primitive array type, or a buffer)
  *
  * @author ppedemon
  */
 public abstract class AbstractComparator<T> implements Comparator {
 
+    private static final int MIN_CHUNK_SIZE = 1 << 16;
+    private static final int CHUNKS_PER_THREAD = 4;
+
+    private ForkJoinPool pool;
+    private int parallelThreshold = Integer.MAX_VALUE;
+    private int maxEditDistance;
+    private boolean bitCounts;
+
+    /**
+     * Scan sides in parallel in the given pool when they are at least as long as the given threshold.
+     *
+     * @param pool       pool where chunks of large sides will be scanned
+     * @param threshold  minimum side length for parallel scanning
+     * @return  this comparator
+     */
+    public AbstractComparator<T> parallel(ForkJoinPool pool, int threshold) {
+        this.pool = Objects.requireNonNull(pool, "Parallel comparison pool is null");
+        this.parallelThreshold = threshold;
+        return this;
+    }
+
+    /**
+     * Compute edits for sides of different length, as long as they are at most the given number of edits apart.
+     *
+     * @param maxEditDistance  maximum edit distance to explore, zero to disable edits
+     * @return  this comparator
+     */
+    public AbstractComparator<T> maxEditDistance(int maxEditDistance) {
+        this.maxEditDistance = maxEditDistance;
+        return this;
+    }
+
+    /**
+     * Count differing bits in every span, and the Hamming distance of sides of equal length.
+     *
+     * @param bitCounts  whether to count differing bits
+     * @return  this comparator
+     */
+    public AbstractComparator<T> bitCounts(boolean bitCounts) {
+        this.bitCounts = bitCounts;
+        return this;
+    }
+
     /**
      * Define how to interpret a given base64 encoded text. That is, subclasses are responsible
      * for defining the semantics of a base64 encoded text chunk.
      *
      * @param base64Text  base64 encoded text chunk to decode
-     * @return  decoding result, as a list of elements of type {@code T} (one for each character of the input)
+     * @return  decoding result, as an array with one element for each unit of the input
+     */
+    abstract T decode(String base64Text);
+
+    /**
+     * Answer the number of elements in a decoded side.
+     *
+     * @param side  decoded side
+     * @return  number of elements in side
+     */
+    abstract int length(T side);
+
+    /**
+     * Find the first position in {@code [from, to)} where both sides differ.
+     *
+     * @param lhs   lhs side of comparison
+     * @param rhs   rhs side of comparison
+     * @param from  start position, inclusive
+     * @param to    end position, exclusive
+     * @return  first differing position, or {@code to} if sides are equal in the given range
+     */
+    abstract int mismatch(T lhs, T rhs, int from, int to);
+
+    /**
+     * Find the first position in {@code [from, to)} where both sides are equal.
+     *
+     * @param lhs   lhs side of comparison
+     * @param rhs   rhs side of comparison
+     * @param from  start position, inclusive
+     * @param to    end position, exclusive
+     * @return  first equal position, or {@code to} if sides are different in the whole range
+     */
+    abstract int match(T lhs, T rhs, int from, int to);
+
+    /**
+     * Answer whether the elements at the given positions of each side are equal.
+     *
+     * @param lhs  lhs side of comparison
+     * @param i    position in lhs
+     * @param rhs  rhs side of comparison
+     * @param j    position in rhs
+     * @return  whether {@code lhs[i]} equals {@code rhs[j]}
      */
-    abstract List<T> decode(String base64Text);
+    abstract boolean equal(T lhs, int i, T rhs, int j);
+
+    /**
+     * Count the bits differing between both sides in {@code [from, to)}.
+     * Only called when counting bits.
+     *
+     * @param lhs   lhs side of comparison
+     * @param rhs   rhs side of comparison
+     * @param from  start position, inclusive
+     * @param to    end position, exclusive
+     * @return  number of differing bits in the given range
+     */
+    abstract long differingBits(T lhs, T rhs, int from, int to);
+
+    @Override
+    public boolean countsBits() {
+        return bitCounts;
+    }
 
     @Override
-    public ComparisonResult compare(Comparison comparison) {
+    public ComparisonResult compare(Comparison comparison, ComparisonOptions options) {
         Objects.requireNonNull(comparison.getLeft(), "Left hand side of comparison is null");
         Objects.requireNonNull(comparison.getRight(), "Right hand side of comparison is null");
 
-        List<T> lhs = decode(comparison.getLeft());
-        List<T> rhs = decode(comparison.getRight());
+        return compare(decode(comparison.getLeft()), decode(comparison.getRight()), options);
+    }
 
-        if (lhs.equals(rhs)) {
-            return new ComparisonResult(ComparisonResult.Status.EQUAL, Lists.newArrayList());
+    /**
+     * Compare decoded sides.
+     *
+     * @param lhs      lhs side of comparison
+     * @param rhs      rhs side of comparison
+     * @param options  {@link ComparisonOptions} bounding the comparison
+     * @return {@link ComparisonResult}, flagged as truncated if it might omit differences
+     */
+    ComparisonResult compare(T lhs, T rhs, ComparisonOptions options) {
+        if (length(lhs) != length(rhs)) {
+            return Results.differentLength(options, length(lhs), length(rhs), () -> edits(lhs, rhs));
         }
 
-        if (lhs.size() != rhs.size()) {
-            return new ComparisonResult(ComparisonResult.Status.DIFFERENT_LENGTH, Lists.newArrayList());
-        }
+        int to = Math.min(length(lhs), options.getMaxBytes());
+        int limit = options.differencesLimit();
+
+        // Bounded number of differences favors early exit over parallel scanning
+        List<Span> differences = Objects.nonNull(pool) && limit == Integer.MAX_VALUE && to >= parallelThreshold
+                ? pool.invoke(new DifferencesTask(lhs, rhs, 0, to, chunkSize(to)))
+                : differences(lhs, rhs, 0, to, limit);
 
-        return new ComparisonResult(ComparisonResult.Status.EQUAL_LENGTH, differences(lhs, rhs));
+        boolean truncated = to < length(lhs) || differences.size() >= limit;
+        return Results.equalLength(options, length(lhs), differences, truncated, bitCounts);
     }
 
     /**
-     * Compute list of differences for two different strings of equal length.
+     * Compute edits transforming the lhs into the rhs, for sides of different length.
      *
      * @param lhs  lhs side of comparison
      * @param rhs  rhs side of comparison
+     * @return  list of {@link Edit} instances, or {@code null} if edits are disabled or
+     *   sides are farther apart than the maximum edit distance
+     */
+    List<Edit> edits(T lhs, T rhs) {
+        return maxEditDistance > 0 ? new MyersDiff<>(this, lhs, rhs).edits(maxEditDistance) : null;
+    }
+
+    /**
+     * Compute list of differences for two sides of equal length in the range {@code [from, to)}.
+     * Spans are found by alternately jumping to the next mismatch and to the next match.
+     *
+     * @param lhs    lhs side of comparison
+     * @param rhs    rhs side of comparison
+     * @param from   start position, inclusive
+     * @param to     end position, exclusive
+     * @param limit  maximum number of differences to look for
      * @return list of {@link Span} instances
      */
-    private List<Span> differences(List<T> lhs, List<T> rhs) {
+    List<Span> differences(T lhs, T rhs, int from, int to, int limit) {
         List<Span> differences = Lists.newArrayList();
 
-        int diffOffset = 0;
-        boolean inDiff = false;
+        int diffOffset = mismatch(lhs, rhs, from, to);
+        while (diffOffset < to && differences.size() < limit) {
+            int diffEnd = match(lhs, rhs, diffOffset + 1, to);
+            differences.add(bitCounts
+                    ? new Span(diffOffset, diffEnd - diffOffset, differingBits(lhs, rhs, diffOffset, diffEnd))
+                    : new Span(diffOffset, diffEnd - diffOffset));
+            diffOffset = mismatch(lhs, rhs, diffEnd, to);
+        }
+
+        return differences;
+    }
 
-        for (int i = 0; i < lhs.size(); i++) {
-            T left = lhs.get(i);
-            T right = rhs.get(i);
+    /**
+     * Compute the chunk size for scanning in parallel sides of the given length.
+     *
+     * @param length  sides length
+     * @return  chunk size such that every pool thread gets a few chunks to scan
+     */
+    private int chunkSize(int length) {
+        int chunks = pool.getParallelism() * CHUNKS_PER_THREAD;
+        return Math.max(MIN_CHUNK_SIZE, (length + chunks - 1) / chunks);
+    }
 
-            if (!inDiff && !left.equals(right)) {
-                inDiff = true;
-                diffOffset = i;
-            }
+    /**
+     * Task computing differences in a range of the sides, halving the range
+     * recursively until it fits in a single chunk.
+     */
+    private class DifferencesTask extends RecursiveTask<List<Span>> {
 
-            if (inDiff && left.equals(right)) {
-                inDiff = false;
-                differences.add(new Span(diffOffset, i - diffOffset));
-            }
+        private final T lhs;
+        private final T rhs;
+        private final int from;
+        private final int to;
+        private final int chunkSize;
+
+        DifferencesTask(T lhs, T rhs, int from, int to, int chunkSize) {
+            this.lhs = lhs;
+            this.rhs = rhs;
+            this.from = from;
+            this.to = to;
+            this.chunkSize = chunkSize;
         }
 
-        if (inDiff) {
-            differences.add(new Span(diffOffset, lhs.size() - diffOffset));
+        @Override
+        protected List<Span> compute() {
+            if (to - from <= chunkSize) {
+                return differences(lhs, rhs, from, to, Integer.MAX_VALUE);
+            }
+
+            int mid = from + (to - from) / 2;
+            DifferencesTask head = new DifferencesTask(lhs, rhs, from, mid, chunkSize);
+            head.fork();
+            List<Span> tail = new DifferencesTask(lhs, rhs, mid, to, chunkSize).compute();
+            return stitch(head.join(), tail);
         }
 
-        return differences;
+        /**
+         * Concatenate differences of two consecutive ranges, merging the last span of
+         * the first range with the first span of the second one if they are adjacent.
+         *
+         * @param head  differences in the first range
+         * @param tail  differences in the second range
+         * @return  differences in the union of both ranges
+         */
+        private List<Span> stitch(List<Span> head, List<Span> tail) {
+            if (head.isEmpty()) {
+                return tail;
+            }
+
+            Span last = head.get(head.size() - 1);
+            if (!tail.isEmpty() && last.getOffset() + last.getLength() == tail.get(0).getOffset()) {
+                head.set(head.size() - 1, last.extend(tail.get(0)));
+                head.addAll(tail.subList(1, tail.size()));
+            } else {
+                head.addAll(tail);
+            }
+            return head;
+        }
     }
 }
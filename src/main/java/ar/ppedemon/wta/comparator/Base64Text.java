@@ -0,0 +1,75 @@
+package ar.ppedemon.wta.comparator;
+
+import java.io.InputStream;
+import java.util.Base64;
+
+/**
+ * Helpers for working on base64 encoded text without decoding it as a whole.
+ *
+ * @author ppedemon
+ */
+final class Base64Text {
+
+    private Base64Text() {}
+
+    /**
+     * Compute the length of the data encoded by the given base64 text, without decoding it.
+     * Padding is optional, as it is for {@link Base64#getDecoder()}.
+     *
+     * @param base64Text  valid base64 encoded text
+     * @return  length in bytes of the encoded data
+     */
+    static long decodedLength(String base64Text) {
+        int length = base64Text.length();
+        int padding = 0;
+        while (padding < 2 && length - padding > 0 && base64Text.charAt(length - padding - 1) == '=') {
+            padding++;
+        }
+        return (length - padding) * 3L / 4;
+    }
+
+    /**
+     * Open a stream decoding the given base64 text on the fly.
+     *
+     * @param base64Text  base64 encoded text
+     * @return  stream of decoded bytes
+     */
+    static InputStream decodingStream(String base64Text) {
+        return Base64.getDecoder().wrap(new TextStream(base64Text));
+    }
+
+    /**
+     * Stream of the characters of an ascii string, avoiding the copy made by {@link String#getBytes()}.
+     */
+    private static class TextStream extends InputStream {
+
+        private final String text;
+        private int position;
+
+        TextStream(String text) {
+            this.text = text;
+        }
+
+        @Override
+        public int read() {
+            return position < text.length() ? text.charAt(position++) & 0xff : -1;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) {
+            if (length == 0) {
+                return 0;
+            }
+
+            int count = Math.min(length, text.length() - position);
+            if (count <= 0) {
+                return -1;
+            }
+
+            for (int i = 0; i < count; i++) {
+                buffer[offset + i] = (byte)text.charAt(position++);
+            }
+            return count;
+        }
+    }
+}
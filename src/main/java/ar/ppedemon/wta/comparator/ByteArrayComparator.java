@@ -1,9 +1,6 @@
 package ar.ppedemon.wta.comparator;
 
-import com.google.common.primitives.Bytes;
-
 import java.util.Base64;
-import java.util.List;
 
 /**
  * Byte array comparator. This class will interpret the base64 encoded sides
@@ -11,9 +8,53 @@ import java.util.List;
  *
  * @author ppedemon
  */
-public class ByteArrayComparator extends AbstractComparator<Byte> {
+public class ByteArrayComparator extends AbstractComparator<byte[]> {
+
+    private final ScanMode scanMode;
+
+    /**
+     * Build a new instance scanning equal regions a word at a time.
+     */
+    public ByteArrayComparator() {
+        this(ScanMode.WORD);
+    }
+
+    /**
+     * Build a new instance scanning sides with the given {@link ScanMode}.
+     *
+     * @param scanMode  strategy used to scan decoded sides
+     */
+    public ByteArrayComparator(ScanMode scanMode) {
+        this.scanMode = scanMode;
+    }
+
+    @Override
+    byte[] decode(String base64Text) {
+        return Base64.getDecoder().decode(base64Text);
+    }
+
+    @Override
+    int length(byte[] side) {
+        return side.length;
+    }
+
+    @Override
+    int mismatch(byte[] lhs, byte[] rhs, int from, int to) {
+        return scanMode.mismatch(lhs, rhs, from, to);
+    }
+
+    @Override
+    int match(byte[] lhs, byte[] rhs, int from, int to) {
+        return scanMode.match(lhs, rhs, from, to);
+    }
+
+    @Override
+    boolean equal(byte[] lhs, int i, byte[] rhs, int j) {
+        return lhs[i] == rhs[j];
+    }
+
     @Override
-    List<Byte> decode(String base64Text) {
-        return Bytes.asList(Base64.getDecoder().decode(base64Text));
+    long differingBits(byte[] lhs, byte[] rhs, int from, int to) {
+        return scanMode.differingBits(lhs, rhs, from, to);
     }
 }
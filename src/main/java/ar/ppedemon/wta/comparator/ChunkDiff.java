@@ -0,0 +1,286 @@
+package ar.ppedemon.wta.comparator;
+
+import ar.ppedemon.wta.model.Edit;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Approximate diff of byte arrays based on content-defined chunking, in the spirit of rsync.
+ *
+ * Both sides are split in chunks whose boundaries are decided by a Gear rolling hash over
+ * the last bytes seen, so boundaries depend on content rather than on position. Hence, an
+ * insertion only changes the chunks around it, and chunks after it are found unchanged at
+ * a shifted offset. Chunks are then matched by a content hash, and the longest sequence of
+ * matches appearing in the same order in both sides is taken as unchanged. Remaining matches
+ * are reported as moves, and unmatched regions as insertions, deletions or replacements.
+ *
+ * Everything runs in time linear in the sides' length, except for ordering matches, which
+ * is {@code O(c log c)} for {@code c} chunks. Edits are accurate up to chunk granularity.
+ *
+ * @author ppedemon
+ */
+class ChunkDiff {
+
+    private static final long[] GEAR = gear();
+    private static final HashFunction CHUNK_HASH = Hashing.murmur3_128();
+
+    private final int minSize;
+    private final int maxSize;
+    private final long mask;
+
+    /**
+     * Build an instance producing chunks of the given average size.
+     *
+     * @param averageSize  average chunk size, rounded down to a power of two
+     */
+    ChunkDiff(int averageSize) {
+        int bits = Integer.numberOfTrailingZeros(Integer.highestOneBit(averageSize));
+        this.mask = bits == 0 ? 0 : -1L << (Long.SIZE - bits);
+        this.minSize = Math.max(1, (1 << bits) / 4);
+        this.maxSize = (1 << bits) * 4;
+    }
+
+    /**
+     * Compute the edits transforming the left hand side into the right hand side.
+     *
+     * @param lhs  lhs side of comparison
+     * @param rhs  rhs side of comparison
+     * @return  list of {@link Edit} instances, sorted by right hand side offset
+     */
+    List<Edit> edits(byte[] lhs, byte[] rhs) {
+        List<Chunk> lhsChunks = chunks(lhs);
+        List<Chunk> rhsChunks = chunks(rhs);
+
+        // Match every rhs chunk with the first unmatched lhs chunk having the same contents
+        Map<HashCode, Deque<Integer>> lhsIndex = Maps.newHashMap();
+        for (int i = 0; i < lhsChunks.size(); i++) {
+            lhsIndex.computeIfAbsent(lhsChunks.get(i).hash, __ -> new ArrayDeque<>()).add(i);
+        }
+
+        int[] matches = new int[rhsChunks.size()];
+        boolean[] lhsMatched = new boolean[lhsChunks.size()];
+        for (int j = 0; j < rhsChunks.size(); j++) {
+            Deque<Integer> candidates = lhsIndex.get(rhsChunks.get(j).hash);
+            matches[j] = candidates == null || candidates.isEmpty() ? -1 : candidates.poll();
+            if (matches[j] >= 0) {
+                lhsMatched[matches[j]] = true;
+            }
+        }
+
+        boolean[] anchors = anchors(matches);
+        List<Edit> edits = Lists.newArrayList();
+
+        // Matched chunks out of order are moves
+        for (int j = 0; j < rhsChunks.size(); j++) {
+            if (matches[j] >= 0 && !anchors[j]) {
+                Chunk from = lhsChunks.get(matches[j]);
+                add(edits, new Edit(Edit.Type.MOVE, from.offset, from.length, rhsChunks.get(j).offset, from.length));
+            }
+        }
+
+        // Unmatched chunks between consecutive anchors are insertions, deletions or replacements
+        int lhsStart = 0;
+        int rhsStart = 0;
+        for (int j = 0; j <= rhsChunks.size(); j++) {
+            if (j == rhsChunks.size() || anchors[j]) {
+                int i = j == rhsChunks.size() ? lhsChunks.size() : matches[j];
+                gap(edits, lhsChunks, lhsStart, i, lhsMatched, rhsChunks, rhsStart, j, matches);
+                lhsStart = i + 1;
+                rhsStart = j + 1;
+            }
+        }
+
+        edits.sort((e1, e2) -> e1.getRhsOffset() != e2.getRhsOffset()
+                ? Integer.compare(e1.getRhsOffset(), e2.getRhsOffset())
+                : Integer.compare(e1.getLhsOffset(), e2.getLhsOffset()));
+        return edits;
+    }
+
+    /**
+     * Split data in content-defined chunks. A boundary is placed after a byte when the
+     * top bits of the Gear hash are all zero, as long as the chunk isn't too small, or
+     * when the chunk reaches its maximum size.
+     *
+     * @param data  data to split
+     * @return  list of chunks covering the data
+     */
+    private List<Chunk> chunks(byte[] data) {
+        List<Chunk> chunks = Lists.newArrayList();
+
+        int start = 0;
+        long hash = 0;
+        for (int i = 0; i < data.length; i++) {
+            hash = (hash << 1) + GEAR[data[i] & 0xff];
+            int length = i - start + 1;
+            if ((length >= minSize && (hash & mask) == 0) || length >= maxSize) {
+                chunks.add(new Chunk(start, length, CHUNK_HASH.hashBytes(data, start, length)));
+                start = i + 1;
+                hash = 0;
+            }
+        }
+
+        if (start < data.length) {
+            chunks.add(new Chunk(start, data.length - start, CHUNK_HASH.hashBytes(data, start, data.length - start)));
+        }
+
+        return chunks;
+    }
+
+    /**
+     * Find the longest sequence of matches appearing in the same order in both sides,
+     * that is, the longest increasing subsequence of the matched lhs chunk indexes.
+     *
+     * @param matches  for every rhs chunk, index of the matching lhs chunk or -1
+     * @return  for every rhs chunk, whether its match belongs to the sequence
+     */
+    private boolean[] anchors(int[] matches) {
+        int[] tails = new int[matches.length];
+        int[] previous = new int[matches.length];
+        int length = 0;
+
+        for (int j = 0; j < matches.length; j++) {
+            if (matches[j] < 0) {
+                continue;
+            }
+
+            int low = 0;
+            int high = length;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (matches[tails[mid]] < matches[j]) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+
+            previous[j] = low > 0 ? tails[low - 1] : -1;
+            tails[low] = j;
+            length = Math.max(length, low + 1);
+        }
+
+        boolean[] anchors = new boolean[matches.length];
+        for (int j = length > 0 ? tails[length - 1] : -1; j >= 0; j = previous[j]) {
+            anchors[j] = true;
+        }
+        return anchors;
+    }
+
+    /**
+     * Report unmatched chunks in lhs chunks {@code [lhsFrom, lhsTo)} and rhs chunks {@code [rhsFrom, rhsTo)},
+     * lying between two consecutive anchors. If there's a single run of unmatched chunks in each side, report
+     * a replacement. Otherwise, report deletions and insertions for every run.
+     */
+    private void gap(
+            List<Edit> edits,
+            List<Chunk> lhsChunks, int lhsFrom, int lhsTo, boolean[] lhsMatched,
+            List<Chunk> rhsChunks, int rhsFrom, int rhsTo, int[] matches) {
+
+        List<int[]> lhsRuns = Lists.newArrayList();
+        for (int i = lhsFrom; i < lhsTo; i++) {
+            if (!lhsMatched[i]) {
+                extend(lhsRuns, lhsChunks.get(i));
+            }
+        }
+
+        List<int[]> rhsRuns = Lists.newArrayList();
+        for (int j = rhsFrom; j < rhsTo; j++) {
+            if (matches[j] < 0) {
+                extend(rhsRuns, rhsChunks.get(j));
+            }
+        }
+
+        int lhsOffset = offset(lhsChunks, lhsFrom);
+        int rhsOffset = offset(rhsChunks, rhsFrom);
+
+        if (lhsRuns.size() == 1 && rhsRuns.size() == 1) {
+            int[] lhsRun = lhsRuns.get(0);
+            int[] rhsRun = rhsRuns.get(0);
+            edits.add(Edit.of(lhsRun[0], lhsRun[1] - lhsRun[0], rhsRun[0], rhsRun[1] - rhsRun[0]));
+            return;
+        }
+
+        for (int[] run : lhsRuns) {
+            edits.add(Edit.of(run[0], run[1] - run[0], rhsOffset, 0));
+        }
+        for (int[] run : rhsRuns) {
+            edits.add(Edit.of(lhsOffset, 0, run[0], run[1] - run[0]));
+        }
+    }
+
+    /**
+     * Extend the last run of chunks with the given chunk if adjacent, or start a new run.
+     * Runs are represented as {@code [start, end)} offset pairs.
+     */
+    private void extend(List<int[]> runs, Chunk chunk) {
+        if (!runs.isEmpty() && runs.get(runs.size() - 1)[1] == chunk.offset) {
+            runs.get(runs.size() - 1)[1] = chunk.offset + chunk.length;
+        } else {
+            runs.add(new int[] {chunk.offset, chunk.offset + chunk.length});
+        }
+    }
+
+    /**
+     * Add a move, merging it with the previous one if both are adjacent in both sides.
+     */
+    private void add(List<Edit> edits, Edit move) {
+        if (!edits.isEmpty()) {
+            Edit last = edits.get(edits.size() - 1);
+            if (last.getLhsOffset() + last.getLhsLength() == move.getLhsOffset()
+                    && last.getRhsOffset() + last.getRhsLength() == move.getRhsOffset()) {
+                int length = last.getLhsLength() + move.getLhsLength();
+                edits.set(edits.size() - 1,
+                        new Edit(Edit.Type.MOVE, last.getLhsOffset(), length, last.getRhsOffset(), length));
+                return;
+            }
+        }
+        edits.add(move);
+    }
+
+    /**
+     * Offset where the chunk with the given index starts, or the data length if past the last chunk.
+     */
+    private int offset(List<Chunk> chunks, int index) {
+        if (index < chunks.size()) {
+            return chunks.get(index).offset;
+        }
+        Chunk last = chunks.isEmpty() ? null : chunks.get(chunks.size() - 1);
+        return last == null ? 0 : last.offset + last.length;
+    }
+
+    /**
+     * Gear table: one pseudo-random 64 bit value per byte value, from a fixed seed
+     * so chunk boundaries are stable across runs.
+     */
+    private static long[] gear() {
+        Random random = new Random(0x5eed);
+        long[] gear = new long[256];
+        Arrays.setAll(gear, __ -> random.nextLong());
+        return gear;
+    }
+
+    /**
+     * Chunk of data: offset, length, and content hash.
+     */
+    private static class Chunk {
+        final int offset;
+        final int length;
+        final HashCode hash;
+
+        Chunk(int offset, int length, HashCode hash) {
+            this.offset = offset;
+            this.length = length;
+            this.hash = hash;
+        }
+    }
+}
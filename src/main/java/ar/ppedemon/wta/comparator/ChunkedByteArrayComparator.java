@@ -0,0 +1,46 @@
+package ar.ppedemon.wta.comparator;
+
+import ar.ppedemon.wta.model.Edit;
+
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Byte array comparator falling back to a chunk based diff for sides of different
+ * length that are too far apart for an exact diff, as bounded by the maximum edit
+ * distance. Most notably, this gives useful edits for large sides where data was
+ * inserted or deleted near the start.
+ *
+ * @see ChunkDiff
+ * @author ppedemon
+ */
+public class ChunkedByteArrayComparator extends ByteArrayComparator {
+
+    private static final int DEFAULT_AVERAGE_CHUNK_SIZE = 1 << 11;
+
+    private final ChunkDiff chunkDiff;
+
+    /**
+     * Build a new instance scanning a word at a time, with default average chunk size.
+     */
+    public ChunkedByteArrayComparator() {
+        this(ScanMode.WORD, DEFAULT_AVERAGE_CHUNK_SIZE);
+    }
+
+    /**
+     * Build a new instance with the given scan mode and average chunk size.
+     *
+     * @param scanMode          strategy used to scan decoded sides
+     * @param averageChunkSize  average chunk size, rounded down to a power of two
+     */
+    public ChunkedByteArrayComparator(ScanMode scanMode, int averageChunkSize) {
+        super(scanMode);
+        this.chunkDiff = new ChunkDiff(averageChunkSize);
+    }
+
+    @Override
+    List<Edit> edits(byte[] lhs, byte[] rhs) {
+        List<Edit> edits = super.edits(lhs, rhs);
+        return Objects.nonNull(edits) ? edits : chunkDiff.edits(lhs, rhs);
+    }
+}
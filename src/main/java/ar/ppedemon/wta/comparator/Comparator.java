@@ -1,6 +1,7 @@
 package ar.ppedemon.wta.comparator;
 
 import ar.ppedemon.wta.model.Comparison;
+import ar.ppedemon.wta.model.ComparisonOptions;
 import ar.ppedemon.wta.model.ComparisonResult;
 
 /**
@@ -19,5 +20,41 @@ public interface Comparator {
      * @param comparison {@link Comparison} instance providing data to compare
      * @return {@link ComparisonResult}
      */
-    ComparisonResult compare(Comparison comparison);
+    default ComparisonResult compare(Comparison comparison) {
+        return compare(comparison, ComparisonOptions.full());
+    }
+
+    /**
+     * Compare both sides of the given comparison, doing no more work than
+     * needed for honoring the given options.
+     *
+     * Precondition: both sides of the comparison must be set.
+     *
+     * @param comparison {@link Comparison} instance providing data to compare
+     * @param options    {@link ComparisonOptions} bounding the comparison
+     * @return {@link ComparisonResult}, flagged as truncated if it might omit differences
+     */
+    ComparisonResult compare(Comparison comparison, ComparisonOptions options);
+
+    /**
+     * Answer whether reported spans are expressed as offsets and lengths in the decoded
+     * bytes of each side. If so, sides can be compared by independently comparing
+     * aligned byte blocks, and offsetting the spans reported for every block.
+     *
+     * @return  whether spans are byte oriented
+     */
+    default boolean byteOriented() {
+        return true;
+    }
+
+    /**
+     * Answer whether results for sides of equal length carry their Hamming distance, and
+     * their differences the bits differing in each span. If so, results computed elsewhere
+     * (e.g., for sides known to be equal) must carry a Hamming distance too.
+     *
+     * @return  whether differing bits are counted
+     */
+    default boolean countsBits() {
+        return false;
+    }
 }
@@ -0,0 +1,50 @@
+package ar.ppedemon.wta.comparator;
+
+import ar.ppedemon.wta.model.Comparison;
+import ar.ppedemon.wta.model.ComparisonOptions;
+import ar.ppedemon.wta.model.ComparisonResult;
+import ar.ppedemon.wta.model.Granularity;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Comparator dispatching every comparison to a comparator for the requested {@link Granularity}.
+ *
+ * @author ppedemon
+ */
+public class GranularityComparator implements Comparator {
+
+    private final Comparator byteComparator;
+    private final Map<Granularity, Comparator> comparators = new EnumMap<>(Granularity.class);
+
+    /**
+     * Build a new instance.
+     *
+     * @param byteComparator  comparator for byte granularity
+     * @param maxEditDistance  maximum number of changed lines or tokens explored when diffing
+     */
+    public GranularityComparator(Comparator byteComparator, int maxEditDistance) {
+        this.byteComparator = byteComparator;
+        comparators.put(Granularity.BYTE, byteComparator);
+        comparators.put(Granularity.LINE, new LineComparator(Granularity.LINE, maxEditDistance));
+        comparators.put(Granularity.TOKEN, new LineComparator(Granularity.TOKEN, maxEditDistance));
+    }
+
+    @Override
+    public ComparisonResult compare(Comparison comparison, ComparisonOptions options) {
+        Comparator comparator = comparators.get(options.getGranularity());
+        return Objects.requireNonNull(comparator, "No comparator for granularity").compare(comparison, options);
+    }
+
+    @Override
+    public boolean byteOriented() {
+        return byteComparator.byteOriented();
+    }
+
+    @Override
+    public boolean countsBits() {
+        return byteComparator.countsBits();
+    }
+}
@@ -0,0 +1,221 @@
+package ar.ppedemon.wta.comparator;
+
+import ar.ppedemon.wta.model.BlockFingerprints;
+import ar.ppedemon.wta.model.Comparison;
+import ar.ppedemon.wta.model.ComparisonOptions;
+import ar.ppedemon.wta.model.ComparisonResult;
+import ar.ppedemon.wta.model.Similarity;
+import ar.ppedemon.wta.model.Span;
+import com.google.common.collect.Lists;
+
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Comparator reusing the previous result of a comparison whose sides changed in a few blocks.
+ *
+ * If the previous result was computed for sides of the same length as the current ones,
+ * spans in blocks whose fingerprints didn't change in any side are still valid. Hence,
+ * only changed blocks are decoded and compared, by means of a byte oriented delegate
+ * comparator, and the resulting spans are merged with the still valid previous ones.
+ * Previous spans partially lying in changed blocks are compared again as a whole, so
+ * that differing bits counted by the delegate are never split between blocks.
+ * This turns the cost of re-comparing sides after small updates from linear in the
+ * size of the sides to linear in the size of the change (plus a linear, but cheap,
+ * scan of block fingerprints).
+ *
+ * Comparisons without a usable previous result, or with more than half their blocks
+ * changed, are just handed to the delegate comparator.
+ *
+ * @author ppedemon
+ */
+public class IncrementalComparator implements Comparator {
+
+    private final Comparator delegate;
+
+    /**
+     * Build a new instance.
+     *
+     * @param delegate  byte oriented comparator used for changed blocks and full comparisons
+     */
+    public IncrementalComparator(Comparator delegate) {
+        if (!delegate.byteOriented()) {
+            throw new IllegalArgumentException("Incremental comparison requires a byte oriented comparator");
+        }
+        this.delegate = delegate;
+    }
+
+    @Override
+    public ComparisonResult compare(Comparison comparison, ComparisonOptions options) {
+        List<Integer> changed = options.isFull() ? reusableChanges(comparison) : null;
+        return Objects.nonNull(changed) ? recompare(comparison, changed) : delegate.compare(comparison, options);
+    }
+
+    @Override
+    public boolean countsBits() {
+        return delegate.countsBits();
+    }
+
+    /**
+     * Find blocks to compare if the previous result of the given comparison can be reused. For this,
+     * it must be complete and for sides of equal length, all fingerprints must be known, all sides
+     * must have the same length, and at most half of the blocks might have changed. Sides must also
+     * be present as text, rather than left out because they are spooled.
+     *
+     * @return  changed blocks, or null if the previous result can't be reused
+     */
+    private List<Integer> reusableChanges(Comparison comparison) {
+        ComparisonResult previous = comparison.getPreviousResult();
+        if (Objects.isNull(previous)
+                || previous.isTruncated()
+                || previous.getStatus() == ComparisonResult.Status.DIFFERENT_LENGTH
+                || Objects.isNull(comparison.getLeft())
+                || Objects.isNull(comparison.getRight())
+                || Objects.isNull(comparison.getLeftBlocks())
+                || Objects.isNull(comparison.getRightBlocks())
+                || Objects.isNull(comparison.getPreviousLeftBlocks())
+                || Objects.isNull(comparison.getPreviousRightBlocks())) {
+            return null;
+        }
+
+        int length = comparison.getLeftBlocks().getLength();
+        if (comparison.getRightBlocks().getLength() != length
+                || comparison.getPreviousLeftBlocks().getLength() != length
+                || comparison.getPreviousRightBlocks().getLength() != length) {
+            return null;
+        }
+
+        boolean[] isChanged = changedBlocks(comparison);
+        spreadChanges(previous.getDifferences(), isChanged);
+
+        List<Integer> changed = Lists.newArrayList();
+        for (int block = 0; block < isChanged.length; block++) {
+            if (isChanged[block]) {
+                changed.add(block);
+            }
+        }
+        return changed.size() * 2 <= isChanged.length ? changed : null;
+    }
+
+    /**
+     * Compute a result for the given comparison from its previous result, comparing changed blocks only.
+     */
+    private ComparisonResult recompare(Comparison comparison, List<Integer> changed) {
+        boolean[] isChanged = new boolean[comparison.getLeftBlocks().blocks()];
+        changed.forEach(block -> isChanged[block] = true);
+
+        // Changes were spread over whole spans, so previous spans are either unchanged or recompared
+        List<Span> spans = Lists.newArrayList();
+        for (Span span : comparison.getPreviousResult().getDifferences()) {
+            if (!isChanged[firstBlock(span)]) {
+                spans.add(span);
+            }
+        }
+
+        for (int block : changed) {
+            spans.addAll(compareBlock(comparison, block));
+        }
+
+        spans.sort((s1, s2) -> Integer.compare(s1.getOffset(), s2.getOffset()));
+        List<Span> differences = coalesce(spans);
+
+        // Hamming distance is known if the delegate counted bits for both the previous and current spans
+        Long hammingDistance = Objects.nonNull(comparison.getPreviousResult().getHammingDistance())
+                ? Span.totalBits(differences)
+                : null;
+
+        return new ComparisonResult(
+                differences.isEmpty() ? ComparisonResult.Status.EQUAL : ComparisonResult.Status.EQUAL_LENGTH,
+                differences,
+                null,
+                false,
+                hammingDistance,
+                Similarity.ofDifferences(comparison.getLeftBlocks().getLength(), differences));
+    }
+
+    /**
+     * Compare the given block of both sides of a comparison.
+     *
+     * @return  differences in the block, with offsets relative to the start of the sides
+     */
+    private List<Span> compareBlock(Comparison comparison, int block) {
+        int from = block * BlockFingerprints.ENCODED_BLOCK_SIZE;
+        Comparison blockComparison = new Comparison(comparison.getCmpId(), comparison.getUserId())
+                .setLeft(encodedBlock(comparison.getLeft(), from))
+                .setRight(encodedBlock(comparison.getRight(), from));
+
+        int offset = block * BlockFingerprints.BLOCK_SIZE;
+        List<Span> spans = Lists.newArrayList();
+        for (Span span : delegate.compare(blockComparison).getDifferences()) {
+            spans.add(new Span(offset + span.getOffset(), span.getLength(), span.getBits()));
+        }
+        return spans;
+    }
+
+    private String encodedBlock(String side, int from) {
+        return side.substring(from, Math.min(side.length(), from + BlockFingerprints.ENCODED_BLOCK_SIZE));
+    }
+
+    /**
+     * Find blocks whose fingerprint changed in any side since the previous result was computed.
+     */
+    private boolean[] changedBlocks(Comparison comparison) {
+        boolean[] changed = new boolean[comparison.getLeftBlocks().blocks()];
+        for (int block = 0; block < changed.length; block++) {
+            changed[block] = !comparison.getLeftBlocks().sameBlock(comparison.getPreviousLeftBlocks(), block)
+                    || !comparison.getRightBlocks().sameBlock(comparison.getPreviousRightBlocks(), block);
+        }
+        return changed;
+    }
+
+    /**
+     * Mark as changed all blocks of previous spans lying partially in changed blocks. Marking
+     * blocks might leave other spans partially changed, so repeat until no span needs marking.
+     */
+    private void spreadChanges(List<Span> spans, boolean[] isChanged) {
+        boolean spread = true;
+        while (spread) {
+            spread = false;
+            for (Span span : spans) {
+                boolean anyChanged = false;
+                boolean allChanged = true;
+                for (int block = firstBlock(span); block <= lastBlock(span); block++) {
+                    anyChanged |= isChanged[block];
+                    allChanged &= isChanged[block];
+                }
+                if (anyChanged && !allChanged) {
+                    for (int block = firstBlock(span); block <= lastBlock(span); block++) {
+                        isChanged[block] = true;
+                    }
+                    spread = true;
+                }
+            }
+        }
+    }
+
+    private int firstBlock(Span span) {
+        return span.getOffset() / BlockFingerprints.BLOCK_SIZE;
+    }
+
+    private int lastBlock(Span span) {
+        return (span.getOffset() + span.getLength() - 1) / BlockFingerprints.BLOCK_SIZE;
+    }
+
+    /**
+     * Merge adjacent spans in a list of spans sorted by offset.
+     */
+    private List<Span> coalesce(List<Span> spans) {
+        List<Span> result = Lists.newArrayList();
+        for (Span span : spans) {
+            if (!result.isEmpty()) {
+                Span last = result.get(result.size() - 1);
+                if (last.getOffset() + last.getLength() == span.getOffset()) {
+                    result.set(result.size() - 1, last.extend(span));
+                    continue;
+                }
+            }
+            result.add(span);
+        }
+        return result;
+    }
+}
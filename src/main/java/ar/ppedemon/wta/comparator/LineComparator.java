@@ -0,0 +1,268 @@
+package ar.ppedemon.wta.comparator;
+
+import ar.ppedemon.wta.model.ComparisonOptions;
+import ar.ppedemon.wta.model.ComparisonResult;
+import ar.ppedemon.wta.model.Edit;
+import ar.ppedemon.wta.model.Granularity;
+import ar.ppedemon.wta.model.Similarity;
+import ar.ppedemon.wta.model.Span;
+import com.google.common.collect.Lists;
+
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.List;
+
+/**
+ * Line or token oriented comparator, for text payloads such as logs, CSV or configuration files.
+ *
+ * Sides are split in units (lines, or runs of either whitespace or non whitespace bytes for
+ * tokens), hashing each unit in the same pass. Unit hash sequences are then diffed with
+ * {@link MyersDiff}, comparing unit bytes only when hashes match. Edits are mapped back to
+ * byte offsets and lengths covering whole units. Since there's usually far fewer units than
+ * bytes, this is much cheaper than a byte level diff for large text.
+ *
+ * Results always carry edits, whatever the length of the sides. For sides of equal length,
+ * differences hold the left hand side regions changed by the edits. If sides are farther
+ * apart than the maximum edit distance (in units), a single edit covering all units between
+ * the common prefix and suffix is reported.
+ *
+ * Bounded comparisons only answer whether sides are equal, since edits can't be computed
+ * from a prefix of the sides.
+ *
+ * @author ppedemon
+ */
+public class LineComparator extends AbstractComparator<LineComparator.Units> {
+
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private final Granularity granularity;
+
+    /**
+     * Build a new instance.
+     *
+     * @param granularity      either {@link Granularity#LINE} or {@link Granularity#TOKEN}
+     * @param maxEditDistance  maximum number of changed units explored when diffing
+     */
+    public LineComparator(Granularity granularity, int maxEditDistance) {
+        if (granularity == Granularity.BYTE) {
+            throw new IllegalArgumentException("Line comparator requires line or token granularity");
+        }
+        this.granularity = granularity;
+        maxEditDistance(maxEditDistance);
+    }
+
+    @Override
+    ComparisonResult compare(Units lhs, Units rhs, ComparisonOptions options) {
+        boolean equalLength = lhs.data.length == rhs.data.length;
+
+        if (options.isEqualityOnly() || options.isScanBounded()) {
+            if (Arrays.equals(lhs.data, rhs.data)) {
+                return equal(lhs);
+            }
+            return new ComparisonResult(status(equalLength), Lists.newArrayList(), null, true);
+        }
+
+        List<Edit> edits = edits(lhs, rhs);
+        if (edits.isEmpty()) {
+            return equal(lhs);
+        }
+
+        Similarity similarity = Similarity.ofEdits(lhs.data.length, rhs.data.length, edits);
+
+        boolean truncated = edits.size() > options.getMaxDifferences();
+        if (truncated) {
+            edits = Lists.newArrayList(edits.subList(0, options.getMaxDifferences()));
+        }
+
+        List<Span> differences = Lists.newArrayList();
+        if (equalLength) {
+            for (Edit edit : edits) {
+                if (edit.getLhsLength() > 0) {
+                    differences.add(new Span(edit.getLhsOffset(), edit.getLhsLength()));
+                }
+            }
+        }
+
+        return new ComparisonResult(status(equalLength), differences, edits, truncated, null, similarity);
+    }
+
+    private ComparisonResult equal(Units side) {
+        return new ComparisonResult(
+                ComparisonResult.Status.EQUAL,
+                Lists.newArrayList(),
+                null,
+                false,
+                null,
+                Similarity.equal(side.data.length));
+    }
+
+    private ComparisonResult.Status status(boolean equalLength) {
+        return equalLength ? ComparisonResult.Status.EQUAL_LENGTH : ComparisonResult.Status.DIFFERENT_LENGTH;
+    }
+
+    /**
+     * Compute edits in unit indexes, falling back to a single edit if sides are too far apart,
+     * and map them to byte offsets.
+     */
+    @Override
+    List<Edit> edits(Units lhs, Units rhs) {
+        List<Edit> unitEdits = super.edits(lhs, rhs);
+        if (unitEdits == null) {
+            unitEdits = wholeEdit(lhs, rhs);
+        }
+
+        List<Edit> edits = Lists.newArrayListWithCapacity(unitEdits.size());
+        for (Edit edit : unitEdits) {
+            edits.add(Edit.of(
+                    lhs.offset(edit.getLhsOffset()),
+                    lhs.offset(edit.getLhsOffset() + edit.getLhsLength()) - lhs.offset(edit.getLhsOffset()),
+                    rhs.offset(edit.getRhsOffset()),
+                    rhs.offset(edit.getRhsOffset() + edit.getRhsLength()) - rhs.offset(edit.getRhsOffset())));
+        }
+        return edits;
+    }
+
+    /**
+     * Single edit, in unit indexes, replacing all units between the common prefix and suffix.
+     * No edits at all if sides are equal.
+     */
+    private List<Edit> wholeEdit(Units lhs, Units rhs) {
+        int prefix = mismatch(lhs, rhs, 0, Math.min(lhs.count, rhs.count));
+        int suffix = 0;
+        while (suffix < lhs.count - prefix && suffix < rhs.count - prefix
+                && equal(lhs, lhs.count - suffix - 1, rhs, rhs.count - suffix - 1)) {
+            suffix++;
+        }
+        int lhsLength = lhs.count - prefix - suffix;
+        int rhsLength = rhs.count - prefix - suffix;
+        return lhsLength == 0 && rhsLength == 0
+                ? Lists.newArrayList()
+                : Lists.newArrayList(Edit.of(prefix, lhsLength, prefix, rhsLength));
+    }
+
+    @Override
+    public boolean byteOriented() {
+        return false;
+    }
+
+    @Override
+    Units decode(String base64Text) {
+        return new Units(Base64.getDecoder().decode(base64Text), granularity);
+    }
+
+    @Override
+    int length(Units side) {
+        return side.count;
+    }
+
+    @Override
+    int mismatch(Units lhs, Units rhs, int from, int to) {
+        int i = from;
+        while (i < to && equal(lhs, i, rhs, i)) {
+            i++;
+        }
+        return i;
+    }
+
+    @Override
+    int match(Units lhs, Units rhs, int from, int to) {
+        int i = from;
+        while (i < to && !equal(lhs, i, rhs, i)) {
+            i++;
+        }
+        return i;
+    }
+
+    @Override
+    boolean equal(Units lhs, int i, Units rhs, int j) {
+        if (lhs.hashes[i] != rhs.hashes[j]) {
+            return false;
+        }
+
+        // Rule out hash collisions
+        int length = lhs.offset(i + 1) - lhs.offset(i);
+        if (rhs.offset(j + 1) - rhs.offset(j) != length) {
+            return false;
+        }
+        int lhsStart = lhs.offset(i);
+        int rhsStart = rhs.offset(j);
+        for (int k = 0; k < length; k++) {
+            if (lhs.data[lhsStart + k] != rhs.data[rhsStart + k]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Count differing bits of the bytes in units {@code [from, to)} of each side, aligned by their
+     * first byte. Bytes in the longer range with no counterpart count as eight differing bits.
+     */
+    @Override
+    long differingBits(Units lhs, Units rhs, int from, int to) {
+        int lhsStart = lhs.offset(from);
+        int rhsStart = rhs.offset(from);
+        int lhsLength = lhs.offset(to) - lhsStart;
+        int rhsLength = rhs.offset(to) - rhsStart;
+
+        long bits = (long) Byte.SIZE * Math.abs(lhsLength - rhsLength);
+        for (int k = 0; k < Math.min(lhsLength, rhsLength); k++) {
+            bits += Integer.bitCount((lhs.data[lhsStart + k] ^ rhs.data[rhsStart + k]) & 0xff);
+        }
+        return bits;
+    }
+
+    /**
+     * Decoded side split in units, with the offset and a 64 bit FNV-1a hash of every unit.
+     */
+    static class Units {
+        final byte[] data;
+        final int count;
+        final long[] hashes;
+        private final int[] offsets;
+
+        Units(byte[] data, Granularity granularity) {
+            this.data = data;
+
+            int[] starts = new int[16];
+            long[] unitHashes = new long[16];
+            int units = 0;
+
+            long hash = FNV_OFFSET;
+            for (int i = 0; i < data.length; i++) {
+                hash = (hash ^ (data[i] & 0xff)) * FNV_PRIME;
+
+                boolean last = i + 1 == data.length
+                        || (granularity == Granularity.LINE
+                            ? data[i] == '\n'
+                            : whitespace(data[i]) != whitespace(data[i + 1]));
+
+                if (last) {
+                    if (units + 1 == starts.length) {
+                        starts = Arrays.copyOf(starts, starts.length * 2);
+                        unitHashes = Arrays.copyOf(unitHashes, unitHashes.length * 2);
+                    }
+                    unitHashes[units] = hash;
+                    starts[++units] = i + 1;
+                    hash = FNV_OFFSET;
+                }
+            }
+
+            this.count = units;
+            this.hashes = unitHashes;
+            this.offsets = starts;
+        }
+
+        /**
+         * Byte offset where the given unit starts, or the data length for {@code unit == count}.
+         */
+        int offset(int unit) {
+            return offsets[unit];
+        }
+
+        private static boolean whitespace(byte b) {
+            return b == ' ' || b == '\t' || b == '\n' || b == '\r';
+        }
+    }
+}
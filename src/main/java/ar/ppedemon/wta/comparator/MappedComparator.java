@@ -0,0 +1,103 @@
+package ar.ppedemon.wta.comparator;
+
+import ar.ppedemon.wta.data.SideSpool;
+import ar.ppedemon.wta.model.Comparison;
+import ar.ppedemon.wta.model.ComparisonOptions;
+import ar.ppedemon.wta.model.ComparisonResult;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Base64;
+import java.util.Objects;
+import java.util.Optional;
+
+/**
+ * Byte comparator running over memory mapped files for sides spooled to a {@link SideSpool}.
+ * Spooled sides are never decoded nor copied to the heap: the OS pages file contents in as
+ * they are scanned. Sides that weren't spooled (too small, or spooled elsewhere) are decoded
+ * and wrapped in heap buffers, so spans are the same as the ones of {@link ByteArrayComparator}.
+ *
+ * Mappings are released when buffers are garbage collected.
+ *
+ * @author ppedemon
+ */
+public class MappedComparator extends AbstractComparator<ByteBuffer> {
+
+    private final ScanMode scanMode;
+    private final SideSpool spool;
+
+    /**
+     * Build a new instance.
+     *
+     * @param scanMode  strategy used to scan sides
+     * @param spool     spool where large sides are found
+     */
+    public MappedComparator(ScanMode scanMode, SideSpool spool) {
+        this.scanMode = scanMode;
+        this.spool = spool;
+    }
+
+    @Override
+    public ComparisonResult compare(Comparison comparison, ComparisonOptions options) {
+        Optional<Path> lhsFile = spool.find(comparison.getLeftDigest());
+        Optional<Path> rhsFile = spool.find(comparison.getRightDigest());
+
+        if (lhsFile.isPresent() && rhsFile.isPresent()) {
+            ByteBuffer lhs = map(lhsFile.get());
+            ByteBuffer rhs = map(rhsFile.get());
+            if (Objects.nonNull(lhs) && Objects.nonNull(rhs)) {
+                return compare(lhs, rhs, options);
+            }
+        }
+
+        return super.compare(comparison, options);
+    }
+
+    /**
+     * Map the given file.
+     *
+     * @param file  file to map
+     * @return  read only buffer mapping the whole file, or null if the file can't be mapped
+     */
+    private ByteBuffer map(Path file) {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        } catch (IOException | IllegalArgumentException | UnsupportedOperationException e) {
+            // Removed from spool, larger than 2Gb, or in a file system not supporting mappings: decode it instead
+            return null;
+        }
+    }
+
+    @Override
+    ByteBuffer decode(String base64Text) {
+        return ByteBuffer.wrap(Base64.getDecoder().decode(base64Text));
+    }
+
+    @Override
+    int length(ByteBuffer side) {
+        return side.limit();
+    }
+
+    @Override
+    int mismatch(ByteBuffer lhs, ByteBuffer rhs, int from, int to) {
+        return scanMode.mismatch(lhs, rhs, from, to);
+    }
+
+    @Override
+    int match(ByteBuffer lhs, ByteBuffer rhs, int from, int to) {
+        return scanMode.match(lhs, rhs, from, to);
+    }
+
+    @Override
+    boolean equal(ByteBuffer lhs, int i, ByteBuffer rhs, int j) {
+        return lhs.get(i) == rhs.get(j);
+    }
+
+    @Override
+    long differingBits(ByteBuffer lhs, ByteBuffer rhs, int from, int to) {
+        return scanMode.differingBits(lhs, rhs, from, to);
+    }
+}
@@ -0,0 +1,186 @@
+package ar.ppedemon.wta.comparator;
+
+import ar.ppedemon.wta.model.Edit;
+import com.google.common.collect.Lists;
+
+import java.util.List;
+
+/**
+ * Linear space variant of Myers' O(ND) difference algorithm, as described in
+ * "An O(ND) Difference Algorithm and Its Variations" (E. Myers, 1986).
+ *
+ * The algorithm finds the middle snake of an optimal edit path by searching
+ * simultaneously from both ends of the edit graph, and then recurses on the
+ * regions before and after the snake. Both the running time and the space
+ * are bounded by a maximum edit distance: if sides are farther apart than
+ * that, the search is abandoned and no edits are produced.
+ *
+ * @param <T> decoded side type, as interpreted by an {@link AbstractComparator}
+ *
+ * @author ppedemon
+ */
+class MyersDiff<T> {
+
+    private final AbstractComparator<T> comparator;
+    private final T lhs;
+    private final T rhs;
+
+    private final List<Edit> edits = Lists.newArrayList();
+
+    private int[] forward;
+    private int[] backward;
+
+    MyersDiff(AbstractComparator<T> comparator, T lhs, T rhs) {
+        this.comparator = comparator;
+        this.lhs = lhs;
+        this.rhs = rhs;
+    }
+
+    /**
+     * Compute the edits transforming the left hand side into the right hand side.
+     * Adjacent insertions and deletions are coalesced into replacements.
+     *
+     * @param maxDistance  maximum edit distance to explore
+     * @return  list of {@link Edit} instances, or {@code null} if sides are
+     *   farther apart than the given maximum distance
+     */
+    List<Edit> edits(int maxDistance) {
+        int bound = maxDistance / 2 + 2;
+        forward = new int[2 * bound + 1];
+        backward = new int[2 * bound + 1];
+
+        if (!diff(0, comparator.length(lhs), 0, comparator.length(rhs), maxDistance)) {
+            return null;
+        }
+        return edits;
+    }
+
+    /**
+     * Diff the regions {@code [lhsFrom, lhsTo)} and {@code [rhsFrom, rhsTo)}.
+     *
+     * @return  whether the regions are at most {@code maxDistance} edits apart
+     */
+    private boolean diff(int lhsFrom, int lhsTo, int rhsFrom, int rhsTo, int maxDistance) {
+
+        // Strip common prefix and suffix
+        while (lhsFrom < lhsTo && rhsFrom < rhsTo && comparator.equal(lhs, lhsFrom, rhs, rhsFrom)) {
+            lhsFrom++;
+            rhsFrom++;
+        }
+        while (lhsFrom < lhsTo && rhsFrom < rhsTo && comparator.equal(lhs, lhsTo - 1, rhs, rhsTo - 1)) {
+            lhsTo--;
+            rhsTo--;
+        }
+
+        if (lhsFrom == lhsTo || rhsFrom == rhsTo) {
+            if (lhsTo - lhsFrom + rhsTo - rhsFrom > maxDistance) {
+                return false;
+            }
+            if (lhsFrom < lhsTo || rhsFrom < rhsTo) {
+                add(lhsFrom, lhsTo - lhsFrom, rhsFrom, rhsTo - rhsFrom);
+            }
+            return true;
+        }
+
+        int[] snake = middleSnake(lhsFrom, lhsTo, rhsFrom, rhsTo, maxDistance);
+        if (snake == null) {
+            return false;
+        }
+
+        // Distance found is exact, so it's a valid bound for both halves
+        int distance = snake[4];
+        return diff(lhsFrom, snake[0], rhsFrom, snake[1], distance)
+                && diff(snake[2], lhsTo, snake[3], rhsTo, distance);
+    }
+
+    /**
+     * Find the middle snake of an optimal path from {@code (lhsFrom, rhsFrom)} to
+     * {@code (lhsTo, rhsTo)}. Both regions are assumed not empty, and differing
+     * in their first and last elements, so the edit distance is at least two.
+     *
+     * @return  array {@code [x, y, u, v, d]}, where {@code (x, y)} and {@code (u, v)} are the
+     *   snake start and end points and {@code d} is the edit distance, or {@code null} if
+     *   the edit distance exceeds the given maximum
+     */
+    private int[] middleSnake(int lhsFrom, int lhsTo, int rhsFrom, int rhsTo, int maxDistance) {
+        int n = lhsTo - lhsFrom;
+        int m = rhsTo - rhsFrom;
+        int delta = n - m;
+        boolean odd = (delta & 1) != 0;
+
+        // Diagonal k is stored at index k + offset, with k ranging over [-bound, bound]
+        int offset = forward.length / 2;
+        int maxD = Math.min((n + m + 1) / 2, (maxDistance + 1) / 2);
+
+        forward[offset + 1] = 0;
+        backward[offset + 1] = 0;
+
+        for (int d = 0; d <= maxD; d++) {
+
+            // Forward search, x measured from the region start
+            for (int k = -d; k <= d; k += 2) {
+                int x = k == -d || (k != d && forward[offset + k - 1] < forward[offset + k + 1])
+                        ? forward[offset + k + 1]
+                        : forward[offset + k - 1] + 1;
+                int y = x - k;
+                int startX = x;
+                int startY = y;
+                while (x < n && y < m && comparator.equal(lhs, lhsFrom + x, rhs, rhsFrom + y)) {
+                    x++;
+                    y++;
+                }
+                forward[offset + k] = x;
+
+                int c = delta - k;
+                if (odd && c >= -(d - 1) && c <= d - 1 && x + backward[offset + c] >= n) {
+                    return snake(lhsFrom + startX, rhsFrom + startY, lhsFrom + x, rhsFrom + y, 2 * d - 1, maxDistance);
+                }
+            }
+
+            // Backward search, x measured from the region end
+            for (int c = -d; c <= d; c += 2) {
+                int x = c == -d || (c != d && backward[offset + c - 1] < backward[offset + c + 1])
+                        ? backward[offset + c + 1]
+                        : backward[offset + c - 1] + 1;
+                int y = x - c;
+                int startX = x;
+                int startY = y;
+                while (x < n && y < m && comparator.equal(lhs, lhsTo - x - 1, rhs, rhsTo - y - 1)) {
+                    x++;
+                    y++;
+                }
+                backward[offset + c] = x;
+
+                int k = delta - c;
+                if (!odd && k >= -d && k <= d && x + forward[offset + k] >= n) {
+                    return snake(lhsTo - x, rhsTo - y, lhsTo - startX, rhsTo - startY, 2 * d, maxDistance);
+                }
+            }
+        }
+
+        return null;
+    }
+
+    private int[] snake(int x, int y, int u, int v, int distance, int maxDistance) {
+        return distance > maxDistance ? null : new int[] {x, y, u, v, distance};
+    }
+
+    /**
+     * Add an edit, merging it with the previous one if both are adjacent.
+     */
+    private void add(int lhsOffset, int lhsLength, int rhsOffset, int rhsLength) {
+        if (!edits.isEmpty()) {
+            Edit last = edits.get(edits.size() - 1);
+            if (last.getLhsOffset() + last.getLhsLength() == lhsOffset
+                    && last.getRhsOffset() + last.getRhsLength() == rhsOffset) {
+                edits.set(edits.size() - 1, Edit.of(
+                        last.getLhsOffset(),
+                        last.getLhsLength() + lhsLength,
+                        last.getRhsOffset(),
+                        last.getRhsLength() + rhsLength));
+                return;
+            }
+        }
+        edits.add(Edit.of(lhsOffset, lhsLength, rhsOffset, rhsLength));
+    }
+}
@@ -0,0 +1,99 @@
+package ar.ppedemon.wta.comparator;
+
+import ar.ppedemon.wta.model.ComparisonOptions;
+import ar.ppedemon.wta.model.ComparisonResult;
+import ar.ppedemon.wta.model.Edit;
+import ar.ppedemon.wta.model.Similarity;
+import ar.ppedemon.wta.model.Span;
+import com.google.common.collect.Lists;
+
+import java.util.List;
+import java.util.Objects;
+import java.util.function.Supplier;
+
+/**
+ * Helpers building {@link ComparisonResult} instances honoring {@link ComparisonOptions}.
+ *
+ * @author ppedemon
+ */
+final class Results {
+
+    private Results() {}
+
+    /**
+     * Build result for sides of different length. Edits aren't computed if the options
+     * ask for equality only or bound the scanned region, and are cut to the maximum
+     * number of differences otherwise. Similarity is known whenever edits are computed,
+     * since it's taken from all of them before cutting.
+     *
+     * @param options    options bounding the comparison
+     * @param lhsLength  left hand side length
+     * @param rhsLength  right hand side length
+     * @param edits      computation of the edits transforming lhs into rhs, possibly null
+     * @return  {@link ComparisonResult} instance
+     */
+    static ComparisonResult differentLength(
+            ComparisonOptions options, long lhsLength, long rhsLength, Supplier<List<Edit>> edits) {
+
+        if (options.isEqualityOnly() || options.isScanBounded()) {
+            return new ComparisonResult(ComparisonResult.Status.DIFFERENT_LENGTH, Lists.newArrayList(), null, true);
+        }
+
+        List<Edit> result = edits.get();
+        if (Objects.isNull(result)) {
+            return new ComparisonResult(ComparisonResult.Status.DIFFERENT_LENGTH, Lists.newArrayList());
+        }
+
+        Similarity similarity = Similarity.ofEdits(lhsLength, rhsLength, result);
+        boolean truncated = result.size() > options.getMaxDifferences();
+        return new ComparisonResult(
+                ComparisonResult.Status.DIFFERENT_LENGTH,
+                Lists.newArrayList(),
+                truncated ? Lists.newArrayList(result.subList(0, options.getMaxDifferences())) : result,
+                truncated,
+                null,
+                similarity);
+    }
+
+    /**
+     * Build result for sides of equal length. Equality, the Hamming distance and similarity
+     * are only known if no differences were left out, so a truncated result with no
+     * differences reports equal length, not equality.
+     *
+     * @param options      options bounding the comparison
+     * @param length       sides length
+     * @param differences  differences found
+     * @param truncated    whether differences might have been left out
+     * @param bitCounts    whether differences carry their differing bits
+     * @return  {@link ComparisonResult} instance, with its Hamming distance if bits were counted
+     */
+    static ComparisonResult equalLength(
+            ComparisonOptions options, long length, List<Span> differences, boolean truncated, boolean bitCounts) {
+
+        if (differences.isEmpty() && !truncated) {
+            return new ComparisonResult(
+                    ComparisonResult.Status.EQUAL,
+                    differences,
+                    null,
+                    false,
+                    bitCounts ? 0L : null,
+                    Similarity.equal(length));
+        }
+
+        if (options.isEqualityOnly() || truncated) {
+            return new ComparisonResult(
+                    ComparisonResult.Status.EQUAL_LENGTH,
+                    options.isEqualityOnly() ? Lists.newArrayList() : differences,
+                    null,
+                    true);
+        }
+
+        return new ComparisonResult(
+                ComparisonResult.Status.EQUAL_LENGTH,
+                differences,
+                null,
+                false,
+                bitCounts ? Span.totalBits(differences) : null,
+                Similarity.ofDifferences(length, differences));
+    }
+}
@@ -0,0 +1,177 @@
+package ar.ppedemon.wta.comparator;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Strategies for scanning byte arrays looking for mismatches and matches.
+ * Scans are also available over byte buffers (e.g., memory mapped files),
+ * using absolute accessors only, so buffers can be shared between threads.
+ *
+ * @author ppedemon
+ */
+public enum ScanMode {
+
+    /**
+     * Step one byte at a time.
+     */
+    BYTE {
+        @Override
+        int mismatch(byte[] lhs, byte[] rhs, int from, int to) {
+            int i = from;
+            while (i < to && lhs[i] == rhs[i]) {
+                i++;
+            }
+            return i;
+        }
+
+        @Override
+        int mismatch(ByteBuffer lhs, ByteBuffer rhs, int from, int to) {
+            int i = from;
+            while (i < to && lhs.get(i) == rhs.get(i)) {
+                i++;
+            }
+            return i;
+        }
+    },
+
+    /**
+     * Jump over equal regions a long word (8 bytes) at a time, locating the exact
+     * differing byte from the xor of the first differing words. Words are read big
+     * endian, so the first differing byte is given by the xor's leading zeros. Array
+     * words are read in place (see {@link Words}), so scanning allocates nothing.
+     */
+    WORD {
+        @Override
+        int mismatch(byte[] lhs, byte[] rhs, int from, int to) {
+            int i = from;
+            while (i + Long.BYTES <= to) {
+                long diff = Words.longAt(lhs, i) ^ Words.longAt(rhs, i);
+                if (diff != 0) {
+                    return i + Long.numberOfLeadingZeros(diff) / Byte.SIZE;
+                }
+                i += Long.BYTES;
+            }
+
+            return BYTE.mismatch(lhs, rhs, i, to);
+        }
+
+        @Override
+        int mismatch(ByteBuffer lhs, ByteBuffer rhs, int from, int to) {
+            int i = from;
+            while (i + Long.BYTES <= to) {
+                long diff = lhs.getLong(i) ^ rhs.getLong(i);
+                if (diff != 0) {
+                    return i + Long.numberOfLeadingZeros(diff) / Byte.SIZE;
+                }
+                i += Long.BYTES;
+            }
+
+            return BYTE.mismatch(lhs, rhs, i, to);
+        }
+    };
+
+    /**
+     * Find the first position in {@code [from, to)} where both arrays differ.
+     *
+     * @param lhs   lhs array
+     * @param rhs   rhs array
+     * @param from  start position, inclusive
+     * @param to    end position, exclusive
+     * @return  first differing position, or {@code to} if arrays are equal in the given range
+     */
+    abstract int mismatch(byte[] lhs, byte[] rhs, int from, int to);
+
+    /**
+     * Find the first position in {@code [from, to)} where both buffers differ.
+     * Buffers must be big endian, as they are by default.
+     *
+     * @param lhs   lhs buffer
+     * @param rhs   rhs buffer
+     * @param from  start position, inclusive
+     * @param to    end position, exclusive
+     * @return  first differing position, or {@code to} if buffers are equal in the given range
+     */
+    abstract int mismatch(ByteBuffer lhs, ByteBuffer rhs, int from, int to);
+
+    /**
+     * Find the first position in {@code [from, to)} where both arrays are equal.
+     * Differing regions are expected to be short, so this steps one byte at a time.
+     *
+     * @param lhs   lhs array
+     * @param rhs   rhs array
+     * @param from  start position, inclusive
+     * @param to    end position, exclusive
+     * @return  first equal position, or {@code to} if arrays differ in the whole range
+     */
+    int match(byte[] lhs, byte[] rhs, int from, int to) {
+        int i = from;
+        while (i < to && lhs[i] != rhs[i]) {
+            i++;
+        }
+        return i;
+    }
+
+    /**
+     * Find the first position in {@code [from, to)} where both buffers are equal.
+     *
+     * @param lhs   lhs buffer
+     * @param rhs   rhs buffer
+     * @param from  start position, inclusive
+     * @param to    end position, exclusive
+     * @return  first equal position, or {@code to} if buffers differ in the whole range
+     */
+    int match(ByteBuffer lhs, ByteBuffer rhs, int from, int to) {
+        int i = from;
+        while (i < to && lhs.get(i) != rhs.get(i)) {
+            i++;
+        }
+        return i;
+    }
+
+    /**
+     * Count the bits differing between both arrays in {@code [from, to)}, xor-ing
+     * a long word (8 bytes) at a time and counting the bits set in the result.
+     *
+     * @param lhs   lhs array
+     * @param rhs   rhs array
+     * @param from  start position, inclusive
+     * @param to    end position, exclusive
+     * @return  number of differing bits in the given range
+     */
+    long differingBits(byte[] lhs, byte[] rhs, int from, int to) {
+        long bits = 0;
+        int i = from;
+        while (i + Long.BYTES <= to) {
+            bits += Long.bitCount(Words.longAt(lhs, i) ^ Words.longAt(rhs, i));
+            i += Long.BYTES;
+        }
+        while (i < to) {
+            bits += Integer.bitCount((lhs[i] ^ rhs[i]) & 0xff);
+            i++;
+        }
+        return bits;
+    }
+
+    /**
+     * Count the bits differing between both buffers in {@code [from, to)}.
+     *
+     * @param lhs   lhs buffer
+     * @param rhs   rhs buffer
+     * @param from  start position, inclusive
+     * @param to    end position, exclusive
+     * @return  number of differing bits in the given range
+     */
+    long differingBits(ByteBuffer lhs, ByteBuffer rhs, int from, int to) {
+        long bits = 0;
+        int i = from;
+        while (i + Long.BYTES <= to) {
+            bits += Long.bitCount(lhs.getLong(i) ^ rhs.getLong(i));
+            i += Long.BYTES;
+        }
+        while (i < to) {
+            bits += Integer.bitCount((lhs.get(i) ^ rhs.get(i)) & 0xff);
+            i++;
+        }
+        return bits;
+    }
+}
@@ -0,0 +1,205 @@
+package ar.ppedemon.wta.comparator;
+
+import ar.ppedemon.wta.data.ComparisonDao;
+import ar.ppedemon.wta.data.SideChunkStore;
+import ar.ppedemon.wta.data.SideSpool;
+import ar.ppedemon.wta.model.Comparison;
+import ar.ppedemon.wta.model.ComparisonOptions;
+import ar.ppedemon.wta.model.ComparisonResult;
+import ar.ppedemon.wta.model.Granularity;
+import ar.ppedemon.wta.model.SideChunks;
+import ar.ppedemon.wta.model.SideCodec;
+import com.google.common.io.ByteStreams;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Base64;
+import java.util.Objects;
+import java.util.Optional;
+
+/**
+ * Comparator for comparisons with sides not stored as plain base64 text: sides stored in a
+ * {@link SideChunkStore}, or encoded by a {@link SideCodec}. Other comparisons are handed to
+ * a delegate comparator.
+ *
+ * Byte granularity comparisons of chunked sides, or of encoded sides of equal length, stream
+ * both sides (a chunk at a time, decoding them on the fly) through a {@link StreamingComparator}.
+ * Hence, such sides are never held in memory as a whole. Otherwise, sides are read and decoded,
+ * and handed to the delegate comparator, which might need whole sides (e.g., for computing
+ * edits, or for line or token granularity).
+ *
+ * Lengths of encoded sides are taken from their block fingerprints, always stored along
+ * with encoded sides.
+ *
+ * Comparisons might also come with sides left out because they are spooled to a {@link SideSpool}
+ * (see {@link ar.ppedemon.wta.data.SpoolingComparisonDao}). Byte granularity comparisons of such
+ * sides are handed to the delegate as they are, for it to map the spooled files. Otherwise, sides
+ * are read from the spool.
+ *
+ * @author ppedemon
+ */
+public class StoredSideComparator implements Comparator {
+
+    private final Comparator delegate;
+    private final SideChunkStore chunkStore;
+    private final SideSpool spool;
+    private final StreamingComparator streamingComparator;
+
+    /**
+     * Build a new instance.
+     *
+     * @param delegate             comparator for comparisons of plain base64 text sides
+     * @param chunkStore           store holding chunked sides
+     * @param streamingComparator  comparator for streaming chunked or encoded sides
+     */
+    public StoredSideComparator(Comparator delegate, SideChunkStore chunkStore, StreamingComparator streamingComparator) {
+        this(delegate, chunkStore, null, streamingComparator);
+    }
+
+    /**
+     * Build a new instance, for comparisons that might come with spooled sides left out.
+     *
+     * @param delegate             comparator for comparisons of plain base64 text sides
+     * @param chunkStore           store holding chunked sides
+     * @param spool                spool holding sides left out of comparisons
+     * @param streamingComparator  comparator for streaming chunked or encoded sides
+     */
+    public StoredSideComparator(
+            Comparator delegate,
+            SideChunkStore chunkStore,
+            SideSpool spool,
+            StreamingComparator streamingComparator) {
+        this.delegate = delegate;
+        this.chunkStore = chunkStore;
+        this.spool = spool;
+        this.streamingComparator = streamingComparator;
+    }
+
+    @Override
+    public ComparisonResult compare(Comparison comparison, ComparisonOptions options) {
+        if (spooled(comparison, ComparisonDao.Side.LEFT) || spooled(comparison, ComparisonDao.Side.RIGHT)) {
+            try {
+                return options.getGranularity() == Granularity.BYTE
+                        ? delegate.compare(comparison, options)
+                        : delegate.compare(plain(comparison), options);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        if (!comparison.chunked() && !comparison.encoded()) {
+            return delegate.compare(comparison, options);
+        }
+
+        try {
+            long length = length(comparison, ComparisonDao.Side.LEFT);
+            long rhsLength = length(comparison, ComparisonDao.Side.RIGHT);
+            if (options.getGranularity() == Granularity.BYTE && (comparison.chunked() || length == rhsLength)) {
+                try (InputStream lhs = open(comparison, ComparisonDao.Side.LEFT);
+                     InputStream rhs = open(comparison, ComparisonDao.Side.RIGHT)) {
+                    return streamingComparator.compare(lhs, length, rhs, rhsLength, options);
+                }
+            }
+            return delegate.compare(plain(comparison), options);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public boolean byteOriented() {
+        return delegate.byteOriented();
+    }
+
+    @Override
+    public boolean countsBits() {
+        return delegate.countsBits();
+    }
+
+    /**
+     * Copy of the given comparison with all sides read, decoded, and stored in the comparison.
+     */
+    private Comparison plain(Comparison comparison) throws IOException {
+        return new Comparison(comparison.getCmpId(), comparison.getUserId())
+                .setLeft(read(comparison, ComparisonDao.Side.LEFT))
+                .setRight(read(comparison, ComparisonDao.Side.RIGHT))
+                .setLeftDigest(comparison.getLeftDigest())
+                .setRightDigest(comparison.getRightDigest())
+                .setLeftBlocks(comparison.getLeftBlocks())
+                .setRightBlocks(comparison.getRightBlocks())
+                .setVersion(comparison.getVersion())
+                .setPreviousResult(comparison.getPreviousResult())
+                .setPreviousLeftBlocks(comparison.getPreviousLeftBlocks())
+                .setPreviousRightBlocks(comparison.getPreviousRightBlocks());
+    }
+
+    private String read(Comparison comparison, ComparisonDao.Side side) throws IOException {
+        if (spooled(comparison, side)) {
+            return Base64.getEncoder().encodeToString(Files.readAllBytes(spooledFile(comparison, side)));
+        }
+        if (Objects.isNull(chunks(comparison, side)) && codec(comparison, side) == SideCodec.NONE) {
+            return text(comparison, side);
+        }
+        try (InputStream in = open(comparison, side)) {
+            return Base64.getEncoder().encodeToString(ByteStreams.toByteArray(in));
+        }
+    }
+
+    private InputStream open(Comparison comparison, ComparisonDao.Side side) {
+        SideChunks chunks = chunks(comparison, side);
+        InputStream in;
+        if (Objects.isNull(chunks)) {
+            in = Base64Text.decodingStream(text(comparison, side));
+        } else {
+            in = chunkStore.open(comparison.getUserId(), comparison.getCmpId(), side, digest(comparison, side), chunks);
+        }
+        return codec(comparison, side).decode(in);
+    }
+
+    private long length(Comparison comparison, ComparisonDao.Side side) {
+        if (codec(comparison, side) != SideCodec.NONE) {
+            return side == ComparisonDao.Side.LEFT
+                    ? comparison.getLeftBlocks().getLength()
+                    : comparison.getRightBlocks().getLength();
+        }
+        SideChunks chunks = chunks(comparison, side);
+        return Objects.isNull(chunks) ? Base64Text.decodedLength(text(comparison, side)) : chunks.getLength();
+    }
+
+    /**
+     * Answer whether a side was left out of the comparison because it's spooled.
+     */
+    private boolean spooled(Comparison comparison, ComparisonDao.Side side) {
+        String text = side == ComparisonDao.Side.LEFT ? comparison.getLeft() : comparison.getRight();
+        return Objects.isNull(text)
+                && Objects.isNull(chunks(comparison, side))
+                && Objects.nonNull(digest(comparison, side));
+    }
+
+    private Path spooledFile(Comparison comparison, ComparisonDao.Side side) {
+        String digest = digest(comparison, side);
+        Optional<Path> file = Objects.isNull(spool) ? Optional.empty() : spool.find(digest);
+        return file.orElseThrow(() -> new IllegalStateException("Spooled side " + digest + " not found"));
+    }
+
+    private String digest(Comparison comparison, ComparisonDao.Side side) {
+        return side == ComparisonDao.Side.LEFT ? comparison.getLeftDigest() : comparison.getRightDigest();
+    }
+
+    private String text(Comparison comparison, ComparisonDao.Side side) {
+        String text = side == ComparisonDao.Side.LEFT ? comparison.getLeft() : comparison.getRight();
+        return Objects.requireNonNull(text, "Comparison side is null");
+    }
+
+    private SideChunks chunks(Comparison comparison, ComparisonDao.Side side) {
+        return side == ComparisonDao.Side.LEFT ? comparison.getLeftChunks() : comparison.getRightChunks();
+    }
+
+    private SideCodec codec(Comparison comparison, ComparisonDao.Side side) {
+        SideCodec codec = side == ComparisonDao.Side.LEFT ? comparison.getLeftCodec() : comparison.getRightCodec();
+        return Objects.isNull(codec) ? SideCodec.NONE : codec;
+    }
+}
@@ -0,0 +1,193 @@
+package ar.ppedemon.wta.comparator;
+
+import ar.ppedemon.wta.model.Comparison;
+import ar.ppedemon.wta.model.ComparisonOptions;
+import ar.ppedemon.wta.model.ComparisonResult;
+import ar.ppedemon.wta.model.Span;
+import com.google.common.collect.Lists;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Streaming byte comparator. This class interprets base64 encoded sides as byte
+ * arrays, like {@link ByteArrayComparator}, but it never materializes them. Instead,
+ * both sides are decoded in lockstep through fixed-size buffers, and spans are
+ * emitted as they are found. Hence, memory required by a comparison (excluding
+ * reported spans) is constant, regardless of the size of the sides.
+ *
+ * @author ppedemon
+ */
+public class StreamingComparator implements Comparator {
+
+    private static final int DEFAULT_BUFFER_SIZE = 1 << 16;
+
+    private final ScanMode scanMode;
+    private final int bufferSize;
+    private boolean bitCounts;
+
+    /**
+     * Build a new instance scanning a word at a time with default sized buffers.
+     */
+    public StreamingComparator() {
+        this(ScanMode.WORD, DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * Build a new instance with the given scan mode and buffer size.
+     *
+     * @param scanMode    strategy used to scan decoded buffers
+     * @param bufferSize  size in bytes of the buffer used for decoding each side
+     */
+    public StreamingComparator(ScanMode scanMode, int bufferSize) {
+        this.scanMode = scanMode;
+        this.bufferSize = bufferSize;
+    }
+
+    /**
+     * Count differing bits in every span, and the Hamming distance of the sides.
+     * Bits are counted on each buffer as it's scanned, so sides are still decoded once.
+     *
+     * @param bitCounts  whether to count differing bits
+     * @return  this comparator
+     */
+    public StreamingComparator bitCounts(boolean bitCounts) {
+        this.bitCounts = bitCounts;
+        return this;
+    }
+
+    @Override
+    public boolean countsBits() {
+        return bitCounts;
+    }
+
+    @Override
+    public ComparisonResult compare(Comparison comparison, ComparisonOptions options) {
+        Objects.requireNonNull(comparison.getLeft(), "Left hand side of comparison is null");
+        Objects.requireNonNull(comparison.getRight(), "Right hand side of comparison is null");
+
+        try (InputStream lhs = Base64Text.decodingStream(comparison.getLeft());
+             InputStream rhs = Base64Text.decodingStream(comparison.getRight())) {
+            return compare(
+                    lhs, Base64Text.decodedLength(comparison.getLeft()),
+                    rhs, Base64Text.decodedLength(comparison.getRight()),
+                    options);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Compare two streams of decoded side data, reading them only if they have equal length.
+     * Streams aren't closed.
+     *
+     * @param lhs        left hand side stream
+     * @param length     left hand side length
+     * @param rhs        right hand side stream
+     * @param rhsLength  right hand side length
+     * @param options    options bounding the comparison
+     * @return  comparison result
+     * @throws IOException if any stream can't be read
+     */
+    public ComparisonResult compare(InputStream lhs, long length, InputStream rhs, long rhsLength,
+            ComparisonOptions options) throws IOException {
+        // Lengths are known beforehand, no need to decode anything if they differ
+        if (length != rhsLength) {
+            return Results.differentLength(options, length, rhsLength, () -> null);
+        }
+
+        int to = (int)Math.min(length, options.getMaxBytes());
+        int limit = options.differencesLimit();
+
+        List<Span> differences = differences(lhs, rhs, to, limit);
+        boolean truncated = to < length || differences.size() >= limit;
+        return Results.equalLength(options, length, differences, truncated, bitCounts);
+    }
+
+    /**
+     * Compute list of differences for the first {@code to} bytes of two streams of
+     * equal length. A span that is still open at the end of a buffer is carried over
+     * to the next one. Decoding stops as soon as {@code limit} spans are found.
+     *
+     * @param lhs    lhs side of comparison
+     * @param rhs    rhs side of comparison
+     * @param to     number of bytes to compare
+     * @param limit  maximum number of differences to look for
+     * @return list of {@link Span} instances
+     * @throws IOException if any stream can't be read
+     */
+    private List<Span> differences(InputStream lhs, InputStream rhs, int to, int limit) throws IOException {
+        List<Span> differences = Lists.newArrayList();
+
+        byte[] lhsBuffer = new byte[bufferSize];
+        byte[] rhsBuffer = new byte[bufferSize];
+
+        int offset = 0;
+        int diffOffset = -1;
+        long diffBits = 0;
+
+        int count;
+        while (offset < to && differences.size() < limit
+                && (count = fill(lhs, lhsBuffer, to - offset)) > 0) {
+            if (fill(rhs, rhsBuffer, count) != count) {
+                throw new IOException("Sides of equal length decoded to different number of bytes");
+            }
+
+            int i = 0;
+            while (i < count && differences.size() < limit) {
+                if (diffOffset < 0) {
+                    i = scanMode.mismatch(lhsBuffer, rhsBuffer, i, count);
+                    if (i < count) {
+                        diffOffset = offset + i;
+                        diffBits = 0;
+                    }
+                } else {
+                    int start = i;
+                    i = scanMode.match(lhsBuffer, rhsBuffer, i, count);
+                    if (bitCounts) {
+                        diffBits += scanMode.differingBits(lhsBuffer, rhsBuffer, start, i);
+                    }
+                    if (i < count) {
+                        differences.add(span(diffOffset, offset + i - diffOffset, diffBits));
+                        diffOffset = -1;
+                    }
+                }
+            }
+
+            offset += count;
+        }
+
+        if (diffOffset >= 0 && differences.size() < limit) {
+            differences.add(span(diffOffset, offset - diffOffset, diffBits));
+        }
+
+        return differences;
+    }
+
+    private Span span(int offset, int length, long bits) {
+        return bitCounts ? new Span(offset, length, bits) : new Span(offset, length);
+    }
+
+    /**
+     * Read from a stream until the given buffer is full, the given number of bytes
+     * is read, or the stream is exhausted.
+     *
+     * @param in      stream to read
+     * @param buffer  buffer to fill
+     * @param max     maximum number of bytes to read
+     * @return  number of bytes read, less than the buffer size only at end of stream or if max was reached
+     * @throws IOException if stream can't be read
+     */
+    private int fill(InputStream in, byte[] buffer, int max) throws IOException {
+        int count = 0;
+        int limit = Math.min(buffer.length, max);
+        int read;
+        while (count < limit && (read = in.read(buffer, count, limit - count)) > 0) {
+            count += read;
+        }
+        return count;
+    }
+}
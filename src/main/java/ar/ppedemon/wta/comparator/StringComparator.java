@@ -2,18 +2,22 @@ package ar.ppedemon.wta.comparator;
 
 import org.apache.commons.codec.Charsets;
 
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
 import java.nio.charset.Charset;
 import java.util.Base64;
-import java.util.List;
-import java.util.stream.Collectors;
 
 /**
  * String comparator. This class will interpret the base64 encoded sides
  * in a given comparison as strings with a given encoding.
  *
+ * Strings are compared by code point, so a character outside the basic
+ * multilingual plane counts as a single unit, and reported spans are
+ * expressed as code point offsets and lengths.
+ *
  * @author ppedemon
  */
-public class StringComparator extends AbstractComparator<Character> {
+public class StringComparator extends AbstractComparator<int[]> {
 
     private final Charset charset;
 
@@ -35,8 +39,63 @@ public class StringComparator extends AbstractComparator<Character> {
     }
 
     @Override
-    List<Character> decode(String base64Side) {
-        return new String(Base64.getDecoder().decode(base64Side), charset)
-                .chars().mapToObj(i -> (char)i).collect(Collectors.toList());
+    public boolean byteOriented() {
+        return false;
+    }
+
+    @Override
+    int[] decode(String base64Side) {
+        CharBuffer chars = charset.decode(ByteBuffer.wrap(Base64.getDecoder().decode(base64Side)));
+
+        char[] array = chars.array();
+        int start = chars.arrayOffset() + chars.position();
+        int end = chars.arrayOffset() + chars.limit();
+
+        int[] codePoints = new int[Character.codePointCount(array, start, end - start)];
+        for (int i = start, j = 0; i < end; j++) {
+            codePoints[j] = Character.codePointAt(array, i, end);
+            i += Character.charCount(codePoints[j]);
+        }
+        return codePoints;
+    }
+
+    @Override
+    int length(int[] side) {
+        return side.length;
+    }
+
+    @Override
+    int mismatch(int[] lhs, int[] rhs, int from, int to) {
+        int i = from;
+        while (i < to && lhs[i] == rhs[i]) {
+            i++;
+        }
+        return i;
+    }
+
+    @Override
+    int match(int[] lhs, int[] rhs, int from, int to) {
+        int i = from;
+        while (i < to && lhs[i] != rhs[i]) {
+            i++;
+        }
+        return i;
+    }
+
+    @Override
+    boolean equal(int[] lhs, int i, int[] rhs, int j) {
+        return lhs[i] == rhs[j];
+    }
+
+    /**
+     * Count differing bits of code points, rather than of their encoded bytes.
+     */
+    @Override
+    long differingBits(int[] lhs, int[] rhs, int from, int to) {
+        long bits = 0;
+        for (int i = from; i < to; i++) {
+            bits += Integer.bitCount(lhs[i] ^ rhs[i]);
+        }
+        return bits;
     }
 }
@@ -0,0 +1,30 @@
+package ar.ppedemon.wta.comparator;
+
+/**
+ * Read big endian long words straight from byte arrays, with no wrapping buffers.
+ *
+ * @author ppedemon
+ */
+final class Words {
+
+    private Words() {
+    }
+
+    /**
+     * Read the big endian long word starting at a given index, assembling it from its bytes.
+     *
+     * @param array  array to read from
+     * @param index  index of the word's first byte, the word must be fully within the array
+     * @return  the word
+     */
+    static long longAt(byte[] array, int index) {
+        return ((long) array[index] << 56)
+                | ((long) (array[index + 1] & 0xff) << 48)
+                | ((long) (array[index + 2] & 0xff) << 40)
+                | ((long) (array[index + 3] & 0xff) << 32)
+                | ((long) (array[index + 4] & 0xff) << 24)
+                | ((long) (array[index + 5] & 0xff) << 16)
+                | ((long) (array[index + 6] & 0xff) << 8)
+                | ((long) (array[index + 7] & 0xff));
+    }
+}
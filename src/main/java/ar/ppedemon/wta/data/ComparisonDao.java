@@ -2,6 +2,8 @@ package ar.ppedemon.wta.data;
 
 import ar.ppedemon.wta.model.Comparison;
 import ar.ppedemon.wta.model.ComparisonResult;
+import ar.ppedemon.wta.model.ComparisonStatus;
+import io.reactivex.Completable;
 import io.reactivex.Maybe;
 import io.reactivex.Single;
 
@@ -26,6 +28,22 @@ public interface ComparisonDao {
 
     enum Side { LEFT, RIGHT }
 
+    /**
+     * Prepare the underlying storage for serving requests, e.g. by creating the
+     * indexes required by queries. Called once at startup, must be idempotent.
+     *
+     * @return  computation signaling whether storage could be prepared
+     */
+    Completable initialize();
+
+    /**
+     * Check whether the underlying storage can serve requests efficiently, e.g.
+     * whether queries are backed by indexes.
+     *
+     * @return  computation delivering true iif storage is ready
+     */
+    Single<Boolean> ready();
+
     /**
      * Upsert the given side of a comparison. That is, create it if there's
      * no comparison for the given userId and comparison Id, or update it
@@ -49,6 +67,30 @@ public interface ComparisonDao {
      */
     Maybe<Comparison> get(String userId, String cmpId);
 
+    /**
+     * Get a comparison with the given user Id and comparison Id, leaving the data of
+     * sides stored in the comparison unset. Everything else is read, including side
+     * digests and references to sides stored elsewhere. Implementations unable to
+     * leave side data out read it anyway.
+     *
+     * @param userId  user Id
+     * @param cmpId   comparison Id
+     * @return  computation delivering the intended comparison, or empty if not found.
+     */
+    default Maybe<Comparison> getWithoutSides(String userId, String cmpId) {
+        return get(userId, cmpId);
+    }
+
+    /**
+     * Get the status of a comparison with the given user Id and comparison Id,
+     * without reading the comparison sides.
+     *
+     * @param userId  user Id
+     * @param cmpId   comparison Id
+     * @return  computation delivering the intended comparison status, or empty if not found.
+     */
+    Maybe<ComparisonStatus> status(String userId, String cmpId);
+
     /**
      * Update the result for the given comparison. We must avoid stale updates here.
      *
@@ -0,0 +1,94 @@
+package ar.ppedemon.wta.data;
+
+import ar.ppedemon.wta.model.BlockFingerprints;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import io.reactivex.Single;
+import io.vertx.reactivex.core.Vertx;
+
+import java.util.Base64;
+import java.util.function.Consumer;
+
+/**
+ * Side data decoded from the base64 text it's upserted as, along with its digest and
+ * block fingerprints, both computed in a single pass over the decoded data.
+ *
+ * Decoding and hashing a side takes milliseconds for sides of a few megabytes, so
+ * sides are decoded in a worker thread, never in the event loop.
+ *
+ * @author ppedemon
+ */
+final class DecodedSide {
+
+    private final byte[] data;
+    private final String digest;
+    private final BlockFingerprints blocks;
+
+    private DecodedSide(byte[] data, String digest, BlockFingerprints blocks) {
+        this.data = data;
+        this.digest = digest;
+        this.blocks = blocks;
+    }
+
+    /**
+     * Decode a side in a worker thread. Concurrent upserts have no defined order anyway,
+     * so decodings aren't ordered.
+     *
+     * @param vertx   Vert.x instance
+     * @param base64  base64 side data
+     * @return  computation delivering the decoded side
+     */
+    static Single<DecodedSide> decode(Vertx vertx, String base64) {
+        return decode(vertx, base64, decodedSide -> {});
+    }
+
+    /**
+     * Decode a side in a worker thread, and then run some blocking action on it in the same thread.
+     *
+     * @param vertx   Vert.x instance
+     * @param base64  base64 side data
+     * @param action  blocking action to run on the decoded side
+     * @return  computation delivering the decoded side
+     */
+    static Single<DecodedSide> decode(Vertx vertx, String base64, Consumer<DecodedSide> action) {
+        return vertx.<DecodedSide>rxExecuteBlocking(future -> {
+            DecodedSide decodedSide = decode(base64);
+            action.accept(decodedSide);
+            future.complete(decodedSide);
+        }, false).toSingle();
+    }
+
+    /**
+     * Decode a side in the calling thread.
+     *
+     * @param base64  base64 side data
+     * @return  decoded side
+     */
+    static DecodedSide decode(String base64) {
+        byte[] data = Base64.getDecoder().decode(base64);
+        Hasher digest = Hashing.sha256().newHasher();
+        BlockFingerprints blocks = BlockFingerprints.of(data, digest);
+        return new DecodedSide(data, digest.hash().toString(), blocks);
+    }
+
+    /**
+     * @return  decoded side data
+     */
+    byte[] data() {
+        return data;
+    }
+
+    /**
+     * @return  hex encoded SHA-256 digest of the decoded side data
+     */
+    String digest() {
+        return digest;
+    }
+
+    /**
+     * @return  fingerprints of the decoded side data blocks
+     */
+    BlockFingerprints blocks() {
+        return blocks;
+    }
+}
@@ -0,0 +1,234 @@
+package ar.ppedemon.wta.data;
+
+import ar.ppedemon.wta.model.BlockFingerprints;
+import ar.ppedemon.wta.model.Comparison;
+import ar.ppedemon.wta.model.ComparisonResult;
+import ar.ppedemon.wta.model.ComparisonStatus;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.RemovalCause;
+import com.google.common.cache.RemovalNotification;
+import io.reactivex.Completable;
+import io.reactivex.Maybe;
+import io.reactivex.Single;
+import io.vertx.reactivex.core.Vertx;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BiConsumer;
+
+/**
+ * Comparison DAO implementation keeping comparisons in memory, for deployments
+ * not needing comparisons to survive restarts, such as edge deployments or tests.
+ *
+ * Comparisons are bounded by the length of their sides (base64 text, as uploaded) plus
+ * a fixed allowance per comparison. When the bound is exceeded, least recently used
+ * comparisons are evicted. An evicted comparison is gone, just as if it was deleted, and
+ * whatever is kept about it elsewhere (such as cached results) must be dropped through an
+ * eviction listener.
+ *
+ * We ensure the comparison invariant exactly as {@link MongoComparisonDao} does: upserts
+ * increment version, result updates require that version hasn't changed. Every change
+ * is an atomic computation on the comparison entry, replacing it by an updated copy,
+ * so comparisons handed out are never modified afterwards. Upserts also compute side
+ * digests and block fingerprints, in a worker thread (see {@link DecodedSide}), and keep
+ * invalidated results as previous results.
+ *
+ * @author ppedemon
+ */
+public class InMemoryComparisonDao implements ComparisonDao {
+
+    /**
+     * Rough weight of a comparison besides its sides: ids, digests, fingerprints and results.
+     */
+    private static final int ENTRY_WEIGHT = 1 << 10;
+
+    private final Vertx vertx;
+    private final Cache<List<String>, Entry> comparisons;
+    private SideSpool spool;
+    private BiConsumer<String, String> evictionListener;
+
+    /**
+     * Build a new DAO.
+     * @param vertx      Vert.x instance, for decoding sides in worker threads
+     * @param maxWeight  maximum total side length of stored comparisons, plus a fixed allowance per comparison
+     */
+    public InMemoryComparisonDao(Vertx vertx, long maxWeight) {
+        this.vertx = vertx;
+        // A single segment, so the bound and the eviction order hold for all comparisons, not per segment
+        this.comparisons = CacheBuilder.newBuilder()
+                .concurrencyLevel(1)
+                .maximumWeight(maxWeight)
+                .weigher((List<String> key, Entry entry) -> entry.weight())
+                .removalListener((RemovalNotification<List<String>, Entry> removal) -> removed(removal))
+                .build();
+    }
+
+    /**
+     * Spool sides at least as long as the spool threshold, when upserted. Spooled sides are
+     * released when their comparison is deleted or evicted.
+     *
+     * @param spool  spool for large sides
+     * @return  this DAO
+     */
+    public InMemoryComparisonDao spooled(SideSpool spool) {
+        this.spool = spool;
+        return this;
+    }
+
+    /**
+     * Notify evicted comparisons, so whatever is kept about them elsewhere can be dropped.
+     * Deleted comparisons aren't notified, since they are deleted through the caller.
+     *
+     * @param evictionListener  consumer of the user Id and comparison Id of evicted comparisons
+     * @return  this DAO
+     */
+    public InMemoryComparisonDao evicted(BiConsumer<String, String> evictionListener) {
+        this.evictionListener = evictionListener;
+        return this;
+    }
+
+    @Override
+    public Completable initialize() {
+        return Completable.complete();
+    }
+
+    @Override
+    public Single<Boolean> ready() {
+        return Single.just(true);
+    }
+
+    @Override
+    public Single<Boolean> upsertSide(String userId, String cmpId, Side side, String data) {
+        return DecodedSide.decode(vertx, data, decoded -> spool(userId, cmpId, side, decoded)).map(decoded -> {
+            String digest = decoded.digest();
+            BlockFingerprints blocks = decoded.blocks();
+
+            AtomicBoolean created = new AtomicBoolean();
+            comparisons.asMap().compute(keyFrom(userId, cmpId), (key, entry) -> {
+                created.set(Objects.isNull(entry));
+                Comparison comparison = Objects.isNull(entry) ? new Comparison(cmpId, userId) : copy(entry.comparison);
+                if (Objects.nonNull(comparison.getResult())) {
+                    comparison.setPreviousResult(comparison.getResult())
+                            .setPreviousLeftBlocks(entry.resultLeftBlocks)
+                            .setPreviousRightBlocks(entry.resultRightBlocks)
+                            .setResult(null);
+                }
+                comparison.setVersion(comparison.getVersion() + 1);
+
+                if (side == Side.LEFT) {
+                    comparison.setLeft(data).setLeftDigest(digest).setLeftBlocks(blocks);
+                } else {
+                    comparison.setRight(data).setRightDigest(digest).setRightBlocks(blocks);
+                }
+                return new Entry(comparison, null, null);
+            });
+            return created.get();
+        });
+    }
+
+    @Override
+    public Maybe<Comparison> get(String userId, String cmpId) {
+        return Maybe.fromCallable(() -> {
+            Entry entry = comparisons.getIfPresent(keyFrom(userId, cmpId));
+            return Objects.isNull(entry) ? null : copy(entry.comparison);
+        });
+    }
+
+    @Override
+    public Maybe<ComparisonStatus> status(String userId, String cmpId) {
+        return Maybe.fromCallable(() -> {
+            Entry entry = comparisons.getIfPresent(keyFrom(userId, cmpId));
+            return Objects.isNull(entry) ? null : ComparisonStatus.fromComparison(entry.comparison);
+        });
+    }
+
+    @Override
+    public Single<Boolean> updateResult(Comparison comparison, ComparisonResult result) {
+        return Single.fromCallable(() -> {
+            AtomicBoolean updated = new AtomicBoolean();
+            List<String> key = keyFrom(comparison.getUserId(), comparison.getCmpId());
+            comparisons.asMap().computeIfPresent(key, (k, entry) -> {
+                if (entry.comparison.getVersion() != comparison.getVersion()) {
+                    return entry;
+                }
+                updated.set(true);
+                return new Entry(
+                        copy(entry.comparison).setResult(result),
+                        comparison.getLeftBlocks(),
+                        comparison.getRightBlocks());
+            });
+            return updated.get();
+        });
+    }
+
+    @Override
+    public Single<Boolean> delete(String userId, String cmpId) {
+        return Single.fromCallable(() -> Objects.nonNull(comparisons.asMap().remove(keyFrom(userId, cmpId))));
+    }
+
+    private void spool(String userId, String cmpId, Side side, DecodedSide decodedSide) {
+        if (Objects.nonNull(spool)) {
+            spool.spool(userId, cmpId, side, decodedSide.data(), decodedSide.digest());
+        }
+    }
+
+    /**
+     * Release the spooled sides of deleted or evicted comparisons, and notify evictions.
+     */
+    private void removed(RemovalNotification<List<String>, Entry> removal) {
+        String userId = removal.getKey().get(0);
+        String cmpId = removal.getKey().get(1);
+        if (Objects.nonNull(spool) && removal.getCause() != RemovalCause.REPLACED) {
+            spool.release(userId, cmpId);
+        }
+        if (Objects.nonNull(evictionListener) && removal.wasEvicted()) {
+            evictionListener.accept(userId, cmpId);
+        }
+    }
+
+    private Comparison copy(Comparison comparison) {
+        return new Comparison(comparison.getCmpId(), comparison.getUserId())
+                .setLeft(comparison.getLeft())
+                .setRight(comparison.getRight())
+                .setLeftDigest(comparison.getLeftDigest())
+                .setRightDigest(comparison.getRightDigest())
+                .setLeftBlocks(comparison.getLeftBlocks())
+                .setRightBlocks(comparison.getRightBlocks())
+                .setVersion(comparison.getVersion())
+                .setResult(comparison.getResult())
+                .setPreviousResult(comparison.getPreviousResult())
+                .setPreviousLeftBlocks(comparison.getPreviousLeftBlocks())
+                .setPreviousRightBlocks(comparison.getPreviousRightBlocks());
+    }
+
+    private List<String> keyFrom(String userId, String cmpId) {
+        return Arrays.asList(userId, cmpId);
+    }
+
+    /**
+     * Stored comparison, along with the block fingerprints of the sides its result was computed for.
+     */
+    private static class Entry {
+
+        private final Comparison comparison;
+        private final BlockFingerprints resultLeftBlocks;
+        private final BlockFingerprints resultRightBlocks;
+
+        Entry(Comparison comparison, BlockFingerprints resultLeftBlocks, BlockFingerprints resultRightBlocks) {
+            this.comparison = comparison;
+            this.resultLeftBlocks = resultLeftBlocks;
+            this.resultRightBlocks = resultRightBlocks;
+        }
+
+        int weight() {
+            return ENTRY_WEIGHT + length(comparison.getLeft()) + length(comparison.getRight());
+        }
+
+        private static int length(String side) {
+            return Objects.isNull(side) ? 0 : side.length();
+        }
+    }
+}
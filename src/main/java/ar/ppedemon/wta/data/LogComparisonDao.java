@@ -0,0 +1,918 @@
+package ar.ppedemon.wta.data;
+
+import ar.ppedemon.wta.model.BlockFingerprints;
+import ar.ppedemon.wta.model.Comparison;
+import ar.ppedemon.wta.model.ComparisonResult;
+import ar.ppedemon.wta.model.ComparisonStatus;
+import io.reactivex.Completable;
+import io.reactivex.Maybe;
+import io.reactivex.Single;
+import io.reactivex.schedulers.Schedulers;
+import io.vertx.core.json.Json;
+import io.vertx.reactivex.core.Context;
+import io.vertx.reactivex.core.Vertx;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Comparison DAO implementation storing comparisons in a log of local append-only segment
+ * files, for single node deployments where running Mongo isn't worth it.
+ *
+ * Every change is appended to the active segment as a record: a side upsert (holding the
+ * decoded side), a result update, or a deletion. Comparisons are indexed in memory without
+ * their sides, along with the position of their sides in segments, so statuses are answered
+ * from memory and reading a comparison just reads its sides. Segments other than the active
+ * one are read through memory mapped buffers. At startup, segments are replayed in order for
+ * rebuilding the index.
+ *
+ * Changes are applied by a single writer thread, in the order they are submitted. The writer
+ * appends every change waiting for it, staging their effect on the index, forces the active
+ * segment to disk once, and only then publishes the staged changes to the index and completes
+ * them (group commit). Hence, completed changes survive crashes, and reads never see changes
+ * that might not. Records are checksummed, so a record torn by a crash is detected and dropped
+ * when replaying. Creating and removing segments forces the directory to disk too.
+ *
+ * If appending or forcing fails, there's no telling what reached the disk. The appended changes
+ * are then truncated and failed, their staged effect is discarded, and the DAO stops accepting
+ * changes (and reports it's not ready) until restarted, when the log is replayed. Reads keep
+ * being served from the index, which only holds changes known to be on disk.
+ *
+ * We ensure the comparison invariant exactly as {@link MongoComparisonDao} does: upserts
+ * increment version, result updates require that version hasn't changed. Being applied by
+ * the writer thread, checking and updating versions is trivially atomic.
+ *
+ * Sealed segments are compacted in the background when most of their data is garbage
+ * (replaced or deleted sides). The active segment is sealed, the comparisons found in sealed
+ * segments are copied to a new segment, and then sealed segments are removed. The new segment
+ * starts with a marker telling replays to ignore previous segments, in case we crash before
+ * removing them.
+ *
+ * @author ppedemon
+ */
+public class LogComparisonDao implements ComparisonDao {
+
+    private static final Logger logger = LoggerFactory.getLogger(LogComparisonDao.class);
+
+    private static final byte SIDE = 1;
+    private static final byte RESULT = 2;
+    private static final byte DELETE = 3;
+    private static final byte SNAPSHOT = 4;
+    private static final byte BASE = 5;
+
+    private static final String SEGMENT_SUFFIX = ".log";
+    private static final String COMPACTION_SUFFIX = ".compacting";
+
+    private final Vertx vertx;
+    private final Path directory;
+    private final long segmentSize;
+    private final long compactionInterval;
+    private final double compactionRatio;
+
+    private final Map<List<String>, Entry> index = new ConcurrentHashMap<>();
+    private final Map<List<String>, Entry> staged = new HashMap<>();
+    private final List<LogSegment> sealed = new CopyOnWriteArrayList<>();
+    private volatile LogSegment active;
+
+    private final BlockingQueue<Write<?>> writes = new LinkedBlockingQueue<>();
+    private final ExecutorService compactor =
+            Executors.newSingleThreadExecutor(runnable -> daemon(runnable, "compactor"));
+    private final AtomicBoolean compacting = new AtomicBoolean();
+    private Completable initialization;
+    private volatile boolean ready;
+    private volatile IOException failure;
+    private SideSpool spool;
+
+    /**
+     * Build a new DAO. There must be a single DAO per directory.
+     *
+     * @param vertx               Vert.x instance
+     * @param directory           directory holding segment files
+     * @param segmentSize         size in bytes at which the active segment is sealed, well below 2Gb
+     * @param compactionInterval  milliseconds between checks for segments to compact
+     * @param compactionRatio     compact sealed segments when the ratio of live data falls below this
+     */
+    public LogComparisonDao(
+            Vertx vertx,
+            Path directory,
+            long segmentSize,
+            long compactionInterval,
+            double compactionRatio) {
+        this.vertx = vertx;
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.compactionInterval = compactionInterval;
+        this.compactionRatio = compactionRatio;
+    }
+
+    /**
+     * Spool sides at least as long as the spool threshold, when upserted. Spooled sides are
+     * released when their comparison is deleted.
+     *
+     * @param spool  spool for large sides
+     * @return  this DAO
+     */
+    public LogComparisonDao spooled(SideSpool spool) {
+        this.spool = spool;
+        return this;
+    }
+
+    /**
+     * Replay segments, and start the writer and background compactions. Done once, no
+     * matter how many times it's called.
+     */
+    @Override
+    public synchronized Completable initialize() {
+        if (Objects.isNull(initialization)) {
+            initialization = vertx
+                    .<Void>rxExecuteBlocking(future -> {
+                        try {
+                            recover();
+                            future.complete();
+                        } catch (IOException e) {
+                            future.fail(e);
+                        }
+                    })
+                    .ignoreElement()
+                    .doOnComplete(() -> {
+                        daemon(this::writeLoop, "writer").start();
+                        vertx.setPeriodic(compactionInterval, id -> compact().subscribe(
+                                () -> {},
+                                error -> logger.warn("Can't compact comparison log", error)));
+                        ready = true;
+                    })
+                    .cache();
+        }
+        return initialization;
+    }
+
+    @Override
+    public Single<Boolean> ready() {
+        return Single.just(ready && Objects.isNull(failure));
+    }
+
+    @Override
+    public Single<Boolean> upsertSide(String userId, String cmpId, Side side, String data) {
+        return DecodedSide.decode(vertx, data, decodedSide -> spool(userId, cmpId, side, decodedSide))
+                .flatMap(decodedSide -> upsertSide(userId, cmpId, side, decodedSide));
+    }
+
+    private void spool(String userId, String cmpId, Side side, DecodedSide decodedSide) {
+        if (Objects.nonNull(spool)) {
+            spool.spool(userId, cmpId, side, decodedSide.data(), decodedSide.digest());
+        }
+    }
+
+    private Single<Boolean> upsertSide(String userId, String cmpId, Side side, DecodedSide decodedSide) {
+        byte[] decoded = decodedSide.data();
+        String digest = decodedSide.digest();
+        BlockFingerprints blocks = decodedSide.blocks();
+
+        return write(() -> {
+            List<String> key = keyFrom(userId, cmpId);
+            boolean created = Objects.isNull(lookup(key));
+
+            byte[] header = body(SIDE, userId, cmpId, out -> {
+                out.writeByte(side.ordinal());
+                writeBytes(out, digest.getBytes(StandardCharsets.UTF_8));
+                writeBytes(out, json(blocks));
+                out.writeInt(decoded.length);
+            });
+            LogSegment segment = active;
+            long position = segment.append(header, decoded);
+
+            applySide(key, side, digest, blocks, new Location(segment, position + header.length, decoded.length));
+            return created;
+        });
+    }
+
+    @Override
+    public Maybe<Comparison> get(String userId, String cmpId) {
+        return vertx.rxExecuteBlocking(future -> {
+            Entry entry = index.get(keyFrom(userId, cmpId));
+            try {
+                future.complete(Objects.isNull(entry) ? null : copy(entry.comparison)
+                        .setLeft(read(entry.left))
+                        .setRight(read(entry.right)));
+            } catch (IOException e) {
+                future.fail(e);
+            }
+        }, false);
+    }
+
+    /**
+     * Get a comparison from the index, without reading its sides from segments.
+     */
+    @Override
+    public Maybe<Comparison> getWithoutSides(String userId, String cmpId) {
+        return Maybe.fromCallable(() -> {
+            Entry entry = index.get(keyFrom(userId, cmpId));
+            return Objects.isNull(entry) ? null : copy(entry.comparison);
+        });
+    }
+
+    @Override
+    public Maybe<ComparisonStatus> status(String userId, String cmpId) {
+        return Maybe.fromCallable(() -> {
+            Entry entry = index.get(keyFrom(userId, cmpId));
+            return Objects.isNull(entry) ? null : new ComparisonStatus(
+                    userId,
+                    cmpId,
+                    entry.comparison.getVersion(),
+                    Objects.nonNull(entry.left),
+                    Objects.nonNull(entry.right),
+                    entry.comparison.getResult());
+        });
+    }
+
+    @Override
+    public Single<Boolean> updateResult(Comparison comparison, ComparisonResult result) {
+        String userId = comparison.getUserId();
+        String cmpId = comparison.getCmpId();
+        long version = comparison.getVersion();
+        BlockFingerprints leftBlocks = comparison.getLeftBlocks();
+        BlockFingerprints rightBlocks = comparison.getRightBlocks();
+
+        return write(() -> {
+            List<String> key = keyFrom(userId, cmpId);
+            Entry entry = lookup(key);
+            if (Objects.isNull(entry) || entry.comparison.getVersion() != version) {
+                return false;
+            }
+
+            active.append(body(RESULT, userId, cmpId, out -> {
+                out.writeLong(version);
+                writeBytes(out, json(result));
+                writeBytes(out, json(leftBlocks));
+                writeBytes(out, json(rightBlocks));
+            }));
+            applyResult(key, version, result, leftBlocks, rightBlocks);
+            return true;
+        });
+    }
+
+    @Override
+    public Single<Boolean> delete(String userId, String cmpId) {
+        Single<Boolean> deletion = write(() -> {
+            List<String> key = keyFrom(userId, cmpId);
+            if (Objects.isNull(lookup(key))) {
+                return false;
+            }
+
+            active.append(body(DELETE, userId, cmpId, out -> {}));
+            stage(key, null);
+            return true;
+        });
+        return Objects.isNull(spool) ? deletion : deletion.doOnSuccess(deleted -> spool.release(userId, cmpId));
+    }
+
+    /**
+     * Compact sealed segments, if most of their data is garbage. Compactions run one at a time
+     * in a background thread, a compaction requested while another one runs does nothing.
+     *
+     * @return  computation signaling the compaction finished
+     */
+    Completable compact() {
+        return Completable
+                .fromAction(() -> {
+                    if (compacting.compareAndSet(false, true)) {
+                        try {
+                            if (garbage()) {
+                                compactSealed();
+                            }
+                        } finally {
+                            compacting.set(false);
+                        }
+                    }
+                })
+                .subscribeOn(Schedulers.from(compactor));
+    }
+
+    // -----------------------------------------------------------------------------------------
+    // Index maintenance, shared by writes and replays
+    // -----------------------------------------------------------------------------------------
+
+    /**
+     * Look a comparison up, as left by the changes staged so far.
+     */
+    private Entry lookup(List<String> key) {
+        return staged.containsKey(key) ? staged.get(key) : index.get(key);
+    }
+
+    /**
+     * Stage a change to the index, a null entry standing for a deletion.
+     */
+    private void stage(List<String> key, Entry entry) {
+        staged.put(key, entry);
+    }
+
+    /**
+     * Publish staged changes to the index, once they are known to be on disk.
+     */
+    private void publish() {
+        staged.forEach((key, entry) -> {
+            if (Objects.isNull(entry)) {
+                index.remove(key);
+            } else {
+                index.put(key, entry);
+            }
+        });
+        staged.clear();
+    }
+
+    private void applySide(List<String> key, Side side, String digest, BlockFingerprints blocks, Location location) {
+        Entry entry = lookup(key);
+        Comparison comparison = Objects.isNull(entry) ? new Comparison(key.get(1), key.get(0)) : copy(entry.comparison);
+        if (Objects.nonNull(comparison.getResult())) {
+            comparison.setPreviousResult(comparison.getResult())
+                    .setPreviousLeftBlocks(entry.resultLeftBlocks)
+                    .setPreviousRightBlocks(entry.resultRightBlocks)
+                    .setResult(null);
+        }
+        comparison.setVersion(comparison.getVersion() + 1);
+
+        Location left = Objects.isNull(entry) ? null : entry.left;
+        Location right = Objects.isNull(entry) ? null : entry.right;
+        if (side == Side.LEFT) {
+            comparison.setLeftDigest(digest).setLeftBlocks(blocks);
+            left = location;
+        } else {
+            comparison.setRightDigest(digest).setRightBlocks(blocks);
+            right = location;
+        }
+        stage(key, new Entry(comparison, left, right, null, null));
+    }
+
+    private void applyResult(
+            List<String> key,
+            long version,
+            ComparisonResult result,
+            BlockFingerprints leftBlocks,
+            BlockFingerprints rightBlocks) {
+        Entry entry = lookup(key);
+        if (Objects.nonNull(entry) && entry.comparison.getVersion() == version) {
+            Comparison comparison = copy(entry.comparison).setResult(result);
+            stage(key, new Entry(comparison, entry.left, entry.right, leftBlocks, rightBlocks));
+        }
+    }
+
+    // -----------------------------------------------------------------------------------------
+    // Writer
+    // -----------------------------------------------------------------------------------------
+
+    /**
+     * Submit a change to the writer thread, completing it in the caller's context.
+     */
+    private Single<Boolean> write(Callable<Boolean> change) {
+        return Single.create(emitter -> {
+            Context context = vertx.getOrCreateContext();
+            writes.add(new Write<>(
+                    change,
+                    false,
+                    value -> context.runOnContext(v -> emitter.onSuccess(value)),
+                    error -> context.runOnContext(v -> emitter.tryOnError(error))));
+        });
+    }
+
+    /**
+     * Submit a change to the writer thread, blocking until it's completed. The change is applied
+     * alone, once changes submitted before are committed, so it can use the index and roll the
+     * active segment. It must not append records.
+     */
+    private <T> T writeAndWait(Callable<T> change) throws IOException, InterruptedException {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        writes.add(new Write<>(change, true, future::complete, future::completeExceptionally));
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            throw new IOException(e.getCause());
+        }
+    }
+
+    private void writeLoop() {
+        List<Write<?>> batch = new ArrayList<>();
+        List<Write<?>> group = new ArrayList<>();
+        while (true) {
+            try {
+                batch.add(writes.take());
+            } catch (InterruptedException e) {
+                return;
+            }
+            writes.drainTo(batch);
+
+            for (Write<?> write : batch) {
+                if (!write.exclusive) {
+                    group.add(write);
+                    continue;
+                }
+                commit(group);
+                group.clear();
+                if (Objects.isNull(failure)) {
+                    write.apply();
+                } else {
+                    write.fail(failure);
+                }
+                write.complete();
+            }
+            commit(group);
+            group.clear();
+            batch.clear();
+        }
+    }
+
+    /**
+     * Append a group of changes, force them to disk, and publish them to the index. If appending
+     * or forcing fails, roll them back and stop accepting changes.
+     */
+    private void commit(List<Write<?>> group) {
+        if (group.isEmpty()) {
+            return;
+        }
+        if (Objects.nonNull(failure)) {
+            group.forEach(write -> write.fail(failure));
+            group.forEach(Write::complete);
+            return;
+        }
+
+        LogSegment segment = active;
+        long start = segment.size();
+        group.forEach(Write::apply);
+        try {
+            for (Write<?> write : group) {
+                if (write.error instanceof IOException) {
+                    throw (IOException)write.error;
+                }
+            }
+            sync(segment);
+        } catch (IOException e) {
+            rollback(segment, start, e);
+            group.forEach(write -> write.fail(failure));
+            group.forEach(Write::complete);
+            return;
+        }
+
+        publish();
+        try {
+            rollIfFull();
+        } catch (IOException e) {
+            stop(e);
+        }
+        group.forEach(Write::complete);
+    }
+
+    /**
+     * Force appended changes to disk.
+     *
+     * @param segment  segment changes were appended to
+     * @throws IOException  if changes can't be forced
+     */
+    void sync(LogSegment segment) throws IOException {
+        segment.sync();
+    }
+
+    /**
+     * Discard changes that couldn't be committed, truncating them from the segment they were
+     * appended to, so they aren't found when replaying, and stop accepting changes.
+     */
+    private void rollback(LogSegment segment, long start, IOException e) {
+        staged.clear();
+        try {
+            segment.truncate(start);
+        } catch (IOException truncation) {
+            logger.error("Can't truncate uncommitted changes, they might be replayed on restart", truncation);
+        }
+        stop(e);
+    }
+
+    private void stop(IOException e) {
+        failure = new IOException("Comparison log stopped after a write failure, restart to recover", e);
+        logger.error("Can't write comparison log, no more changes accepted until restarted", e);
+    }
+
+    private void rollIfFull() throws IOException {
+        if (active.size() >= segmentSize) {
+            roll();
+        }
+    }
+
+    private void roll() throws IOException {
+        active.seal();
+        sealed.add(active);
+        long id = active.id() + 1;
+        active = LogSegment.open(id, segmentPath(id, SEGMENT_SUFFIX));
+    }
+
+    // -----------------------------------------------------------------------------------------
+    // Compaction
+    // -----------------------------------------------------------------------------------------
+
+    private boolean garbage() {
+        long total = sealed.stream().mapToLong(LogSegment::size).sum();
+        Set<LogSegment> segments = Collections.newSetFromMap(new IdentityHashMap<>());
+        segments.addAll(sealed);
+
+        long live = index.values().stream()
+                .flatMap(entry -> Stream.of(entry.left, entry.right))
+                .filter(location -> Objects.nonNull(location) && segments.contains(location.segment))
+                .mapToLong(location -> location.length)
+                .sum();
+        return total > 0 && live < total * compactionRatio;
+    }
+
+    private void compactSealed() throws IOException, InterruptedException {
+
+        // Seal the active segment too, so every comparison found by the writer is in sealed segments
+        Map<List<String>, Entry> comparisons = new HashMap<>();
+        List<LogSegment> segments = writeAndWait(() -> {
+            roll();
+            comparisons.putAll(index);
+            return new ArrayList<>(sealed);
+        });
+
+        long id = segments.get(segments.size() - 1).id();
+        LogSegment compacted = LogSegment.open(id, segmentPath(id, COMPACTION_SUFFIX));
+        Map<Location, Location> moved = new IdentityHashMap<>();
+
+        compacted.append(new byte[] {BASE});
+        for (Map.Entry<List<String>, Entry> comparison : comparisons.entrySet()) {
+            List<String> key = comparison.getKey();
+            Entry entry = comparison.getValue();
+            byte[] left = bytes(entry.left);
+            byte[] right = bytes(entry.right);
+
+            byte[] header = body(SNAPSHOT, key.get(0), key.get(1), out -> {
+                writeBytes(out, json(entry.comparison));
+                writeBytes(out, json(entry.resultLeftBlocks));
+                writeBytes(out, json(entry.resultRightBlocks));
+            });
+            long position = compacted.append(header, length(left), orEmpty(left), length(right), orEmpty(right));
+
+            long leftPosition = position + header.length + Integer.BYTES;
+            long rightPosition = leftPosition + orEmpty(left).length + Integer.BYTES;
+            if (Objects.nonNull(left)) {
+                moved.put(entry.left, new Location(compacted, leftPosition, left.length));
+            }
+            if (Objects.nonNull(right)) {
+                moved.put(entry.right, new Location(compacted, rightPosition, right.length));
+            }
+        }
+        compacted.seal();
+        compacted.moveTo(segmentPath(id, SEGMENT_SUFFIX));
+
+        // Sides written after sealing are in newer segments, so sides in compacted segments were all moved
+        writeAndWait(() -> {
+            index.replaceAll((key, entry) -> entry.moved(moved));
+            sealed.removeAll(segments);
+            sealed.add(0, compacted);
+            return true;
+        });
+
+        for (LogSegment segment : segments) {
+            if (segment.id() == id) {
+                segment.close();
+            } else {
+                segment.delete();
+            }
+        }
+        logger.info("Compacted {} comparison log segments", segments.size());
+    }
+
+    // -----------------------------------------------------------------------------------------
+    // Recovery
+    // -----------------------------------------------------------------------------------------
+
+    private void recover() throws IOException {
+        Files.createDirectories(directory);
+        List<Path> paths;
+        try (Stream<Path> files = Files.list(directory)) {
+            paths = files.sorted().collect(Collectors.toList());
+        }
+
+        long next = 0;
+        for (Path path : paths) {
+            String name = path.getFileName().toString();
+            if (name.endsWith(COMPACTION_SUFFIX)) {
+                Files.delete(path);
+                LogSegment.syncDirectory(directory);
+                continue;
+            }
+            if (!name.endsWith(SEGMENT_SUFFIX)) {
+                continue;
+            }
+
+            long id = Long.parseLong(name.substring(0, name.length() - SEGMENT_SUFFIX.length()));
+            LogSegment segment = LogSegment.open(id, path);
+            AtomicBoolean base = new AtomicBoolean();
+            long valid = segment.scan((body, position) -> {
+                if (body.get(0) == BASE) {
+                    base.set(true);
+                }
+                replay(segment, body, position);
+            });
+            if (valid < segment.size()) {
+                logger.warn("Dropping {} bytes of torn records at the end of {}", segment.size() - valid, path);
+                segment.truncate(valid);
+            }
+            next = id + 1;
+
+            // Nothing written before stopping, don't keep empty segments around
+            if (valid == 0) {
+                segment.delete();
+                continue;
+            }
+            segment.seal();
+
+            // Previous segments were compacted, but not removed before stopping
+            if (base.get()) {
+                for (LogSegment previous : sealed) {
+                    previous.delete();
+                }
+                sealed.clear();
+            }
+            sealed.add(segment);
+        }
+
+        publish();
+        active = LogSegment.open(next, segmentPath(next, SEGMENT_SUFFIX));
+        logger.info("Recovered {} comparisons from {} log segments", index.size(), sealed.size());
+    }
+
+    private void replay(LogSegment segment, ByteBuffer body, long position) throws IOException {
+        byte type = body.get();
+        if (type == BASE) {
+            index.clear();
+            staged.clear();
+            return;
+        }
+
+        String userId = new String(readBytes(body), StandardCharsets.UTF_8);
+        String cmpId = new String(readBytes(body), StandardCharsets.UTF_8);
+        List<String> key = keyFrom(userId, cmpId);
+
+        switch (type) {
+            case SIDE:
+                Side side = Side.values()[body.get()];
+                String digest = new String(readBytes(body), StandardCharsets.UTF_8);
+                BlockFingerprints blocks = fromJson(readBytes(body), BlockFingerprints.class);
+                int length = body.getInt();
+                applySide(key, side, digest, blocks, new Location(segment, position + body.position(), length));
+                break;
+            case RESULT:
+                long version = body.getLong();
+                ComparisonResult result = fromJson(readBytes(body), ComparisonResult.class);
+                BlockFingerprints leftBlocks = fromJson(readBytes(body), BlockFingerprints.class);
+                BlockFingerprints rightBlocks = fromJson(readBytes(body), BlockFingerprints.class);
+                applyResult(key, version, result, leftBlocks, rightBlocks);
+                break;
+            case DELETE:
+                stage(key, null);
+                break;
+            case SNAPSHOT:
+                Comparison comparison = fromJson(readBytes(body), Comparison.class);
+                BlockFingerprints resultLeftBlocks = fromJson(readBytes(body), BlockFingerprints.class);
+                BlockFingerprints resultRightBlocks = fromJson(readBytes(body), BlockFingerprints.class);
+                Location left = readLocation(segment, body, position);
+                Location right = readLocation(segment, body, position);
+                stage(key, new Entry(comparison, left, right, resultLeftBlocks, resultRightBlocks));
+                break;
+            default:
+                throw new IOException("Unknown record type " + type + " in comparison log");
+        }
+    }
+
+    // -----------------------------------------------------------------------------------------
+    // Record encoding
+    // -----------------------------------------------------------------------------------------
+
+    private interface BodyWriter {
+        void write(DataOutputStream out) throws IOException;
+    }
+
+    /**
+     * Encode a record body, except for side data, which is appended as is.
+     */
+    private byte[] body(byte type, String userId, String cmpId, BodyWriter writer) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeByte(type);
+        writeBytes(out, userId.getBytes(StandardCharsets.UTF_8));
+        writeBytes(out, cmpId.getBytes(StandardCharsets.UTF_8));
+        writer.write(out);
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    private void writeBytes(DataOutputStream out, byte[] bytes) throws IOException {
+        if (Objects.isNull(bytes)) {
+            out.writeInt(-1);
+        } else {
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+    }
+
+    private byte[] readBytes(ByteBuffer body) {
+        int length = body.getInt();
+        if (length == -1) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        body.get(bytes);
+        return bytes;
+    }
+
+    private Location readLocation(LogSegment segment, ByteBuffer body, long position) {
+        int length = body.getInt();
+        if (length == -1) {
+            return null;
+        }
+        Location location = new Location(segment, position + body.position(), length);
+        body.position(body.position() + length);
+        return location;
+    }
+
+    private byte[] json(Object value) throws IOException {
+        return Objects.isNull(value) ? null : Json.mapper.writeValueAsBytes(value);
+    }
+
+    private <T> T fromJson(byte[] json, Class<T> type) throws IOException {
+        return Objects.isNull(json) ? null : Json.mapper.readValue(json, type);
+    }
+
+    private byte[] length(byte[] data) {
+        return ByteBuffer.allocate(Integer.BYTES).putInt(Objects.isNull(data) ? -1 : data.length).array();
+    }
+
+    private byte[] orEmpty(byte[] data) {
+        return Objects.isNull(data) ? new byte[0] : data;
+    }
+
+    // -----------------------------------------------------------------------------------------
+    // Helpers
+    // -----------------------------------------------------------------------------------------
+
+    private String read(Location location) throws IOException {
+        return Objects.isNull(location) ? null : Base64.getEncoder().encodeToString(location.read());
+    }
+
+    private byte[] bytes(Location location) throws IOException {
+        return Objects.isNull(location) ? null : location.read();
+    }
+
+    private Comparison copy(Comparison comparison) {
+        return new Comparison(comparison.getCmpId(), comparison.getUserId())
+                .setLeftDigest(comparison.getLeftDigest())
+                .setRightDigest(comparison.getRightDigest())
+                .setLeftBlocks(comparison.getLeftBlocks())
+                .setRightBlocks(comparison.getRightBlocks())
+                .setVersion(comparison.getVersion())
+                .setResult(comparison.getResult())
+                .setPreviousResult(comparison.getPreviousResult())
+                .setPreviousLeftBlocks(comparison.getPreviousLeftBlocks())
+                .setPreviousRightBlocks(comparison.getPreviousRightBlocks());
+    }
+
+    private List<String> keyFrom(String userId, String cmpId) {
+        return Arrays.asList(userId, cmpId);
+    }
+
+    private Path segmentPath(long id, String suffix) {
+        return directory.resolve(String.format("%020d%s", id, suffix));
+    }
+
+    private static Thread daemon(Runnable runnable, String name) {
+        Thread thread = new Thread(runnable, "comparison-log-" + name);
+        thread.setDaemon(true);
+        return thread;
+    }
+
+    /**
+     * Position of side data in a segment.
+     */
+    private static class Location {
+
+        private final LogSegment segment;
+        private final long position;
+        private final int length;
+
+        Location(LogSegment segment, long position, int length) {
+            this.segment = segment;
+            this.position = position;
+            this.length = length;
+        }
+
+        byte[] read() throws IOException {
+            return segment.read(position, length);
+        }
+    }
+
+    /**
+     * Indexed comparison: the comparison without its sides, the location of its sides, and
+     * the block fingerprints of the sides its result was computed for.
+     */
+    private static class Entry {
+
+        private final Comparison comparison;
+        private final Location left;
+        private final Location right;
+        private final BlockFingerprints resultLeftBlocks;
+        private final BlockFingerprints resultRightBlocks;
+
+        Entry(
+                Comparison comparison,
+                Location left,
+                Location right,
+                BlockFingerprints resultLeftBlocks,
+                BlockFingerprints resultRightBlocks) {
+            this.comparison = comparison;
+            this.left = left;
+            this.right = right;
+            this.resultLeftBlocks = resultLeftBlocks;
+            this.resultRightBlocks = resultRightBlocks;
+        }
+
+        Entry moved(Map<Location, Location> moved) {
+            if (!moved.containsKey(left) && !moved.containsKey(right)) {
+                return this;
+            }
+            return new Entry(
+                    comparison,
+                    moved.getOrDefault(left, left),
+                    moved.getOrDefault(right, right),
+                    resultLeftBlocks,
+                    resultRightBlocks);
+        }
+    }
+
+    /**
+     * Change waiting for the writer thread.
+     */
+    private static class Write<T> {
+
+        private final Callable<T> change;
+        private final boolean exclusive;
+        private final Consumer<T> onSuccess;
+        private final Consumer<Throwable> onError;
+        private T value;
+        private Throwable error;
+
+        Write(Callable<T> change, boolean exclusive, Consumer<T> onSuccess, Consumer<Throwable> onError) {
+            this.change = change;
+            this.exclusive = exclusive;
+            this.onSuccess = onSuccess;
+            this.onError = onError;
+        }
+
+        void apply() {
+            try {
+                value = change.call();
+            } catch (Exception e) {
+                error = e;
+            }
+        }
+
+        void fail(Throwable e) {
+            if (Objects.isNull(error)) {
+                error = e;
+            }
+        }
+
+        void complete() {
+            if (Objects.isNull(error)) {
+                onSuccess.accept(value);
+            } else {
+                onError.accept(error);
+            }
+        }
+    }
+}
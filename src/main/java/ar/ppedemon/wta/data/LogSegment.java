@@ -0,0 +1,247 @@
+package ar.ppedemon.wta.data;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only segment file of a comparison log, holding a sequence of records. Every record
+ * is framed by its length and its CRC-32, so records torn by a crash are detected.
+ *
+ * Segments are appended to until sealed. Sealed segments are read through a memory mapped
+ * buffer, so they must be smaller than 2Gb. Appends, syncs and seals must be done by a single
+ * thread, reads can be done by any thread.
+ *
+ * Creating, moving and removing segment files forces their directory to disk, so the set of
+ * segments found after a crash is the one we had before it.
+ *
+ * @author ppedemon
+ */
+class LogSegment {
+
+    private static final int HEADER_SIZE = 8;
+
+    /**
+     * Consumer of the records found when scanning a segment.
+     */
+    interface RecordConsumer {
+        /**
+         * Consume a record.
+         * @param body      record body, positioned at its start
+         * @param position  position of the record body in the segment
+         */
+        void accept(ByteBuffer body, long position) throws IOException;
+    }
+
+    private final long id;
+    private final FileChannel channel;
+    private Path path;
+    private volatile long size;
+    private volatile MappedByteBuffer mapped;
+    private boolean dirty;
+
+    private LogSegment(long id, Path path, FileChannel channel) throws IOException {
+        this.id = id;
+        this.path = path;
+        this.channel = channel;
+        this.size = channel.size();
+    }
+
+    /**
+     * Open a segment, creating its file if it doesn't exist.
+     *
+     * @param id    segment Id, segments are replayed in Id order
+     * @param path  segment file
+     * @return  segment, open for appending
+     * @throws IOException  if the segment file can't be opened
+     */
+    static LogSegment open(long id, Path path) throws IOException {
+        boolean created = Files.notExists(path);
+        FileChannel channel = FileChannel.open(
+                path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        if (created) {
+            syncDirectory(path.getParent());
+        }
+        return new LogSegment(id, path, channel);
+    }
+
+    /**
+     * Force a directory to disk, making file creations, moves and removals in it durable,
+     * where the platform allows forcing directories.
+     *
+     * @param directory  directory to force
+     */
+    static void syncDirectory(Path directory) {
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            // Not supported, e.g. on Windows
+        }
+    }
+
+    long id() {
+        return id;
+    }
+
+    long size() {
+        return size;
+    }
+
+    /**
+     * Append a record, whose body is given in parts so large parts don't need to be copied.
+     *
+     * @param parts  parts of the record body
+     * @return  position of the record body in the segment
+     * @throws IOException  if the record can't be written
+     */
+    long append(byte[]... parts) throws IOException {
+        CRC32 crc = new CRC32();
+        ByteBuffer[] buffers = new ByteBuffer[parts.length + 1];
+        int length = 0;
+        for (int i = 0; i < parts.length; i++) {
+            crc.update(parts[i]);
+            buffers[i + 1] = ByteBuffer.wrap(parts[i]);
+            length += parts[i].length;
+        }
+        buffers[0] = ByteBuffer.allocate(HEADER_SIZE).putInt(length).putInt((int)crc.getValue());
+        buffers[0].flip();
+
+        long position = size;
+        long remaining = HEADER_SIZE + length;
+        channel.position(position);
+        while (remaining > 0) {
+            remaining -= channel.write(buffers);
+        }
+        size = position + HEADER_SIZE + length;
+        dirty = true;
+        return position + HEADER_SIZE;
+    }
+
+    /**
+     * Force appended records to disk, if any.
+     * @throws IOException  if records can't be forced
+     */
+    void sync() throws IOException {
+        if (dirty) {
+            channel.force(false);
+            dirty = false;
+        }
+    }
+
+    /**
+     * Seal the segment: force it to disk and map it for reading. No more appends are allowed.
+     * @throws IOException  if the segment can't be forced or mapped
+     */
+    void seal() throws IOException {
+        sync();
+        mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+    }
+
+    /**
+     * Read data from the segment.
+     *
+     * @param position  position of the data
+     * @param length    data length
+     * @return  the data
+     * @throws IOException  if data can't be read
+     */
+    byte[] read(long position, int length) throws IOException {
+        byte[] data = new byte[length];
+        MappedByteBuffer buffer = mapped;
+        if (buffer != null) {
+            ByteBuffer view = buffer.duplicate();
+            view.position((int)position);
+            view.get(data);
+            return data;
+        }
+
+        ByteBuffer target = ByteBuffer.wrap(data);
+        while (target.hasRemaining()) {
+            if (channel.read(target, position + target.position()) < 0) {
+                throw new EOFException("Data past the end of segment " + path);
+            }
+        }
+        return data;
+    }
+
+    /**
+     * Scan the records in the segment, stopping at the end of the segment or at the first
+     * torn record, if any.
+     *
+     * @param consumer  record consumer
+     * @return  position following the last valid record
+     * @throws IOException  if the segment can't be read, or the consumer fails
+     */
+    long scan(RecordConsumer consumer) throws IOException {
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+        long position = 0;
+        while (position + HEADER_SIZE <= size) {
+            buffer.position((int)position);
+            int length = buffer.getInt();
+            int crc = buffer.getInt();
+            if (length < 0 || position + HEADER_SIZE + length > size) {
+                break;
+            }
+
+            ByteBuffer body = buffer.slice();
+            body.limit(length);
+            CRC32 check = new CRC32();
+            check.update(body.duplicate());
+            if ((int)check.getValue() != crc) {
+                break;
+            }
+
+            consumer.accept(body, position + HEADER_SIZE);
+            position += HEADER_SIZE + length;
+        }
+        return position;
+    }
+
+    /**
+     * Drop data at the end of the segment.
+     * @param size  new segment size
+     * @throws IOException  if the segment can't be truncated
+     */
+    void truncate(long size) throws IOException {
+        channel.truncate(size);
+        channel.force(false);
+        this.size = size;
+    }
+
+    /**
+     * Atomically move the segment file, replacing the target file if it exists.
+     * @param target  new segment file
+     * @throws IOException  if the segment file can't be moved
+     */
+    void moveTo(Path target) throws IOException {
+        Files.move(path, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        path = target;
+        syncDirectory(target.getParent());
+    }
+
+    /**
+     * Close the segment. It can still be read if it's sealed.
+     * @throws IOException  if the segment can't be closed
+     */
+    void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * Close the segment and remove its file. It can still be read if it's sealed.
+     * @throws IOException  if the segment can't be removed
+     */
+    void delete() throws IOException {
+        close();
+        if (Files.deleteIfExists(path)) {
+            syncDirectory(path.getParent());
+        }
+    }
+}
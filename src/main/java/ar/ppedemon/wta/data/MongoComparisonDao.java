@@ -1,15 +1,31 @@
 package ar.ppedemon.wta.data;
 
+import ar.ppedemon.wta.model.BlockFingerprints;
 import ar.ppedemon.wta.model.Comparison;
 import ar.ppedemon.wta.model.ComparisonResult;
+import ar.ppedemon.wta.model.ComparisonStatus;
+import ar.ppedemon.wta.model.SideChunks;
+import ar.ppedemon.wta.model.SideCodec;
+import io.reactivex.Completable;
 import io.reactivex.Maybe;
 import io.reactivex.Single;
 import io.vertx.core.json.Json;
 import io.vertx.core.json.JsonObject;
+import io.vertx.ext.mongo.FindOptions;
+import io.vertx.ext.mongo.IndexOptions;
 import io.vertx.ext.mongo.UpdateOptions;
+import io.vertx.reactivex.core.Vertx;
 import io.vertx.reactivex.ext.mongo.MongoClient;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import javax.inject.Inject;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 /**
  * Comparison DAO implementation based on a Mongo database.
@@ -18,17 +34,187 @@ import javax.inject.Inject;
  * to the current lhs and rhs) by means of optimistic version control. Upserts
  * increment version, result updates require that version hasn't changed.
  *
+ * Sides are decoded in worker threads when upserted (see {@link DecodedSide}).
+ * Side upserts also store a SHA-256 digest of the decoded side data, so
+ * equal sides can be detected without decoding and comparing them, and
+ * fingerprints of the side's blocks. Results are stored along with the block
+ * fingerprints of the sides they were computed for, and instead of being
+ * just removed on side upserts, they are kept as previous results. Hence,
+ * a new result can be computed by comparing only the blocks that changed.
+ *
+ * Sides are stored as BSON binary, decoded once when upserted, which takes 25% less
+ * space than their base64 text on disk, in the storage engine cache and over the wire.
+ * The Vert.x Mongo codec hands binary fields back as base64 text, which is what
+ * comparators expect. Sides stored as text by older versions are read as they are,
+ * until they are upserted again or migrated (see {@code dev/migrate-binary-sides.sh}).
+ *
+ * The codec gives no access to raw bytes, so reads pay for base64 encoding sides rather
+ * than for building strings from stored text: about 0.4 ms more CPU per MB of side, or
+ * roughly 30% more per comparison read including the comparator's decoding, in exchange
+ * for the smaller documents (see {@code SideStorageBenchmark}). Reads made just for
+ * comparing sides spooled to a {@link SideSpool} skip side data, and so this cost.
+ *
+ * Every query looks comparisons up by user Id and comparison Id, backed by a unique index on
+ * both created at startup. Being unique, the index also ensures concurrent upserts of a new
+ * comparison can't create duplicates (the losing upsert fails instead). Databases written by
+ * older versions might already hold duplicates, making the unique index impossible to create.
+ * In that case a non unique index is created instead, so the service keeps serving, and an
+ * error is logged asking to remove duplicates (see {@code dev/dedup-comparisons.sh}).
+ *
+ * Optionally, sides at least as long as a threshold are stored as chunks in a {@link SideChunkStore},
+ * keeping just a reference to them in the comparison, so sides aren't bound by the document size
+ * limit. Chunks are stored before the comparison references them, and the chunks of the replaced
+ * side are removed after the comparison stops referencing them. Chunks are keyed by upload, so
+ * concurrent uploads, even of the same side, never remove each other's chunks. Comparisons computed
+ * while a side is replaced might then fail reading it, but their result would have been stale anyway.
+ *
+ * Sides can also be stored encoded by a {@link SideCodec}, usually compressing them, along
+ * with a marker naming the codec. Encoded sides are handed to comparators as they are stored,
+ * and are decoded as a stream when compared, off the event loop.
+ *
+ * Sides can also be deduplicated, storing them in a {@link SideBlobStore} keyed by their digest,
+ * so comparisons sharing a side (e.g., a baseline compared against many payloads) just keep a
+ * reference to it. Comparisons acquire a reference to the blob of their new side before pointing
+ * to it, and release the blob of the replaced side after they stop pointing to it, so blobs are
+ * removed once no comparison uses them. Sides long enough for being chunked aren't deduplicated.
+ * Upserts read back the side they replace whenever there's a blob store, even if deduplication is
+ * disabled, so blobs stored while it was enabled are still released when their sides are replaced.
+ *
+ * Large sides can also be spooled to a local {@link SideSpool} when upserted, in the worker thread
+ * decoding them, so they can be compared through memory mapped files.
+ *
  * @author ppedemn
  */
 public class MongoComparisonDao implements ComparisonDao {
 
     private static final String COMPARISONS = "comparisons";
+    private static final String COMPARISONS_INDEX = "uniqueUserAndComparison";
+    private static final String NON_UNIQUE_COMPARISONS_INDEX = "byUserAndComparison";
+    private static final String DUPLICATE_KEY = "E11000";
+
+    private static final Logger logger = LoggerFactory.getLogger(MongoComparisonDao.class);
+    private static final String BINARY = "$binary";
 
     private final MongoClient mongoClient;
+    private final Vertx vertx;
+    private final SideChunkStore chunkStore;
+    private final int chunkThreshold;
+    private SideCodec codec = SideCodec.NONE;
+    private int compressionLevel;
+    private SideBlobStore blobStore;
+    private boolean deduplicated;
+    private UpsertBatcher batcher;
+    private SideSpool spool;
 
     @Inject
-    public MongoComparisonDao(MongoClient mongoClient) {
+    public MongoComparisonDao(MongoClient mongoClient, Vertx vertx) {
+        this(mongoClient, vertx, null, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Build a DAO storing large sides as chunks.
+     *
+     * @param mongoClient     Mongo client
+     * @param vertx           Vert.x instance, for decoding and encoding sides in worker threads
+     * @param chunkStore      store for large sides
+     * @param chunkThreshold  minimum decoded side length for storing it as chunks
+     */
+    public MongoComparisonDao(MongoClient mongoClient, Vertx vertx, SideChunkStore chunkStore, int chunkThreshold) {
         this.mongoClient = mongoClient;
+        this.vertx = vertx;
+        this.chunkStore = chunkStore;
+        this.chunkThreshold = chunkThreshold;
+    }
+
+    /**
+     * Store sides encoded with the given codec, usually for compressing them. Sides are
+     * encoded in worker threads, and comparisons get them encoded (see {@link Comparison}).
+     *
+     * @param codec             side codec
+     * @param compressionLevel  compression level, if supported by the codec
+     * @return  this DAO
+     */
+    public MongoComparisonDao encoded(SideCodec codec, int compressionLevel) {
+        this.codec = codec;
+        this.compressionLevel = compressionLevel;
+        return this;
+    }
+
+    /**
+     * Read sides stored as blobs from the given store, and optionally deduplicate new sides
+     * by storing them as blobs too. Blobs are read even if deduplication is disabled, since
+     * it might have been enabled when they were stored.
+     *
+     * @param blobStore     store for deduplicated sides
+     * @param deduplicated  whether to store new sides in the given store
+     * @return  this DAO
+     */
+    public MongoComparisonDao blobs(SideBlobStore blobStore, boolean deduplicated) {
+        this.blobStore = blobStore;
+        this.deduplicated = deduplicated;
+        return this;
+    }
+
+    /**
+     * Send side upserts to Mongo in batches, gathering them for a short window or up to a batch
+     * size (see {@link UpsertBatcher}). Only upserts storing sides in comparison documents are
+     * batched, and only without a blob store, since upserts that might replace chunks or blobs
+     * must read back the side they replace.
+     *
+     * @param vertx         Vert.x instance, for timing batch windows
+     * @param maxBatchSize  maximum number of upserts per batch
+     * @param window        milliseconds to wait for more upserts before sending a batch
+     * @return  this DAO
+     */
+    public MongoComparisonDao batched(Vertx vertx, int maxBatchSize, long window) {
+        this.batcher = new UpsertBatcher(mongoClient, COMPARISONS, vertx, maxBatchSize, window);
+        return this;
+    }
+
+    /**
+     * Spool sides at least as long as the spool threshold, when upserted. Spooled sides are
+     * released when their comparison is deleted.
+     *
+     * @param spool  spool for large sides
+     * @return  this DAO
+     */
+    public MongoComparisonDao spooled(SideSpool spool) {
+        this.spool = spool;
+        return this;
+    }
+
+    @Override
+    public Completable initialize() {
+        JsonObject key = new JsonObject().put("userId", 1).put("cmpId", 1);
+
+        // The non unique index, if any, must be dropped for creating the unique one on the same key
+        Completable index = mongoClient.rxDropIndex(COMPARISONS, NON_UNIQUE_COMPARISONS_INDEX)
+                .onErrorComplete()
+                .andThen(mongoClient.rxCreateIndexWithOptions(
+                        COMPARISONS, key, new IndexOptions().name(COMPARISONS_INDEX).unique(true)))
+                .onErrorResumeNext(error -> String.valueOf(error.getMessage()).contains(DUPLICATE_KEY)
+                        ? nonUniqueIndex(key, error)
+                        : Completable.error(error));
+        return Objects.isNull(chunkStore) ? index : index.andThen(chunkStore.initialize());
+    }
+
+    /**
+     * Fall back to a non unique index when duplicate comparisons prevent creating the unique one,
+     * so queries are still index backed, logging how to remove duplicates.
+     */
+    private Completable nonUniqueIndex(JsonObject key, Throwable error) {
+        logger.error("Can't create unique index {} on {}, there are duplicate comparisons: {}. Serving with "
+                + "non unique index {}, concurrent upserts of new comparisons might create more duplicates. "
+                + "Run dev/dedup-comparisons.sh and restart to fix this.",
+                COMPARISONS_INDEX, COMPARISONS, error.getMessage(), NON_UNIQUE_COMPARISONS_INDEX);
+        return mongoClient.rxCreateIndexWithOptions(
+                COMPARISONS, key, new IndexOptions().name(NON_UNIQUE_COMPARISONS_INDEX));
+    }
+
+    @Override
+    public Single<Boolean> ready() {
+        Single<Boolean> indexed = QueryPlans.indexed(mongoClient, COMPARISONS, queryFrom("", ""));
+        return Objects.isNull(chunkStore) ? indexed : indexed.zipWith(chunkStore.ready(), Boolean::logicalAnd);
     }
 
     @Override
@@ -48,25 +234,234 @@ public class MongoComparisonDao implements ComparisonDao {
          *  Comparison invariant.
          */
 
-        JsonObject updateSide = new JsonObject().put(side == Side.LEFT? "left" : "right", data);
-        JsonObject resetResult = new JsonObject().put("result", "");
+        return DecodedSide.decode(vertx, data, decodedSide -> spool(userId, cmpId, side, decodedSide))
+                .flatMap(decodedSide -> upsertSide(userId, cmpId, side, decodedSide));
+    }
+
+    private void spool(String userId, String cmpId, Side side, DecodedSide decodedSide) {
+        if (Objects.nonNull(spool)) {
+            spool.spool(userId, cmpId, side, decodedSide.data(), decodedSide.digest());
+        }
+    }
+
+    private Single<Boolean> upsertSide(String userId, String cmpId, Side side, DecodedSide decodedSide) {
+        String field = side == Side.LEFT? "left" : "right";
+        byte[] decoded = decodedSide.data();
+        String digest = decodedSide.digest();
+        JsonObject resetResult = new JsonObject()
+                .put("result", "previousResult")
+                .put("resultLeftBlocks", "previousLeftBlocks")
+                .put("resultRightBlocks", "previousRightBlocks");
         JsonObject incVersion = new JsonObject().put("version", 1);
 
+        JsonObject updateSide = new JsonObject()
+                .put(field + "Digest", digest)
+                .put(field + "Blocks", toJson(decodedSide.blocks()));
+        JsonObject unsetSide = new JsonObject();
+
+        if (deduplicated && decoded.length < chunkThreshold) {
+            updateSide.put(field + "Blob", digest);
+            unsetSide.put(field, "").put(field + "Chunks", "").put(field + "Codec", "");
+            JsonObject update = update(updateSide, unsetSide, resetResult, incVersion);
+            return blobStore.acquire(digest, codec, encode(decoded))
+                    .andThen(replaceSide(userId, cmpId, side, update));
+        }
+
+        return encode(decoded).flatMap(encoded -> {
+            if (codec == SideCodec.NONE) {
+                unsetSide.put(field + "Codec", "");
+            } else {
+                updateSide.put(field + "Codec", codec.name());
+            }
+
+            // Without chunks nor blobs, nothing replaced needs releasing
+            if (Objects.isNull(chunkStore) && Objects.isNull(blobStore)) {
+                updateSide.put(field, new JsonObject().put(BINARY, encoded));
+                return upsert(userId, cmpId, update(updateSide, unsetSide, resetResult, incVersion));
+            }
+
+            Single<Optional<SideChunks>> chunks = Objects.nonNull(chunkStore) && encoded.length >= chunkThreshold
+                    ? chunkStore.store(userId, cmpId, side, digest, encoded).map(Optional::of)
+                    : Single.just(Optional.empty());
+
+            return chunks.flatMap(sideChunks -> {
+                if (sideChunks.isPresent()) {
+                    updateSide.put(field + "Chunks", toJson(sideChunks.get()));
+                    unsetSide.put(field, "");
+                } else {
+                    updateSide.put(field, new JsonObject().put(BINARY, encoded));
+                    unsetSide.put(field + "Chunks", "");
+                }
+                if (Objects.nonNull(blobStore)) {
+                    unsetSide.put(field + "Blob", "");
+                }
+                return replaceSide(userId, cmpId, side, update(updateSide, unsetSide, resetResult, incVersion));
+            });
+        });
+    }
+
+    /**
+     * Upsert a comparison, in the next batch if batching is enabled.
+     */
+    private Single<Boolean> upsert(String userId, String cmpId, JsonObject update) {
+        if (Objects.nonNull(batcher)) {
+            return batcher.upsert(queryFrom(userId, cmpId), update);
+        }
         return mongoClient
                 .rxUpdateCollectionWithOptions(
                         COMPARISONS,
                         queryFrom(userId, cmpId),
-                        new JsonObject().put("$set", updateSide).put("$unset", resetResult).put("$inc", incVersion),
+                        update,
                         new UpdateOptions().setUpsert(true))
                 .map(opResult -> opResult.getDocMatched() == 0);
     }
 
+    /**
+     * Update a side of a comparison, reading back the replaced side in the same atomic operation,
+     * so we know which chunks or blob (if any) became unreferenced and can be removed.
+     */
+    private Single<Boolean> replaceSide(String userId, String cmpId, Side side, JsonObject update) {
+        String field = side == Side.LEFT? "left" : "right";
+        return mongoClient
+                .rxFindOneAndUpdateWithOptions(
+                        COMPARISONS,
+                        queryFrom(userId, cmpId),
+                        update,
+                        new FindOptions().setFields(new JsonObject()
+                                .put(field + "Digest", 1)
+                                .put(field + "Chunks", 1)
+                                .put(field + "Blob", 1)),
+                        new UpdateOptions().setUpsert(true).setReturningNewDocument(false))
+                .flatMapSingleElement(previous -> removeReplacedChunks(userId, cmpId, side, previous)
+                        .andThen(releaseBlob(previous, field))
+                        .toSingleDefault(false))
+                .toSingle(true);
+    }
+
+    /**
+     * Encode decoded side data with the configured codec. Encoding might take a
+     * significant time for large sides, so it's done in a worker thread.
+     */
+    private Single<byte[]> encode(byte[] decoded) {
+        if (codec == SideCodec.NONE) {
+            return Single.just(decoded);
+        }
+        return vertx.<byte[]>rxExecuteBlocking(future -> future.complete(codec.encode(decoded, compressionLevel)))
+                .toSingle();
+    }
+
+    /**
+     * Build a side upsert, unsetting fields only if there's any field to unset.
+     */
+    private JsonObject update(JsonObject set, JsonObject unset, JsonObject rename, JsonObject inc) {
+        JsonObject update = new JsonObject().put("$set", set).put("$rename", rename).put("$inc", inc);
+        return unset.isEmpty() ? update : update.put("$unset", unset);
+    }
+
+    /**
+     * Remove the chunks of a side replaced by an upsert, unless the side was stored inline.
+     * Chunks are removed even if the new side has the same digest, since every upload stores
+     * its own chunks. For the same reason, an upload can only remove the chunks it replaced,
+     * never the chunks of a concurrent upload of the same side.
+     */
+    private Completable removeReplacedChunks(String userId, String cmpId, Side side, JsonObject previous) {
+        String field = side == Side.LEFT? "left" : "right";
+        JsonObject previousChunks = previous.getJsonObject(field + "Chunks");
+        if (Objects.isNull(previousChunks) || Objects.isNull(chunkStore)) {
+            return Completable.complete();
+        }
+        SideChunks chunks = Json.mapper.convertValue(previousChunks, SideChunks.class);
+        return chunkStore.remove(userId, cmpId, side, previous.getString(field + "Digest"), chunks);
+    }
+
+    /**
+     * Release the blob referenced by the given side of a replaced or deleted comparison, if any.
+     * The blob is released even if the new side has the same digest, since upserting the new
+     * side acquired another reference to it.
+     */
+    private Completable releaseBlob(JsonObject previous, String field) {
+        String blob = previous.getString(field + "Blob");
+        return Objects.isNull(blob) || Objects.isNull(blobStore) ? Completable.complete() : blobStore.release(blob);
+    }
+
     @Override
     public Maybe<Comparison> get(String userId, String cmpId) {
         return mongoClient.rxFindOne(COMPARISONS, queryFrom(userId, cmpId), new JsonObject())
+                .flatMapSingleElement(this::withBlobs)
+                .map(json -> Json.mapper.convertValue(fromBinary(fromBinary(json, "left"), "right"), Comparison.class));
+    }
+
+    /**
+     * Get a comparison without its side data, nor the codec of sides stored as blobs.
+     */
+    @Override
+    public Maybe<Comparison> getWithoutSides(String userId, String cmpId) {
+        JsonObject fields = new JsonObject().put("left", 0).put("right", 0);
+        return mongoClient.rxFindOne(COMPARISONS, queryFrom(userId, cmpId), fields)
                 .map(json -> Json.mapper.convertValue(json, Comparison.class));
     }
 
+    /**
+     * Replace references to blobs in a comparison by the data and codec of the blobs.
+     */
+    private Single<JsonObject> withBlobs(JsonObject json) {
+        List<String> blobs = Stream.of("leftBlob", "rightBlob")
+                .map(json::getString)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
+        if (blobs.isEmpty() || Objects.isNull(blobStore)) {
+            return Single.just(json);
+        }
+
+        return blobStore.find(blobs).map(found -> {
+            for (String field : Arrays.asList("left", "right")) {
+                String digest = json.getString(field + "Blob");
+                if (Objects.nonNull(digest)) {
+                    JsonObject blob = found.get(digest);
+                    if (Objects.isNull(blob)) {
+                        throw new IllegalStateException("Missing blob " + digest + " for side " + field);
+                    }
+                    json.put(field, blob.getJsonObject("data")).put(field + "Codec", blob.getString("codec"));
+                }
+            }
+            return json;
+        });
+    }
+
+    @Override
+    public Maybe<ComparisonStatus> status(String userId, String cmpId) {
+
+        /*
+         * Side digests are projected instead of the sides, they are present iff sides are.
+         * Sides stored by versions not computing digests are checked with an extra query.
+         */
+        JsonObject fields = new JsonObject()
+                .put("version", 1)
+                .put("result", 1)
+                .put("leftDigest", 1)
+                .put("rightDigest", 1);
+
+        return mongoClient.rxFindOne(COMPARISONS, queryFrom(userId, cmpId), fields)
+                .flatMapSingleElement(json -> Single.zip(
+                        sideExists(userId, cmpId, json, "left"),
+                        sideExists(userId, cmpId, json, "right"),
+                        (lhsReady, rhsReady) -> new ComparisonStatus(
+                                userId,
+                                cmpId,
+                                json.getLong("version", 0L),
+                                lhsReady,
+                                rhsReady,
+                                toResult(json.getJsonObject("result")))));
+    }
+
+    private Single<Boolean> sideExists(String userId, String cmpId, JsonObject json, String field) {
+        if (json.containsKey(field + "Digest")) {
+            return Single.just(true);
+        }
+        JsonObject query = queryFrom(userId, cmpId).put(field, new JsonObject().put("$exists", true));
+        return mongoClient.rxCount(COMPARISONS, query).map(count -> count > 0);
+    }
+
     @Override
     public Single<Boolean> updateResult(Comparison comparison, ComparisonResult result) {
 
@@ -76,7 +471,10 @@ public class MongoComparisonDao implements ComparisonDao {
                 comparison.getCmpId()
         ).put("version", comparison.getVersion());
 
-        JsonObject update = new JsonObject().put("result", new JsonObject(Json.encode(result)));
+        JsonObject update = new JsonObject()
+                .put("result", new JsonObject(Json.encode(result)))
+                .put("resultLeftBlocks", toJson(comparison.getLeftBlocks()))
+                .put("resultRightBlocks", toJson(comparison.getRightBlocks()));
 
         return mongoClient.rxUpdateCollection(COMPARISONS, query, new JsonObject().put("$set", update))
                 .map(opResult -> opResult.getDocModified() == 1);
@@ -84,8 +482,66 @@ public class MongoComparisonDao implements ComparisonDao {
 
     @Override
     public Single<Boolean> delete(String userId, String cmpId) {
-        return mongoClient.rxRemoveDocument(COMPARISONS, queryFrom(userId, cmpId))
-                .map(opResult -> opResult.getRemovedCount() == 1);
+        Single<Boolean> deletion = Objects.isNull(blobStore)
+                ? mongoClient.rxRemoveDocument(COMPARISONS, queryFrom(userId, cmpId))
+                        .map(opResult -> opResult.getRemovedCount() == 1)
+                : mongoClient
+                        .rxFindOneAndDeleteWithOptions(
+                                COMPARISONS,
+                                queryFrom(userId, cmpId),
+                                new FindOptions().setFields(new JsonObject().put("leftBlob", 1).put("rightBlob", 1)))
+                        .flatMapSingleElement(deleted -> releaseBlob(deleted, "left")
+                                .andThen(releaseBlob(deleted, "right"))
+                                .toSingleDefault(true))
+                        .toSingle(false);
+        if (Objects.nonNull(spool)) {
+            deletion = deletion.doOnSuccess(deleted -> spool.release(userId, cmpId));
+        }
+
+        return Objects.isNull(chunkStore)
+                ? deletion
+                : deletion.flatMap(deleted -> chunkStore.removeAll(userId, cmpId).toSingleDefault(deleted));
+    }
+
+    /**
+     * Replace a side stored as BSON binary by its base64 text. Sides stored as text are left untouched.
+     * @param json   comparison json
+     * @param field  side field
+     * @return  the given json
+     */
+    static JsonObject fromBinary(JsonObject json, String field) {
+        Object side = json.getValue(field);
+        if (side instanceof JsonObject && ((JsonObject)side).containsKey(BINARY)) {
+            json.put(field, ((JsonObject)side).getString(BINARY));
+        }
+        return json;
+    }
+
+    /**
+     * Convert block fingerprints to json.
+     * @param blocks  block fingerprints, possibly null
+     * @return  json object for the given fingerprints, or null if no fingerprints given
+     */
+    private JsonObject toJson(BlockFingerprints blocks) {
+        return Objects.isNull(blocks) ? null : new JsonObject(Json.encode(blocks));
+    }
+
+    /**
+     * Convert json to a comparison result.
+     * @param json  comparison result json, possibly null
+     * @return  comparison result for the given json, or null if no json given
+     */
+    private ComparisonResult toResult(JsonObject json) {
+        return Objects.isNull(json) ? null : Json.mapper.convertValue(json, ComparisonResult.class);
+    }
+
+    /**
+     * Convert a reference to side chunks to json.
+     * @param chunks  side chunks reference
+     * @return  json object for the given reference
+     */
+    private JsonObject toJson(SideChunks chunks) {
+        return new JsonObject(Json.encode(chunks));
     }
 
     /**
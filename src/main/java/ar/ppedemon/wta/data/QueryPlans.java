@@ -0,0 +1,57 @@
+package ar.ppedemon.wta.data;
+
+import io.reactivex.Single;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.reactivex.ext.mongo.MongoClient;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Helpers for checking Mongo query plans.
+ *
+ * @author ppedemon
+ */
+final class QueryPlans {
+
+    private static final Logger logger = LoggerFactory.getLogger(QueryPlans.class);
+
+    private QueryPlans() {}
+
+    /**
+     * Explain a query and check whether its winning plan is backed by an index. That is, the
+     * plan scans some index, and never scans the whole collection. Plans are checked for every
+     * shard, if any.
+     *
+     * @param mongoClient  Mongo client
+     * @param collection   collection to query
+     * @param query        query to explain, usually with placeholder values
+     * @return  computation delivering whether the query is index backed
+     */
+    static Single<Boolean> indexed(MongoClient mongoClient, String collection, JsonObject query) {
+        JsonObject command = new JsonObject()
+                .put("explain", new JsonObject().put("find", collection).put("filter", query))
+                .put("verbosity", "queryPlanner");
+
+        return mongoClient.rxRunCommand("explain", command).map(explanation -> {
+            Object plan = explanation.getJsonObject("queryPlanner", new JsonObject()).getValue("winningPlan");
+            boolean indexed = hasStage(plan, "IXSCAN") && !hasStage(plan, "COLLSCAN");
+            if (!indexed) {
+                logger.warn("Query on {} is not index backed, plan: {}", collection, plan);
+            }
+            return indexed;
+        });
+    }
+
+    private static boolean hasStage(Object plan, String stage) {
+        if (plan instanceof JsonObject) {
+            JsonObject json = (JsonObject)plan;
+            return stage.equals(json.getValue("stage"))
+                    || json.stream().anyMatch(entry -> hasStage(entry.getValue(), stage));
+        }
+        if (plan instanceof JsonArray) {
+            return ((JsonArray)plan).stream().anyMatch(value -> hasStage(value, stage));
+        }
+        return false;
+    }
+}
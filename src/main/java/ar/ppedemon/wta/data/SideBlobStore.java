@@ -0,0 +1,133 @@
+package ar.ppedemon.wta.data;
+
+import ar.ppedemon.wta.model.SideCodec;
+import io.reactivex.Completable;
+import io.reactivex.Single;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.mongo.FindOptions;
+import io.vertx.ext.mongo.UpdateOptions;
+import io.vertx.reactivex.ext.mongo.MongoClient;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Store of comparison sides addressed by content, so equal sides are stored once no matter
+ * how many comparisons hold them (e.g., thousands of comparisons against the same baseline).
+ *
+ * Blobs are keyed by the SHA-256 digest of the decoded side, and hold the side data as
+ * BSON binary, encoded by some {@link SideCodec}, along with a count of the comparison
+ * sides referencing them. Comparisons acquire a reference before pointing to a blob, and
+ * release it after they stop pointing to it. Blobs are removed when no reference is left.
+ *
+ * Since references are acquired first, a comparison never points to a removed blob. An
+ * upsert failing between acquiring a reference and updating its comparison leaks the
+ * reference, so a blob might outlive the comparisons using it, but never the opposite.
+ *
+ * Every lookup, upsert and removal is keyed by blob Id, always backed by the Id index.
+ *
+ * @author ppedemon
+ */
+public class SideBlobStore {
+
+    private static final String BLOBS = "sideBlobs";
+    private static final String BINARY = "$binary";
+    private static final String DUPLICATE_KEY = "E11000";
+
+    private final MongoClient mongoClient;
+
+    /**
+     * Build a new store.
+     * @param mongoClient  Mongo client
+     */
+    public SideBlobStore(MongoClient mongoClient) {
+        this.mongoClient = mongoClient;
+    }
+
+    /**
+     * Acquire a reference to the blob for the given side, storing the blob if it doesn't exist.
+     * Side data is encoded only if the blob must be stored, and it's stored as is if the
+     * blob exists, even if it was encoded by a different codec.
+     *
+     * @param digest   digest of the decoded side
+     * @param codec    codec encoding side data
+     * @param encoded  computation delivering the encoded side data
+     * @return  computation signaling the reference was acquired
+     */
+    public Completable acquire(String digest, SideCodec codec, Single<byte[]> encoded) {
+        JsonObject incRefs = new JsonObject().put("$inc", new JsonObject().put("refs", 1));
+
+        return mongoClient.rxUpdateCollection(BLOBS, blobQuery(digest), incRefs)
+                .flatMapCompletable(opResult -> opResult.getDocMatched() == 1
+                        ? Completable.complete()
+                        : encoded.flatMapCompletable(data -> insert(digest, codec, data, incRefs)));
+    }
+
+    /**
+     * Insert a new blob, or acquire a reference to it if it was inserted concurrently. Concurrent
+     * upserts of the same blob might fail with a duplicate key error, in which case the upsert is
+     * retried, finding the blob inserted by the winning upsert.
+     */
+    private Completable insert(String digest, SideCodec codec, byte[] data, JsonObject incRefs) {
+        JsonObject blob = new JsonObject().put("data", new JsonObject().put(BINARY, data));
+        if (codec != SideCodec.NONE) {
+            blob.put("codec", codec.name());
+        }
+
+        return mongoClient
+                .rxUpdateCollectionWithOptions(
+                        BLOBS,
+                        blobQuery(digest),
+                        incRefs.copy().put("$setOnInsert", blob),
+                        new UpdateOptions().setUpsert(true))
+                .retry((attempt, e) -> attempt < 2 && String.valueOf(e.getMessage()).contains(DUPLICATE_KEY))
+                .ignoreElement();
+    }
+
+    /**
+     * Release a reference to the given blob, removing the blob if no references are left. The
+     * removal is conditional on the blob still being unreferenced, so references acquired in
+     * the meantime keep the blob alive.
+     *
+     * @param digest  digest of the side stored in the blob
+     * @return  computation signaling the reference was released
+     */
+    public Completable release(String digest) {
+        return mongoClient
+                .rxFindOneAndUpdateWithOptions(
+                        BLOBS,
+                        blobQuery(digest),
+                        new JsonObject().put("$inc", new JsonObject().put("refs", -1)),
+                        new FindOptions().setFields(new JsonObject().put("refs", 1)),
+                        new UpdateOptions().setReturningNewDocument(true))
+                .filter(blob -> blob.getLong("refs", 0L) <= 0)
+                .flatMapCompletable(blob -> mongoClient
+                        .rxRemoveDocument(BLOBS, blobQuery(digest).put("refs", new JsonObject().put("$lte", 0)))
+                        .ignoreElement());
+    }
+
+    /**
+     * Find the given blobs.
+     *
+     * @param digests  digests of the sides stored in the blobs
+     * @return  computation delivering the blobs found, by digest, with their data as BSON
+     *          binary and their codec name (absent if not encoded)
+     */
+    public Single<Map<String, JsonObject>> find(Collection<String> digests) {
+        JsonObject query = new JsonObject().put("_id", new JsonObject().put("$in", new JsonArray(digests.stream()
+                .distinct()
+                .collect(Collectors.toList()))));
+        FindOptions options = new FindOptions().setFields(new JsonObject().put("data", 1).put("codec", 1));
+
+        return mongoClient.rxFindWithOptions(BLOBS, query, options).map(blobs -> blobs.stream()
+                .collect(Collectors.toMap(blob -> blob.getString("_id"), Function.identity())));
+    }
+
+    private JsonObject blobQuery(String digest) {
+        return new JsonObject().put("_id", Objects.requireNonNull(digest));
+    }
+}
@@ -0,0 +1,231 @@
+package ar.ppedemon.wta.data;
+
+import ar.ppedemon.wta.model.SideChunks;
+import io.reactivex.Completable;
+import io.reactivex.Flowable;
+import io.reactivex.Single;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.mongo.IndexOptions;
+import io.vertx.ext.mongo.UpdateOptions;
+import io.vertx.reactivex.ext.mongo.MongoClient;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.UUID;
+
+/**
+ * Store of comparison sides too large for a comparison document, split in fixed-size
+ * chunks kept in their own collection, one BSON binary chunk per document.
+ *
+ * Chunks are identified by comparison key, side, side digest, upload and chunk index.
+ * Every upload stores chunks under a new random upload Id, so storing a side never
+ * overwrites chunks of another upload, not even of the same side data. Chunks can then
+ * be written before the comparison references them, and removed once the comparison
+ * stops referencing them, without ever removing chunks a concurrent upload of the same
+ * side data just stored and is about to reference. Chunks stored by older versions have
+ * no upload Id, and are looked up and removed as such.
+ *
+ * Chunk lookups, upserts and removals are all backed by a unique index on the chunk
+ * identity, which is created by {@link #initialize()}. The index created by older
+ * versions, not including the upload, is dropped.
+ *
+ * Sides are read back a chunk at a time, so only one chunk per side needs to be held
+ * in memory when comparing.
+ *
+ * @author ppedemon
+ */
+public class SideChunkStore {
+
+    private static final String CHUNKS = "sideChunks";
+    private static final String CHUNKS_INDEX = "uniqueUploadChunk";
+    private static final String LEGACY_CHUNKS_INDEX = "uniqueChunk";
+    private static final String BINARY = "$binary";
+
+    private final MongoClient mongoClient;
+    private final int chunkSize;
+
+    /**
+     * Build a new store.
+     *
+     * @param mongoClient  Mongo client
+     * @param chunkSize    size in bytes of stored chunks
+     */
+    public SideChunkStore(MongoClient mongoClient, int chunkSize) {
+        this.mongoClient = mongoClient;
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * Create the unique index identifying chunks, which also backs removals, and drop the
+     * index created by older versions, which would reject uploads of the same side data.
+     * @return  computation signaling index creation
+     */
+    public Completable initialize() {
+        JsonObject key = new JsonObject()
+                .put("userId", 1)
+                .put("cmpId", 1)
+                .put("side", 1)
+                .put("digest", 1)
+                .put("upload", 1)
+                .put("n", 1);
+        return mongoClient.rxCreateIndexWithOptions(CHUNKS, key, new IndexOptions().name(CHUNKS_INDEX).unique(true))
+                .andThen(mongoClient.rxDropIndex(CHUNKS, LEGACY_CHUNKS_INDEX).onErrorComplete());
+    }
+
+    /**
+     * Check whether chunk lookups are index backed.
+     * @return  computation delivering whether chunk lookups are index backed
+     */
+    public Single<Boolean> ready() {
+        JsonObject query = chunkQuery("", "", ComparisonDao.Side.LEFT, "", "").put("n", 0);
+        return QueryPlans.indexed(mongoClient, CHUNKS, query);
+    }
+
+    /**
+     * Store the chunks of the given side, under a new upload Id.
+     *
+     * @param userId  user Id
+     * @param cmpId   comparison Id
+     * @param side    comparison side
+     * @param digest  side digest
+     * @param data    decoded side
+     * @return  computation delivering a reference to the stored chunks
+     */
+    public Single<SideChunks> store(String userId, String cmpId, ComparisonDao.Side side, String digest, byte[] data) {
+        SideChunks chunks = new SideChunks(data.length, chunkSize, UUID.randomUUID().toString());
+        return Flowable.range(0, chunks.chunks())
+                .concatMapCompletable(n -> {
+                    int from = n * chunkSize;
+                    byte[] chunk = Arrays.copyOfRange(data, from, Math.min(data.length, from + chunkSize));
+                    return mongoClient.rxUpdateCollectionWithOptions(
+                            CHUNKS,
+                            chunkQuery(userId, cmpId, side, digest, chunks.getUpload()).put("n", n),
+                            new JsonObject().put("$set", new JsonObject().put("data", new JsonObject().put(BINARY, chunk))),
+                            new UpdateOptions().setUpsert(true))
+                            .ignoreElement();
+                })
+                .toSingleDefault(chunks);
+    }
+
+    /**
+     * Remove the chunks of the given version of a side, as stored by a single upload.
+     *
+     * @param userId  user Id
+     * @param cmpId   comparison Id
+     * @param side    comparison side
+     * @param digest  digest of the side version to remove
+     * @param chunks  reference to the chunks to remove
+     * @return  computation signaling removal completion
+     */
+    public Completable remove(
+            String userId, String cmpId, ComparisonDao.Side side, String digest, SideChunks chunks) {
+        JsonObject query = chunkQuery(userId, cmpId, side, digest, chunks.getUpload());
+        return mongoClient.rxRemoveDocuments(CHUNKS, query).ignoreElement();
+    }
+
+    /**
+     * Remove the chunks of all sides of a comparison.
+     *
+     * @param userId  user Id
+     * @param cmpId   comparison Id
+     * @return  computation signaling removal completion
+     */
+    public Completable removeAll(String userId, String cmpId) {
+        return mongoClient.rxRemoveDocuments(CHUNKS, new JsonObject().put("userId", userId).put("cmpId", cmpId))
+                .ignoreElement();
+    }
+
+    /**
+     * Open a stream reading the given side a chunk at a time. Reading is blocking,
+     * so the stream must not be read from the event loop.
+     *
+     * @param userId  user Id
+     * @param cmpId   comparison Id
+     * @param side    comparison side
+     * @param digest  side digest
+     * @param chunks  reference to side chunks
+     * @return  stream of decoded side bytes
+     */
+    public InputStream open(String userId, String cmpId, ComparisonDao.Side side, String digest, SideChunks chunks) {
+        return new ChunkStream(chunkQuery(userId, cmpId, side, digest, chunks.getUpload()), chunks.chunks());
+    }
+
+    /**
+     * Query for the chunks of a side stored by the given upload. A null upload
+     * matches chunks stored by older versions, which have no upload Id.
+     */
+    private JsonObject chunkQuery(String userId, String cmpId, ComparisonDao.Side side, String digest, String upload) {
+        return new JsonObject()
+                .put("userId", userId)
+                .put("cmpId", cmpId)
+                .put("side", side.name())
+                .put("digest", digest)
+                .put("upload", upload);
+    }
+
+    /**
+     * Stream fetching chunks lazily, as previous chunks are consumed.
+     */
+    private class ChunkStream extends InputStream {
+
+        private final JsonObject query;
+        private final int count;
+
+        private int next;
+        private byte[] chunk = new byte[0];
+        private int position;
+
+        ChunkStream(JsonObject query, int count) {
+            this.query = query;
+            this.count = count;
+        }
+
+        @Override
+        public int read() throws IOException {
+            return available() > 0 || fetch() ? chunk[position++] & 0xff : -1;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            if (length == 0) {
+                return 0;
+            }
+            if (available() == 0 && !fetch()) {
+                return -1;
+            }
+
+            int read = Math.min(length, available());
+            System.arraycopy(chunk, position, buffer, offset, read);
+            position += read;
+            return read;
+        }
+
+        @Override
+        public int available() {
+            return chunk.length - position;
+        }
+
+        /**
+         * Fetch next chunk, answering false if there are no more chunks.
+         */
+        private boolean fetch() throws IOException {
+            if (next == count) {
+                return false;
+            }
+
+            JsonObject json = mongoClient
+                    .rxFindOne(CHUNKS, query.copy().put("n", next), new JsonObject().put("data", 1))
+                    .blockingGet();
+            if (Objects.isNull(json)) {
+                throw new IOException("Missing chunk " + next + " of side " + query.getString("side"));
+            }
+
+            chunk = json.getJsonObject("data").getBinary(BINARY);
+            position = 0;
+            next++;
+            return true;
+        }
+    }
+}
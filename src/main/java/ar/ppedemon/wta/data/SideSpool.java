@@ -0,0 +1,235 @@
+package ar.ppedemon.wta.data;
+
+import com.google.common.collect.HashMultiset;
+import com.google.common.collect.Multiset;
+import io.vertx.reactivex.core.Vertx;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Local spool of decoded comparison sides, so large sides can be compared by
+ * memory mapping files rather than decoding them into the heap.
+ *
+ * Sides at least as long as a threshold are stored in files named after the
+ * SHA-256 digest of their decoded data, the same digest stored in comparisons.
+ * Files are immutable once written (a side update produces a new digest, and
+ * then a new file), so they can be read without coordinating with uploads.
+ *
+ * Files are reference counted by the comparison sides spooled to them, and
+ * removed by periodic sweeps once unreferenced for a grace period, so a
+ * comparison read just before its side was replaced or deleted can still map
+ * it. References are kept in memory, so files spooled before a restart are
+ * unknown, and swept once older than the grace period.
+ *
+ * The spool is just a cache: files might be missing (e.g., if the side was
+ * uploaded through another instance, or before a restart), and clients must
+ * fall back to reading the side from storage.
+ *
+ * @author ppedemon
+ */
+public class SideSpool {
+
+    private static final Logger logger = LoggerFactory.getLogger(SideSpool.class);
+
+    private final Path directory;
+    private final int threshold;
+    private final long gracePeriod;
+
+    private final Map<List<String>, String> spooled = new HashMap<>();
+    private final Multiset<String> references = HashMultiset.create();
+    private final Map<String, Long> released = new HashMap<>();
+    private boolean sweeping;
+
+    /**
+     * Build a new spool.
+     *
+     * @param directory    directory where sides are spooled
+     * @param threshold    minimum decoded side length for spooling
+     * @param gracePeriod  milliseconds unreferenced files are kept, also the interval between sweeps
+     */
+    public SideSpool(Path directory, int threshold, long gracePeriod) {
+        this.directory = directory;
+        this.threshold = threshold;
+        this.gracePeriod = gracePeriod;
+    }
+
+    /**
+     * Start sweeping the spool periodically. Done once, no matter how many times it's called.
+     *
+     * @param vertx  Vert.x instance, for timing sweeps and running them in worker threads
+     */
+    public synchronized void initialize(Vertx vertx) {
+        if (!sweeping) {
+            sweeping = true;
+            vertx.setPeriodic(gracePeriod, id -> vertx
+                    .<Integer>rxExecuteBlocking(future -> future.complete(sweep()), false)
+                    .subscribe(
+                            removed -> logger.debug("Removed {} spooled sides", removed),
+                            error -> logger.warn("Can't sweep side spool", error)));
+        }
+    }
+
+    /**
+     * Spool a decoded comparison side, if large enough and not already spooled. The comparison
+     * side stops referencing the side previously spooled for it, if any. Blocking, must not be
+     * called from the event loop. Failing to write the side is logged, since the spool is just
+     * a cache.
+     *
+     * @param userId  user Id
+     * @param cmpId   comparison Id
+     * @param side    comparison side
+     * @param data    decoded side data
+     * @param digest  hex encoded SHA-256 digest of the decoded side data
+     */
+    public void spool(String userId, String cmpId, ComparisonDao.Side side, byte[] data, String digest) {
+        List<String> key = keyFrom(userId, cmpId, side);
+        if (data.length < threshold) {
+            unreference(key);
+            return;
+        }
+
+        // Reference the file before writing it, so it's never swept while written
+        reference(key, digest);
+        Path file = directory.resolve(digest);
+        if (Files.exists(file)) {
+            return;
+        }
+
+        // Write to a temporary file first, so readers never find partially written sides
+        try {
+            Files.createDirectories(directory);
+            Path temp = Files.createTempFile(directory, "side", ".tmp");
+            try {
+                Files.write(temp, data);
+                Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+        } catch (IOException e) {
+            logger.warn("Can't spool side, large comparisons will be slower", e);
+        }
+    }
+
+    /**
+     * Release the sides spooled for a comparison, because it was deleted or evicted.
+     *
+     * @param userId  user Id
+     * @param cmpId   comparison Id
+     */
+    public synchronized void release(String userId, String cmpId) {
+        for (ComparisonDao.Side side : ComparisonDao.Side.values()) {
+            unreference(keyFrom(userId, cmpId, side));
+        }
+    }
+
+    /**
+     * Answer whether both sides of a comparison were spooled by this spool. Their files
+     * might still be missing, if they couldn't be written.
+     *
+     * @param userId  user Id
+     * @param cmpId   comparison Id
+     * @return  whether both sides of the given comparison were spooled
+     */
+    public synchronized boolean spooled(String userId, String cmpId) {
+        return Stream.of(ComparisonDao.Side.values())
+                .allMatch(side -> spooled.containsKey(keyFrom(userId, cmpId, side)));
+    }
+
+    /**
+     * Find the file where the side with the given digest was spooled.
+     *
+     * @param digest  hex encoded SHA-256 digest of decoded side, possibly null
+     * @return  file holding the decoded side, or empty if not spooled
+     */
+    public Optional<Path> find(String digest) {
+        if (Objects.isNull(digest)) {
+            return Optional.empty();
+        }
+        Path file = directory.resolve(digest);
+        return Files.isRegularFile(file) ? Optional.of(file) : Optional.empty();
+    }
+
+    /**
+     * Remove files unreferenced for at least the grace period, or unknown and older than it.
+     * Blocking, must not be called from the event loop.
+     *
+     * @return  number of removed files
+     * @throws UncheckedIOException if the spool directory can't be read
+     */
+    public int sweep() {
+        if (!Files.isDirectory(directory)) {
+            return 0;
+        }
+
+        List<Path> files;
+        try (Stream<Path> listing = Files.list(directory)) {
+            files = listing.collect(Collectors.toList());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        long deadline = System.currentTimeMillis() - gracePeriod;
+        int removed = 0;
+        for (Path file : files) {
+            try {
+                if (remove(file, deadline)) {
+                    removed++;
+                }
+            } catch (IOException e) {
+                logger.warn("Can't remove spooled side {}", file, e);
+            }
+        }
+        return removed;
+    }
+
+    /**
+     * Remove a file if unreferenced since before the given deadline. Checked and removed
+     * atomically, so the file can't be referenced again in the meantime.
+     */
+    private synchronized boolean remove(Path file, long deadline) throws IOException {
+        String name = file.getFileName().toString();
+        if (references.contains(name)) {
+            return false;
+        }
+        long unreferenced = Math.max(Files.getLastModifiedTime(file).toMillis(), released.getOrDefault(name, 0L));
+        if (unreferenced > deadline) {
+            return false;
+        }
+        released.remove(name);
+        return Files.deleteIfExists(file);
+    }
+
+    private synchronized void reference(List<String> key, String digest) {
+        references.add(digest);
+        released.remove(digest);
+        dereference(spooled.put(key, digest));
+    }
+
+    private synchronized void unreference(List<String> key) {
+        dereference(spooled.remove(key));
+    }
+
+    private void dereference(String digest) {
+        if (Objects.nonNull(digest) && references.remove(digest) && !references.contains(digest)) {
+            released.put(digest, System.currentTimeMillis());
+        }
+    }
+
+    private List<String> keyFrom(String userId, String cmpId, ComparisonDao.Side side) {
+        return Arrays.asList(userId, cmpId, side.name());
+    }
+}
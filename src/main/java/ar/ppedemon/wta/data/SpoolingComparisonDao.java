@@ -0,0 +1,94 @@
+package ar.ppedemon.wta.data;
+
+import ar.ppedemon.wta.model.Comparison;
+import ar.ppedemon.wta.model.ComparisonResult;
+import ar.ppedemon.wta.model.ComparisonStatus;
+import io.reactivex.Completable;
+import io.reactivex.Maybe;
+import io.reactivex.Single;
+import io.vertx.reactivex.core.Vertx;
+
+/**
+ * Comparison DAO reading comparisons whose sides are spooled to a {@link SideSpool} without
+ * their sides, so large sides are compared through memory mapped files and never loaded into
+ * the heap. Sides are spooled by the delegate DAO when upserted, in the same worker thread
+ * step decoding them (see {@link DecodedSide}), and released when comparisons are removed.
+ *
+ * Comparisons are read without sides only if both are spooled, and stored as plain data.
+ * Otherwise, or if any spooled file is missing, they are read again with their sides.
+ *
+ * @author ppedemon
+ */
+public class SpoolingComparisonDao implements ComparisonDao {
+
+    private final ComparisonDao delegate;
+    private final SideSpool spool;
+    private final Vertx vertx;
+
+    /**
+     * Build a new DAO.
+     *
+     * @param delegate  DAO storing comparisons, spooling their sides to the given spool
+     * @param spool     spool for large sides
+     * @param vertx     Vert.x instance, for sweeping the spool
+     */
+    public SpoolingComparisonDao(ComparisonDao delegate, SideSpool spool, Vertx vertx) {
+        this.delegate = delegate;
+        this.spool = spool;
+        this.vertx = vertx;
+    }
+
+    @Override
+    public Completable initialize() {
+        return delegate.initialize().doOnComplete(() -> spool.initialize(vertx));
+    }
+
+    @Override
+    public Single<Boolean> ready() {
+        return delegate.ready();
+    }
+
+    @Override
+    public Single<Boolean> upsertSide(String userId, String cmpId, Side side, String data) {
+        return delegate.upsertSide(userId, cmpId, side, data);
+    }
+
+    @Override
+    public Maybe<Comparison> get(String userId, String cmpId) {
+        if (!spool.spooled(userId, cmpId)) {
+            return delegate.get(userId, cmpId);
+        }
+        return delegate.getWithoutSides(userId, cmpId)
+                .flatMap(comparison -> mappable(comparison) ? Maybe.just(comparison) : delegate.get(userId, cmpId));
+    }
+
+    @Override
+    public Maybe<Comparison> getWithoutSides(String userId, String cmpId) {
+        return delegate.getWithoutSides(userId, cmpId);
+    }
+
+    @Override
+    public Maybe<ComparisonStatus> status(String userId, String cmpId) {
+        return delegate.status(userId, cmpId);
+    }
+
+    @Override
+    public Single<Boolean> updateResult(Comparison comparison, ComparisonResult result) {
+        return delegate.updateResult(comparison, result);
+    }
+
+    @Override
+    public Single<Boolean> delete(String userId, String cmpId) {
+        return delegate.delete(userId, cmpId);
+    }
+
+    /**
+     * Answer whether a comparison read without sides can be compared through spooled files.
+     */
+    private boolean mappable(Comparison comparison) {
+        return !comparison.chunked()
+                && !comparison.encoded()
+                && spool.find(comparison.getLeftDigest()).isPresent()
+                && spool.find(comparison.getRightDigest()).isPresent();
+    }
+}
@@ -0,0 +1,153 @@
+package ar.ppedemon.wta.data;
+
+import io.reactivex.Single;
+import io.reactivex.SingleEmitter;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.mongo.BulkOperation;
+import io.vertx.ext.mongo.MongoClientBulkWriteResult;
+import io.vertx.reactivex.core.Vertx;
+import io.vertx.reactivex.ext.mongo.MongoClient;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Batcher gathering upserts on a collection and sending them in ordered bulk writes,
+ * trading a little latency for far fewer round trips under load.
+ *
+ * Upserts are gathered for a short window after the first one, or until a batch is full.
+ * Only one batch is written at a time, and upserts arriving meanwhile are written as soon
+ * as it completes. Hence, upserts are applied in the order they were submitted, which keeps
+ * versions (and the comparison invariant) consistent for comparisons upserted repeatedly.
+ *
+ * Every upsert is completed with whether it created a document. If a bulk write fails,
+ * all upserts in the batch fail, even if some of them were applied. Upserts are idempotent
+ * as far as side data is concerned, so retrying them is safe.
+ *
+ * @author ppedemon
+ */
+class UpsertBatcher {
+
+    private final MongoClient mongoClient;
+    private final String collection;
+    private final Vertx vertx;
+    private final int maxBatchSize;
+    private final long window;
+
+    private List<Upsert> pending = new ArrayList<>();
+    private boolean writing;
+    private long timer = -1;
+
+    /**
+     * Build a new batcher.
+     *
+     * @param mongoClient   Mongo client
+     * @param collection    collection to upsert to
+     * @param vertx         Vert.x instance, for timing batch windows
+     * @param maxBatchSize  maximum number of upserts per bulk write
+     * @param window        milliseconds to wait for more upserts before writing a batch
+     */
+    UpsertBatcher(MongoClient mongoClient, String collection, Vertx vertx, int maxBatchSize, long window) {
+        this.mongoClient = mongoClient;
+        this.collection = collection;
+        this.vertx = vertx;
+        this.maxBatchSize = maxBatchSize;
+        this.window = window;
+    }
+
+    /**
+     * Upsert a document in the next batch.
+     *
+     * @param query   query matching the document to update
+     * @param update  update to apply
+     * @return  computation delivering true iif the document was created
+     */
+    Single<Boolean> upsert(JsonObject query, JsonObject update) {
+        return Single.create(emitter -> submit(new Upsert(query, update, emitter)));
+    }
+
+    private synchronized void submit(Upsert upsert) {
+        pending.add(upsert);
+        if (writing) {
+            return;
+        }
+        if (pending.size() >= maxBatchSize) {
+            write();
+        } else if (timer == -1) {
+            timer = vertx.setTimer(window, id -> onTimer());
+        }
+    }
+
+    private synchronized void onTimer() {
+        timer = -1;
+        if (!writing) {
+            write();
+        }
+    }
+
+    /**
+     * Write a batch with the oldest pending upserts, if any. Must be called while no batch is being written.
+     */
+    private synchronized void write() {
+        if (timer != -1) {
+            vertx.cancelTimer(timer);
+            timer = -1;
+        }
+        if (pending.isEmpty()) {
+            return;
+        }
+
+        List<Upsert> batch;
+        if (pending.size() <= maxBatchSize) {
+            batch = pending;
+            pending = new ArrayList<>();
+        } else {
+            batch = new ArrayList<>(pending.subList(0, maxBatchSize));
+            pending = new ArrayList<>(pending.subList(maxBatchSize, pending.size()));
+        }
+
+        List<BulkOperation> operations = batch.stream()
+                .map(upsert -> BulkOperation.createUpdate(upsert.query, upsert.update, true, false))
+                .collect(Collectors.toList());
+
+        writing = true;
+        mongoClient.rxBulkWrite(collection, operations).subscribe(
+                result -> {
+                    Set<Integer> created = createdIndexes(result);
+                    for (int i = 0; i < batch.size(); i++) {
+                        batch.get(i).emitter.onSuccess(created.contains(i));
+                    }
+                    written();
+                },
+                error -> {
+                    batch.forEach(upsert -> upsert.emitter.tryOnError(error));
+                    written();
+                });
+    }
+
+    private synchronized void written() {
+        writing = false;
+        write();
+    }
+
+    private Set<Integer> createdIndexes(MongoClientBulkWriteResult result) {
+        return result.getUpserts().stream()
+                .map(upsert -> upsert.getInteger(MongoClientBulkWriteResult.INDEX_FIELD))
+                .collect(Collectors.toSet());
+    }
+
+    private static class Upsert {
+
+        private final JsonObject query;
+        private final JsonObject update;
+        private final SingleEmitter<Boolean> emitter;
+
+        Upsert(JsonObject query, JsonObject update, SingleEmitter<Boolean> emitter) {
+            this.query = query;
+            this.update = update;
+            this.emitter = emitter;
+        }
+    }
+}
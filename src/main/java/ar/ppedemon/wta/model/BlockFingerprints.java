@@ -0,0 +1,101 @@
+package ar.ppedemon.wta.model;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Fingerprints of the fixed-size blocks of some decoded comparison side, plus the
+ * side's length. Two sides of equal length can be compared block by block: blocks
+ * with different fingerprints are known to have changed.
+ *
+ * Block size is a multiple of 3, so every block maps to a whole number of base64
+ * quanta, and can be decoded on its own from a substring of the encoded side.
+ *
+ * @author ppedemon
+ */
+public class BlockFingerprints {
+
+    /**
+     * Size in bytes of a block, encoded as exactly {@link #ENCODED_BLOCK_SIZE} base64 characters.
+     */
+    public static final int BLOCK_SIZE = 3 << 10;
+    public static final int ENCODED_BLOCK_SIZE = BLOCK_SIZE / 3 * 4;
+
+    private static final HashFunction BLOCK_HASH = Hashing.murmur3_128();
+
+    private final int length;
+    private final List<Long> hashes;
+
+    /**
+     * Compute fingerprints for the given decoded side.
+     *
+     * @param data  decoded side
+     * @return  {@link BlockFingerprints} instance
+     */
+    public static BlockFingerprints of(byte[] data) {
+        return of(data, null);
+    }
+
+    /**
+     * Compute fingerprints for the given decoded side, feeding every block to the given
+     * hasher too, so a digest of the whole side is computed in the same pass over it.
+     *
+     * @param data    decoded side
+     * @param digest  hasher to feed the side to, possibly null
+     * @return  {@link BlockFingerprints} instance
+     */
+    public static BlockFingerprints of(byte[] data, Hasher digest) {
+        List<Long> hashes = new ArrayList<>((data.length + BLOCK_SIZE - 1) / BLOCK_SIZE);
+        for (int offset = 0; offset < data.length; offset += BLOCK_SIZE) {
+            int length = Math.min(BLOCK_SIZE, data.length - offset);
+            hashes.add(BLOCK_HASH.hashBytes(data, offset, length).asLong());
+            if (Objects.nonNull(digest)) {
+                digest.putBytes(data, offset, length);
+            }
+        }
+        return new BlockFingerprints(data.length, hashes);
+    }
+
+    @JsonCreator
+    public BlockFingerprints(@JsonProperty("length") int length, @JsonProperty("hashes") List<Long> hashes) {
+        this.length = length;
+        this.hashes = hashes;
+    }
+
+    public int getLength() {
+        return length;
+    }
+
+    public List<Long> getHashes() {
+        return hashes;
+    }
+
+    /**
+     * Answer the number of blocks.
+     * @return  number of blocks
+     */
+    @JsonIgnore
+    public int blocks() {
+        return hashes.size();
+    }
+
+    /**
+     * Answer whether the block with the given index has the same fingerprint in these
+     * and in the given fingerprints. Both fingerprints must be for sides of equal length.
+     *
+     * @param other  fingerprints to compare against
+     * @param block  block index
+     * @return  whether block is unchanged
+     */
+    public boolean sameBlock(BlockFingerprints other, int block) {
+        return hashes.get(block).equals(other.hashes.get(block));
+    }
+}
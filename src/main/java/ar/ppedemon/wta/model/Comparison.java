@@ -9,9 +9,17 @@ import java.util.Objects;
  *
  * A comparison is formed by:
  *   - cmpId and userId fields: together define a unique key.
- *   - left and right hand side data.
+ *   - left and right hand side data, or references to their chunks if they are too
+ *     large to be stored in the comparison (see {@link SideChunks}).
+ *   - left and right hand side codecs: codec used for storing each side, if any (see {@link SideCodec}).
+ *     Encoded sides are handed out as they are stored, and decoded when compared.
+ *   - left and right hand side digests: strong hashes of the decoded data of each side
+ *   - left and right hand side blocks: fingerprints of fixed-size blocks of each side
  *   - version: updated whenever left or right hand side data is changed
  *   - result: lazily computed comparison result
+ *   - previous result: last result invalidated by a side update, along with the
+ *     block fingerprints of the sides it was computed for. It might be stale, and
+ *     it's only useful for incrementally computing a new result.
  *
  * Invariant: if present, result *always* refer to comparison of the current
  * left and right hand side data. That is, we avoid the following lost-update
@@ -30,8 +38,19 @@ public class Comparison {
     private final String userId;
     private String left;
     private String right;
+    private SideChunks leftChunks;
+    private SideChunks rightChunks;
+    private SideCodec leftCodec;
+    private SideCodec rightCodec;
+    private String leftDigest;
+    private String rightDigest;
+    private BlockFingerprints leftBlocks;
+    private BlockFingerprints rightBlocks;
     private long version;
     private ComparisonResult result;
+    private ComparisonResult previousResult;
+    private BlockFingerprints previousLeftBlocks;
+    private BlockFingerprints previousRightBlocks;
 
     @JsonCreator
     public Comparison(@JsonProperty("cmpId") String id, @JsonProperty("userId") String userId) {
@@ -65,6 +84,78 @@ public class Comparison {
         return this;
     }
 
+    public SideChunks getLeftChunks() {
+        return leftChunks;
+    }
+
+    public Comparison setLeftChunks(SideChunks leftChunks) {
+        this.leftChunks = leftChunks;
+        return this;
+    }
+
+    public SideChunks getRightChunks() {
+        return rightChunks;
+    }
+
+    public Comparison setRightChunks(SideChunks rightChunks) {
+        this.rightChunks = rightChunks;
+        return this;
+    }
+
+    public SideCodec getLeftCodec() {
+        return leftCodec;
+    }
+
+    public Comparison setLeftCodec(SideCodec leftCodec) {
+        this.leftCodec = leftCodec;
+        return this;
+    }
+
+    public SideCodec getRightCodec() {
+        return rightCodec;
+    }
+
+    public Comparison setRightCodec(SideCodec rightCodec) {
+        this.rightCodec = rightCodec;
+        return this;
+    }
+
+    public String getLeftDigest() {
+        return leftDigest;
+    }
+
+    public Comparison setLeftDigest(String leftDigest) {
+        this.leftDigest = leftDigest;
+        return this;
+    }
+
+    public String getRightDigest() {
+        return rightDigest;
+    }
+
+    public Comparison setRightDigest(String rightDigest) {
+        this.rightDigest = rightDigest;
+        return this;
+    }
+
+    public BlockFingerprints getLeftBlocks() {
+        return leftBlocks;
+    }
+
+    public Comparison setLeftBlocks(BlockFingerprints leftBlocks) {
+        this.leftBlocks = leftBlocks;
+        return this;
+    }
+
+    public BlockFingerprints getRightBlocks() {
+        return rightBlocks;
+    }
+
+    public Comparison setRightBlocks(BlockFingerprints rightBlocks) {
+        this.rightBlocks = rightBlocks;
+        return this;
+    }
+
     public long getVersion() {
         return version;
     }
@@ -83,8 +174,85 @@ public class Comparison {
         return this;
     }
 
+    public ComparisonResult getPreviousResult() {
+        return previousResult;
+    }
+
+    public Comparison setPreviousResult(ComparisonResult previousResult) {
+        this.previousResult = previousResult;
+        return this;
+    }
+
+    public BlockFingerprints getPreviousLeftBlocks() {
+        return previousLeftBlocks;
+    }
+
+    public Comparison setPreviousLeftBlocks(BlockFingerprints previousLeftBlocks) {
+        this.previousLeftBlocks = previousLeftBlocks;
+        return this;
+    }
+
+    public BlockFingerprints getPreviousRightBlocks() {
+        return previousRightBlocks;
+    }
+
+    public Comparison setPreviousRightBlocks(BlockFingerprints previousRightBlocks) {
+        this.previousRightBlocks = previousRightBlocks;
+        return this;
+    }
+
     @JsonIgnore
     public boolean valid() {
-        return Objects.nonNull(left) && Objects.nonNull(right);
+        return hasLeft() && hasRight();
+    }
+
+    /**
+     * Answer whether the left side is present. Sides whose data was left out when reading
+     * the comparison are present, since they still have their digest.
+     * @return  whether the left side is present
+     */
+    @JsonIgnore
+    public boolean hasLeft() {
+        return Objects.nonNull(left) || Objects.nonNull(leftChunks) || Objects.nonNull(leftDigest);
+    }
+
+    /**
+     * Answer whether the right side is present, see {@link #hasLeft()}.
+     * @return  whether the right side is present
+     */
+    @JsonIgnore
+    public boolean hasRight() {
+        return Objects.nonNull(right) || Objects.nonNull(rightChunks) || Objects.nonNull(rightDigest);
+    }
+
+    /**
+     * Answer whether any side is stored in chunks, rather than in the comparison.
+     * @return  whether any side is chunked
+     */
+    @JsonIgnore
+    public boolean chunked() {
+        return Objects.nonNull(leftChunks) || Objects.nonNull(rightChunks);
+    }
+
+    /**
+     * Answer whether any side is stored encoded by a codec other than {@link SideCodec#NONE}.
+     * @return  whether any side is encoded
+     */
+    @JsonIgnore
+    public boolean encoded() {
+        return encoded(leftCodec) || encoded(rightCodec);
+    }
+
+    private static boolean encoded(SideCodec codec) {
+        return Objects.nonNull(codec) && codec != SideCodec.NONE;
+    }
+
+    /**
+     * Answer whether both sides are known to be equal because they have the same digest.
+     * @return  whether both sides have the same, non null, digest
+     */
+    @JsonIgnore
+    public boolean equalDigests() {
+        return Objects.nonNull(leftDigest) && leftDigest.equals(rightDigest);
     }
 }
@@ -0,0 +1,86 @@
+package ar.ppedemon.wta.model;
+
+/**
+ * Class modeling options bounding the work done by a comparison:
+ *
+ *   - equalityOnly: just find out whether sides are equal, reporting no differences
+ *   - maxDifferences: report at most this many differences
+ *   - maxBytes: scan at most this many bytes (or characters, for text comparisons)
+ *
+ * Bounded comparisons can stop as soon as the requested information is known.
+ * Options also define the {@link Granularity} of reported differences.
+ *
+ * @author ppedemon
+ */
+public class ComparisonOptions {
+
+    private static final ComparisonOptions FULL =
+            new ComparisonOptions(false, Integer.MAX_VALUE, Integer.MAX_VALUE);
+
+    private final boolean equalityOnly;
+    private final int maxDifferences;
+    private final int maxBytes;
+    private final Granularity granularity;
+
+    /**
+     * Options for a full comparison, with no bounds.
+     * @return  options for a full comparison
+     */
+    public static ComparisonOptions full() {
+        return FULL;
+    }
+
+    public ComparisonOptions(boolean equalityOnly, int maxDifferences, int maxBytes) {
+        this(equalityOnly, maxDifferences, maxBytes, Granularity.BYTE);
+    }
+
+    public ComparisonOptions(boolean equalityOnly, int maxDifferences, int maxBytes, Granularity granularity) {
+        this.equalityOnly = equalityOnly;
+        this.maxDifferences = maxDifferences;
+        this.maxBytes = maxBytes;
+        this.granularity = granularity;
+    }
+
+    public boolean isEqualityOnly() {
+        return equalityOnly;
+    }
+
+    public int getMaxDifferences() {
+        return maxDifferences;
+    }
+
+    public int getMaxBytes() {
+        return maxBytes;
+    }
+
+    public Granularity getGranularity() {
+        return granularity;
+    }
+
+    /**
+     * Answer the maximum number of differences a comparison must look for. When checking
+     * for equality only, finding the first difference is enough.
+     *
+     * @return  maximum number of differences to look for
+     */
+    public int differencesLimit() {
+        return equalityOnly ? 1 : maxDifferences;
+    }
+
+    /**
+     * Answer whether a comparison might scan just a prefix of the sides.
+     * @return  whether scanning is bounded
+     */
+    public boolean isScanBounded() {
+        return maxBytes < Integer.MAX_VALUE;
+    }
+
+    /**
+     * Answer whether these options impose no bounds at all. Granularity isn't a bound,
+     * so it's not taken into account.
+     * @return  whether these options define a full comparison
+     */
+    public boolean isFull() {
+        return !equalityOnly && maxDifferences == Integer.MAX_VALUE && maxBytes == Integer.MAX_VALUE;
+    }
+}
@@ -2,9 +2,12 @@ package ar.ppedemon.wta.model;
 
 import com.fasterxml.jackson.annotation.JsonCreator;
 import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.annotation.JsonProperty;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Objects;
 
 /**
  * Class modeling the result of a comparison. Possible results are:
@@ -14,7 +17,21 @@ import java.util.List;
  *   - Objects with same length but still different
  *
  *  In the last case, the comparison will include a list of {@link Span}
- *  instance specifying all differences.
+ *  instance specifying all differences. In the second case, the comparison
+ *  might include a list of {@link Edit} instances transforming the left
+ *  hand side into the right hand side.
+ *
+ *  Results of comparisons bounded by {@link ComparisonOptions} are flagged as
+ *  truncated when they might omit differences. Truncated results never report
+ *  equality: if no differences were found within the scanned region, they
+ *  report equal length.
+ *
+ *  If the comparator counts differing bits, spans carry their differing bits
+ *  and complete results carry the Hamming distance, that is, the total number
+ *  of differing bits between the sides.
+ *
+ *  Results of complete comparisons also carry {@link Similarity} metrics of the
+ *  sides, which are kept when restricting the result to some options.
  */
 public class ComparisonResult {
 
@@ -24,13 +41,42 @@ public class ComparisonResult {
 
     private final Status status;
     private final List<Span> differences;
+    private final List<Edit> edits;
+    private final boolean truncated;
+    private final Long hammingDistance;
+    private final Similarity similarity;
+
+    public ComparisonResult(Status status, List<Span> differences) {
+        this(status, differences, null);
+    }
+
+    public ComparisonResult(Status status, List<Span> differences, List<Edit> edits) {
+        this(status, differences, edits, false);
+    }
+
+    public ComparisonResult(Status status, List<Span> differences, List<Edit> edits, boolean truncated) {
+        this(status, differences, edits, truncated, null);
+    }
+
+    public ComparisonResult(
+            Status status, List<Span> differences, List<Edit> edits, boolean truncated, Long hammingDistance) {
+        this(status, differences, edits, truncated, hammingDistance, null);
+    }
 
     @JsonCreator
     public ComparisonResult(
             @JsonProperty("status") Status status,
-            @JsonProperty("differences") List<Span> differences) {
+            @JsonProperty("differences") List<Span> differences,
+            @JsonProperty("edits") List<Edit> edits,
+            @JsonProperty("truncated") boolean truncated,
+            @JsonProperty("hammingDistance") Long hammingDistance,
+            @JsonProperty("similarity") Similarity similarity) {
         this.status = status;
         this.differences = differences;
+        this.edits = edits;
+        this.truncated = truncated;
+        this.hammingDistance = hammingDistance;
+        this.similarity = similarity;
     }
 
     public Status getStatus() {
@@ -41,6 +87,72 @@ public class ComparisonResult {
         return differences;
     }
 
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public List<Edit> getEdits() {
+        return edits;
+    }
+
+    @JsonInclude(JsonInclude.Include.NON_DEFAULT)
+    public boolean isTruncated() {
+        return truncated;
+    }
+
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public Long getHammingDistance() {
+        return hammingDistance;
+    }
+
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public Similarity getSimilarity() {
+        return similarity;
+    }
+
+    /**
+     * Restrict this result, assumed to be the result of a full comparison, to what
+     * a comparison bounded by the given options would report. Since the full result
+     * is known, the restricted one is only flagged as truncated if it omits something.
+     *
+     * @param options  options bounding the comparison
+     * @return  restricted result
+     */
+    public ComparisonResult restrict(ComparisonOptions options) {
+        if (options.isFull()) {
+            return this;
+        }
+
+        boolean omittedEdits = Objects.nonNull(edits) && (options.isEqualityOnly() || options.isScanBounded());
+        List<Edit> restrictedEdits = omittedEdits ? null : edits;
+        if (Objects.nonNull(restrictedEdits) && restrictedEdits.size() > options.getMaxDifferences()) {
+            restrictedEdits = new ArrayList<>(restrictedEdits.subList(0, options.getMaxDifferences()));
+        }
+
+        List<Span> restrictedDifferences = new ArrayList<>();
+        if (!options.isEqualityOnly()) {
+            for (Span span : differences) {
+                if (span.getOffset() >= options.getMaxBytes()
+                        || restrictedDifferences.size() == options.getMaxDifferences()) {
+                    break;
+                }
+                int length = options.getMaxBytes() - span.getOffset();
+                restrictedDifferences.add(length < span.getLength() ? new Span(span.getOffset(), length) : span);
+            }
+        }
+
+        boolean truncated = this.truncated
+                || omittedEdits
+                || (Objects.nonNull(edits) && restrictedEdits.size() < edits.size())
+                || !restrictedDifferences.equals(differences);
+
+        // Like a bounded comparison, don't report the Hamming distance of omitted differences
+        return new ComparisonResult(
+                status,
+                restrictedDifferences,
+                restrictedEdits,
+                truncated,
+                truncated ? null : hammingDistance,
+                similarity);
+    }
+
     /**
      * Return whether this result represents equality.
      * @return  whether this result represents equality
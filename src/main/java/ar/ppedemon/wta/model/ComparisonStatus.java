@@ -2,8 +2,6 @@ package ar.ppedemon.wta.model;
 
 import com.fasterxml.jackson.annotation.JsonInclude;
 
-import java.util.Objects;
-
 /**
  * Class modeling comparison status information.
  */
@@ -28,12 +26,12 @@ public class ComparisonStatus {
                 comparison.getUserId(),
                 comparison.getCmpId(),
                 comparison.getVersion(),
-                Objects.nonNull(comparison.getLeft()),
-                Objects.nonNull(comparison.getRight()),
+                comparison.hasLeft(),
+                comparison.hasRight(),
                 comparison.getResult());
     }
 
-    private ComparisonStatus(
+    public ComparisonStatus(
             String userId,
             String cmpId,
             long version,
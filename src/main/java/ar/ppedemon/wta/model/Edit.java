@@ -0,0 +1,104 @@
+package ar.ppedemon.wta.model;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.util.Objects;
+
+/**
+ * Edit transforming a region of the left hand side into a region of the right hand side:
+ *
+ *   - Insertion: region only present in the right hand side (left hand side length is zero)
+ *   - Deletion: region only present in the left hand side (right hand side length is zero)
+ *   - Replacement: left hand side region replaced by a right hand side region
+ *   - Move: left hand side region found, unchanged, at another place of the right hand side
+ *
+ * For insertions, the left hand side offset is the position where right hand side
+ * data must be inserted. Conversely for deletions and the right hand side offset.
+ *
+ * @author ppedemon
+ */
+public class Edit {
+
+    public enum Type {
+        INSERT, DELETE, REPLACE, MOVE
+    }
+
+    private final Type type;
+    private final int lhsOffset;
+    private final int lhsLength;
+    private final int rhsOffset;
+    private final int rhsLength;
+
+    @JsonCreator
+    public Edit(
+            @JsonProperty("type") Type type,
+            @JsonProperty("lhsOffset") int lhsOffset,
+            @JsonProperty("lhsLength") int lhsLength,
+            @JsonProperty("rhsOffset") int rhsOffset,
+            @JsonProperty("rhsLength") int rhsLength) {
+        this.type = type;
+        this.lhsOffset = lhsOffset;
+        this.lhsLength = lhsLength;
+        this.rhsOffset = rhsOffset;
+        this.rhsLength = rhsLength;
+    }
+
+    /**
+     * Build an edit transforming the given left hand side region into the given
+     * right hand side region, inferring its type from the regions' lengths.
+     *
+     * @param lhsOffset  left hand side region offset
+     * @param lhsLength  left hand side region length
+     * @param rhsOffset  right hand side region offset
+     * @param rhsLength  right hand side region length
+     * @return  {@link Edit} instance
+     */
+    public static Edit of(int lhsOffset, int lhsLength, int rhsOffset, int rhsLength) {
+        Type type = lhsLength == 0 ? Type.INSERT : rhsLength == 0 ? Type.DELETE : Type.REPLACE;
+        return new Edit(type, lhsOffset, lhsLength, rhsOffset, rhsLength);
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public int getLhsOffset() {
+        return lhsOffset;
+    }
+
+    public int getLhsLength() {
+        return lhsLength;
+    }
+
+    public int getRhsOffset() {
+        return rhsOffset;
+    }
+
+    public int getRhsLength() {
+        return rhsLength;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (obj == this) {
+            return true;
+        }
+
+        if (!(obj instanceof Edit)) {
+            return false;
+        }
+
+        Edit other = (Edit)obj;
+        return other.getType() == type
+                && other.getLhsOffset() == lhsOffset
+                && other.getLhsLength() == lhsLength
+                && other.getRhsOffset() == rhsOffset
+                && other.getRhsLength() == rhsLength;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(type, lhsOffset, lhsLength, rhsOffset, rhsLength);
+    }
+}
@@ -0,0 +1,16 @@
+package ar.ppedemon.wta.model;
+
+/**
+ * Unit in which comparisons find differences:
+ *
+ *   - BYTE: differences are runs of differing bytes (or characters, for text comparisons)
+ *   - LINE: differences are runs of changed lines, terminated by a newline character
+ *   - TOKEN: differences are runs of changed tokens, either words or whitespace
+ *
+ * In all cases, differences are reported as offsets and lengths in decoded bytes.
+ *
+ * @author ppedemon
+ */
+public enum Granularity {
+    BYTE, LINE, TOKEN
+}
@@ -0,0 +1,65 @@
+package ar.ppedemon.wta.model;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * Reference to a comparison side stored out of the comparison, split in chunks
+ * of fixed size (but the last one, which might be shorter). Chunks are identified
+ * by the comparison key, the side, the side digest, the upload that stored them
+ * and their index.
+ *
+ * Chunks stored by older versions have no upload, and are identified by the rest.
+ *
+ * @author ppedemon
+ */
+public class SideChunks {
+
+    private final long length;
+    private final int chunkSize;
+    private final String upload;
+
+    /**
+     * Build a reference to chunks stored by no upload in particular.
+     *
+     * @param length     side length
+     * @param chunkSize  chunk size
+     */
+    public SideChunks(long length, int chunkSize) {
+        this(length, chunkSize, null);
+    }
+
+    @JsonCreator
+    public SideChunks(
+            @JsonProperty("length") long length,
+            @JsonProperty("chunkSize") int chunkSize,
+            @JsonProperty("upload") String upload) {
+        this.length = length;
+        this.chunkSize = chunkSize;
+        this.upload = upload;
+    }
+
+    public long getLength() {
+        return length;
+    }
+
+    public int getChunkSize() {
+        return chunkSize;
+    }
+
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public String getUpload() {
+        return upload;
+    }
+
+    /**
+     * Answer the number of chunks.
+     * @return  number of chunks
+     */
+    @JsonIgnore
+    public int chunks() {
+        return (int)((length + chunkSize - 1) / chunkSize);
+    }
+}
@@ -0,0 +1,90 @@
+package ar.ppedemon.wta.model;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Codec used for storing a comparison side. Sides are encoded once when stored, and
+ * decoded as a stream when compared, so they are never held decoded in memory just
+ * for decompressing them.
+ *
+ * @author ppedemon
+ */
+public enum SideCodec {
+
+    /**
+     * Sides stored as they are.
+     */
+    NONE {
+        @Override
+        public byte[] encode(byte[] data, int level) {
+            return data;
+        }
+
+        @Override
+        public InputStream decode(InputStream in) {
+            return in;
+        }
+    },
+
+    /**
+     * Sides compressed with {@link Deflater}, in zlib format.
+     */
+    DEFLATE {
+        @Override
+        public byte[] encode(byte[] data, int level) {
+            Deflater deflater = new Deflater(level);
+            try {
+                deflater.setInput(data);
+                deflater.finish();
+
+                ByteArrayOutputStream out = new ByteArrayOutputStream(data.length / 4 + 64);
+                byte[] buffer = new byte[BUFFER_SIZE];
+                while (!deflater.finished()) {
+                    out.write(buffer, 0, deflater.deflate(buffer));
+                }
+                return out.toByteArray();
+            } finally {
+                deflater.end();
+            }
+        }
+
+        @Override
+        public InputStream decode(InputStream in) {
+            Inflater inflater = new Inflater();
+            return new InflaterInputStream(in, inflater, BUFFER_SIZE) {
+                @Override
+                public void close() throws IOException {
+                    try {
+                        super.close();
+                    } finally {
+                        inflater.end();
+                    }
+                }
+            };
+        }
+    };
+
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    /**
+     * Encode side data.
+     *
+     * @param data   decoded side data
+     * @param level  compression level, from 0 (fastest) to 9 (smallest), if supported by the codec
+     * @return  encoded side data
+     */
+    public abstract byte[] encode(byte[] data, int level);
+
+    /**
+     * Wrap a stream of encoded side data in a stream decoding it on the fly.
+     *
+     * @param in  stream of encoded side data
+     * @return  stream of decoded side data, closing the given stream when closed
+     */
+    public abstract InputStream decode(InputStream in);
+}
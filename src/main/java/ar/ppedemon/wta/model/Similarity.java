@@ -0,0 +1,135 @@
+package ar.ppedemon.wta.model;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Similarity metrics for the sides of a comparison, in comparison units (usually bytes):
+ *
+ *   - Equal ratio: twice the equal units over the total units of both sides, from 0 to 1
+ *   - Differing units: units of the longest side that aren't equal in the other side
+ *   - Longest equal run: longest region equal, and at the same place, in both sides
+ *
+ * For sides of equal length, equal units are the ones outside difference spans. Otherwise,
+ * they are the right hand side units not inserted or replaced by edits (hence, moved units
+ * count as equal, but don't extend equal runs).
+ *
+ * Metrics are computed from differences or edits, never from the sides themselves.
+ *
+ * @author ppedemon
+ */
+public class Similarity {
+
+    private final double equalRatio;
+    private final long differingBytes;
+    private final long longestEqualRun;
+
+    @JsonCreator
+    public Similarity(
+            @JsonProperty("equalRatio") double equalRatio,
+            @JsonProperty("differingBytes") long differingBytes,
+            @JsonProperty("longestEqualRun") long longestEqualRun) {
+        this.equalRatio = equalRatio;
+        this.differingBytes = differingBytes;
+        this.longestEqualRun = longestEqualRun;
+    }
+
+    /**
+     * Similarity of equal sides.
+     *
+     * @param length  sides length
+     * @return  {@link Similarity} instance
+     */
+    public static Similarity equal(long length) {
+        return new Similarity(1, 0, length);
+    }
+
+    /**
+     * Similarity of sides of equal length differing in the given spans.
+     *
+     * @param length       sides length
+     * @param differences  all differences between the sides, sorted by offset
+     * @return  {@link Similarity} instance
+     */
+    public static Similarity ofDifferences(long length, List<Span> differences) {
+        long differing = 0;
+        long longestRun = 0;
+        long position = 0;
+        for (Span span : differences) {
+            differing += span.getLength();
+            longestRun = Math.max(longestRun, span.getOffset() - position);
+            position = span.getOffset() + span.getLength();
+        }
+        longestRun = Math.max(longestRun, length - position);
+
+        return new Similarity(ratio(2 * (length - differing), 2 * length), differing, longestRun);
+    }
+
+    /**
+     * Similarity of sides transformed into each other by the given edits.
+     *
+     * @param lhsLength  left hand side length
+     * @param rhsLength  right hand side length
+     * @param edits      all edits transforming the left hand side into the right hand side,
+     *                   sorted by right hand side offset
+     * @return  {@link Similarity} instance
+     */
+    public static Similarity ofEdits(long lhsLength, long rhsLength, List<Edit> edits) {
+        long equal = rhsLength;
+        long longestRun = 0;
+        long position = 0;
+        for (Edit edit : edits) {
+            if (edit.getType() != Edit.Type.MOVE) {
+                equal -= edit.getRhsLength();
+            }
+            longestRun = Math.max(longestRun, edit.getRhsOffset() - position);
+            position = Math.max(position, (long)edit.getRhsOffset() + edit.getRhsLength());
+        }
+        longestRun = Math.max(longestRun, rhsLength - position);
+
+        return new Similarity(
+                ratio(2 * equal, lhsLength + rhsLength),
+                Math.max(lhsLength, rhsLength) - equal,
+                longestRun);
+    }
+
+    private static double ratio(long equal, long total) {
+        return total == 0 ? 1 : (double)equal / total;
+    }
+
+    public double getEqualRatio() {
+        return equalRatio;
+    }
+
+    public long getDifferingBytes() {
+        return differingBytes;
+    }
+
+    public long getLongestEqualRun() {
+        return longestEqualRun;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (obj == this) {
+            return true;
+        }
+
+        if (!(obj instanceof Similarity)) {
+            return false;
+        }
+
+        Similarity other = (Similarity)obj;
+        return other.getEqualRatio() == equalRatio
+                && other.getDifferingBytes() == differingBytes
+                && other.getLongestEqualRun() == longestEqualRun;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(equalRatio, differingBytes, longestEqualRun);
+    }
+}
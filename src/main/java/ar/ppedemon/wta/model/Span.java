@@ -1,12 +1,15 @@
 package ar.ppedemon.wta.model;
 
 import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.annotation.JsonProperty;
 
+import java.util.List;
 import java.util.Objects;
 
 /**
- * Span in a text: offset plus length.
+ * Span in a text: offset plus length. Optionally, spans carry the number of
+ * bits differing between both sides in the spanned region.
  *
  * @author ppedemon
  */
@@ -14,11 +17,20 @@ public class Span {
 
     private final int offset;
     private final int length;
+    private final Long bits;
+
+    public Span(int offset, int length) {
+        this(offset, length, null);
+    }
 
     @JsonCreator
-    public Span(@JsonProperty("offset") int offset, @JsonProperty("length") int length) {
+    public Span(
+            @JsonProperty("offset") int offset,
+            @JsonProperty("length") int length,
+            @JsonProperty("bits") Long bits) {
         this.offset = offset;
         this.length = length;
+        this.bits = bits;
     }
 
     public int getOffset() {
@@ -29,6 +41,40 @@ public class Span {
         return length;
     }
 
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public Long getBits() {
+        return bits;
+    }
+
+    /**
+     * Extend this span with the span starting right where this one ends.
+     * Differing bits are added up, and unknown if unknown for any span.
+     *
+     * @param next  span adjacent to this one
+     * @return  span covering both spans
+     */
+    public Span extend(Span next) {
+        Long total = Objects.nonNull(bits) && Objects.nonNull(next.bits) ? bits + next.bits : null;
+        return new Span(offset, length + next.length, total);
+    }
+
+    /**
+     * Add up the differing bits of the given spans.
+     *
+     * @param spans  spans to add up
+     * @return  total differing bits, or null if unknown for any span
+     */
+    public static Long totalBits(List<Span> spans) {
+        long total = 0;
+        for (Span span : spans) {
+            if (Objects.isNull(span.bits)) {
+                return null;
+            }
+            total += span.bits;
+        }
+        return total;
+    }
+
     @Override
     public boolean equals(Object obj) {
         if (obj == this) {
@@ -40,11 +86,11 @@ public class Span {
         }
 
         Span other = (Span)obj;
-        return other.getOffset() == offset && other.getLength() == length;
+        return other.getOffset() == offset && other.getLength() == length && Objects.equals(other.getBits(), bits);
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(offset, length);
+        return Objects.hash(offset, length, bits);
     }
 }
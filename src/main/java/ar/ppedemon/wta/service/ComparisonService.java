@@ -1,7 +1,10 @@
 package ar.ppedemon.wta.service;
 
 import ar.ppedemon.wta.model.Comparison;
+import ar.ppedemon.wta.model.ComparisonOptions;
 import ar.ppedemon.wta.model.ComparisonResult;
+import ar.ppedemon.wta.model.ComparisonStatus;
+import io.reactivex.Completable;
 import io.reactivex.Maybe;
 import io.reactivex.Single;
 
@@ -9,6 +12,20 @@ import io.reactivex.Single;
  * Interface defining contract for comparison service implementations.
  */
 public interface ComparisonService {
+    /**
+     * Prepare the service for serving requests. Must be called once before using the service.
+     *
+     * @return  computation signaling whether the service could be prepared
+     */
+    Completable initialize();
+
+    /**
+     * Check whether the service is ready to serve requests.
+     *
+     * @return  computation delivering true iif the service is ready
+     */
+    Single<Boolean> ready();
+
     /**
      * Upsert the left hand side of a given comparison. This will create a new comparison,
      * or update it if already existing. This method is idempotent.
@@ -41,14 +58,25 @@ public interface ComparisonService {
     Maybe<Comparison> get(String userId, String cmpId);
 
     /**
-     * Get comparison results for the comparison for the given user Id and comparison Id.
+     * Get the status of the comparison for the given user Id and comparison Id. Cheaper than
+     * getting the whole comparison, since comparison sides aren't read.
      *
      * @param userId  user Id
-     * @param cmpId  comparison Id
+     * @param cmpId   comparison Id
+     * @return  computation delivering the comparison status, or empty if comparison not found
+     */
+    Maybe<ComparisonStatus> status(String userId, String cmpId);
+
+    /**
+     * Get comparison results for the comparison for the given user Id and comparison Id.
+     *
+     * @param userId   user Id
+     * @param cmpId    comparison Id
+     * @param options  options bounding the comparison
      * @return  computation delivering the wrapped comparison result, or empty if the comparison can't be found.
      *   If the comparison has either side not defined, the wrapper will be unsuccessful.
      */
-    Maybe<ResultWrapper<ComparisonResult>> compare(String userId, String cmpId);
+    Maybe<ResultWrapper<ComparisonResult>> compare(String userId, String cmpId, ComparisonOptions options);
 
     /**
      * Delete a comparison given a user Id and a comparison Id.
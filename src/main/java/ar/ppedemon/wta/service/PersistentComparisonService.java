@@ -3,7 +3,13 @@ package ar.ppedemon.wta.service;
 import ar.ppedemon.wta.comparator.Comparator;
 import ar.ppedemon.wta.data.ComparisonDao;
 import ar.ppedemon.wta.model.Comparison;
+import ar.ppedemon.wta.model.ComparisonOptions;
 import ar.ppedemon.wta.model.ComparisonResult;
+import ar.ppedemon.wta.model.ComparisonStatus;
+import ar.ppedemon.wta.model.Granularity;
+import ar.ppedemon.wta.model.Similarity;
+import com.google.common.collect.Lists;
+import io.reactivex.Completable;
 import io.reactivex.Maybe;
 import io.reactivex.Single;
 import io.vertx.reactivex.core.Vertx;
@@ -19,22 +25,47 @@ public class PersistentComparisonService implements ComparisonService {
     private final ComparisonDao comparisonDao;
     private final Comparator comparator;
     private final Vertx vertx;
+    private final ResultCache resultCache;
 
-    @Inject
+    /**
+     * Build a service not caching results.
+     */
     public PersistentComparisonService(ComparisonDao comparisonDao, Comparator comparator, Vertx vertx) {
+        this(comparisonDao, comparator, vertx, new ResultCache(0));
+    }
+
+    @Inject
+    public PersistentComparisonService(
+            ComparisonDao comparisonDao,
+            Comparator comparator,
+            Vertx vertx,
+            ResultCache resultCache) {
         this.comparisonDao = comparisonDao;
         this.comparator = comparator;
         this.vertx = vertx;
+        this.resultCache = resultCache;
+    }
+
+    @Override
+    public Completable initialize() {
+        return comparisonDao.initialize();
+    }
+
+    @Override
+    public Single<Boolean> ready() {
+        return comparisonDao.ready();
     }
 
     @Override
     public Single<Boolean> upsertLeft(String userId, String cmpId, String data) {
-        return comparisonDao.upsertSide(userId, cmpId, ComparisonDao.Side.LEFT, data);
+        return comparisonDao.upsertSide(userId, cmpId, ComparisonDao.Side.LEFT, data)
+                .doOnEvent((created, error) -> resultCache.invalidate(userId, cmpId));
     }
 
     @Override
     public Single<Boolean> upsertRight(String userId, String cmpId, String data) {
-        return comparisonDao.upsertSide(userId, cmpId, ComparisonDao.Side.RIGHT, data);
+        return comparisonDao.upsertSide(userId, cmpId, ComparisonDao.Side.RIGHT, data)
+                .doOnEvent((created, error) -> resultCache.invalidate(userId, cmpId));
     }
 
     @Override
@@ -43,7 +74,12 @@ public class PersistentComparisonService implements ComparisonService {
     }
 
     @Override
-    public Maybe<ResultWrapper<ComparisonResult>> compare(String userId, String cmpId) {
+    public Maybe<ComparisonStatus> status(String userId, String cmpId) {
+        return comparisonDao.status(userId, cmpId);
+    }
+
+    @Override
+    public Maybe<ResultWrapper<ComparisonResult>> compare(String userId, String cmpId, ComparisonOptions options) {
 
         /*
          * The following logic can be summarized as follows:
@@ -51,7 +87,8 @@ public class PersistentComparisonService implements ComparisonService {
          *  1. Look for intended comparison. If none available, return an empty Maybe.
          *
          *  2. If available, check if there's a cached result. Since the comparison
-         *     invariant ensures cached results aren't stale, it's safe to return it.
+         *     invariant ensures cached results aren't stale, it's safe to return it,
+         *     restricted to the given options.
          *
          *  3. No result cached, so check if comparison is complete. If not, return
          *     a Maybe with a failed result.
@@ -60,23 +97,107 @@ public class PersistentComparisonService implements ComparisonService {
          *     comparator, and updating the result if not stale (which might happen if
          *     the comparison sides are modified while executing the comparator). This
          *     ensures the comparison invariant is preserved. Finally, return a Maybe
-         *     with the comparison result.
+         *     with the comparison result. If both sides have the same digest they are
+         *     equal, so we skip the comparator altogether. Truncated results produced by
+         *     bounded comparisons aren't complete, so they are returned but never stored.
+         *
+         * Only byte granularity results are stored. Line or token granularity results are
+         * computed on every request, unless sides are known to be equal.
+         *
+         * Stored results are cached by comparison version, and invalidated whenever sides
+         * are upserted or the comparison is deleted. So step 2 is first done against the
+         * cache, skipping reading the comparison altogether.
+         *
+         * Steps 1 to 3, and step 4 for sides with the same digest, don't need the sides
+         * themselves, so the comparison is first read without them. It's only read again,
+         * sides included, if the comparator must be run.
          */
 
-        return comparisonDao.get(userId, cmpId)
-                .flatMapSingleElement(comparison -> {
-                    if (Objects.nonNull(comparison.getResult())) {
-                        return Single.just(ResultWrapper.ok(comparison.getResult()));
-                    } else {
-                        if (!comparison.valid()) {
-                            return Single.just(ResultWrapper.error("Incomplete comparison"));
-                        }
-                        return compare(comparison).flatMap(result ->
-                                comparisonDao.updateResult(comparison, result)
-                                        .flatMap(__ -> Single.just(ResultWrapper.ok(result)))
-                        );
-                    }
-                });
+        boolean byteGranularity = options.getGranularity() == Granularity.BYTE;
+        ComparisonResult cached = resultCache.get(userId, cmpId);
+        if (Objects.nonNull(cached) && (byteGranularity || cached.isEqual())) {
+            return Maybe.just(ResultWrapper.ok(cached.restrict(options)));
+        }
+
+        long stamp = resultCache.stamp(userId, cmpId);
+        return comparisonDao.getWithoutSides(userId, cmpId).flatMap(comparison -> needsSides(comparison, options)
+                ? comparisonDao.get(userId, cmpId).flatMapSingleElement(full -> resolve(full, options, stamp))
+                : resolve(comparison, options, stamp).toMaybe());
+    }
+
+    /**
+     * Answer whether a comparison read without sides must be read again with its sides, since
+     * the DAO did leave sides out and neither a stored result nor digests can answer. That's
+     * also the case of comparisons looking incomplete, whose sides might be stored without
+     * digests by older versions.
+     */
+    private boolean needsSides(Comparison comparison, ComparisonOptions options) {
+        boolean sidesRead = Objects.nonNull(comparison.getLeft()) && Objects.nonNull(comparison.getRight());
+        return !sidesRead && !comparison.equalDigests() && !storedResultApplies(comparison, options);
+    }
+
+    /**
+     * Answer whether a stored result answers a comparison: line or token granularity
+     * comparisons can only use it if sides are equal.
+     */
+    private boolean storedResultApplies(Comparison comparison, ComparisonOptions options) {
+        return Objects.nonNull(comparison.getResult())
+                && (options.getGranularity() == Granularity.BYTE || comparison.getResult().isEqual());
+    }
+
+    /**
+     * Steps 2 to 4 for a comparison already read.
+     */
+    private Single<ResultWrapper<ComparisonResult>> resolve(
+            Comparison comparison,
+            ComparisonOptions options,
+            long stamp) {
+
+        String userId = comparison.getUserId();
+        String cmpId = comparison.getCmpId();
+        if (Objects.nonNull(comparison.getResult())) {
+            resultCache.put(userId, cmpId, comparison.getVersion(), comparison.getResult(), stamp);
+        }
+        if (storedResultApplies(comparison, options)) {
+            return Single.just(ResultWrapper.ok(comparison.getResult().restrict(options)));
+        }
+        if (!comparison.valid()) {
+            return Single.just(ResultWrapper.error("Incomplete comparison"));
+        }
+
+        boolean byteGranularity = options.getGranularity() == Granularity.BYTE;
+        Single<ComparisonResult> computation = comparison.equalDigests()
+                ? Single.just(equal(comparison))
+                : compare(comparison, options);
+        return computation.flatMap(result -> result.isTruncated() || !byteGranularity
+                ? Single.just(ResultWrapper.ok(result))
+                : comparisonDao.updateResult(comparison, result)
+                        .doOnSuccess(updated -> cache(comparison, result, updated, stamp))
+                        .flatMap(__ -> Single.just(ResultWrapper.ok(result)))
+        );
+    }
+
+    /**
+     * Cache a result, if it was stored for the comparison version it was computed for.
+     */
+    private void cache(Comparison comparison, ComparisonResult result, boolean updated, long stamp) {
+        if (updated) {
+            resultCache.put(comparison.getUserId(), comparison.getCmpId(), comparison.getVersion(), result, stamp);
+        }
+    }
+
+    /**
+     * Equal result for a comparison whose sides have the same digest, with its
+     * similarity if the sides length is known from their fingerprints. Just as
+     * the comparator's, it carries a zero Hamming distance if bits are counted.
+     */
+    private ComparisonResult equal(Comparison comparison) {
+        Similarity similarity = Objects.nonNull(comparison.getLeftBlocks())
+                ? Similarity.equal(comparison.getLeftBlocks().getLength())
+                : null;
+        Long hammingDistance = comparator.countsBits() ? 0L : null;
+        return new ComparisonResult(
+                ComparisonResult.Status.EQUAL, Lists.newArrayList(), null, false, hammingDistance, similarity);
     }
 
     /**
@@ -84,16 +205,18 @@ public class PersistentComparisonService implements ComparisonService {
      * We execute them in a worker pool, so as to avoid locking Vert.x event loop.
      *
      * @param comparison  comparison to process
+     * @param options     options bounding the comparison
      * @return  Computation delivering comparison result when completed
      */
-    private Single<ComparisonResult> compare(Comparison comparison) {
+    private Single<ComparisonResult> compare(Comparison comparison, ComparisonOptions options) {
         return vertx.<ComparisonResult>rxExecuteBlocking(future ->
-            future.complete(comparator.compare(comparison))
+            future.complete(comparator.compare(comparison, options))
         ).flatMapSingle(Single::just);
     }
 
     @Override
     public Single<Boolean> delete(String userId, String cmpId) {
-        return comparisonDao.delete(userId, cmpId);
+        return comparisonDao.delete(userId, cmpId)
+                .doOnEvent((deleted, error) -> resultCache.invalidate(userId, cmpId));
     }
 }
@@ -0,0 +1,144 @@
+package ar.ppedemon.wta.service;
+
+import ar.ppedemon.wta.model.ComparisonResult;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Cache of stored comparison results, so reading a finished comparison again doesn't read
+ * the comparison (and its sides) from storage.
+ *
+ * Results are cached along with the version of the comparison they were stored for, and
+ * a result never replaces a result cached for a newer version. Changing a comparison must
+ * invalidate its result. Caching races with invalidations: a result computed before an
+ * invalidation might be cached after it. To prevent caching such stale results, callers
+ * take a stamp before reading the comparison, and results are cached only if no
+ * invalidation happened since. Stamps are kept for stripes of comparisons rather than
+ * per comparison, so they take constant memory.
+ *
+ * The cache only sees changes made through it, so it must be shared by all services
+ * in a node, and disabled if comparisons are changed by other nodes.
+ *
+ * Results are bounded by their number of differences and edits, plus a fixed allowance
+ * per result. When the bound is exceeded, least recently used results are evicted.
+ *
+ * @author ppedemon
+ */
+public class ResultCache {
+
+    /**
+     * Rough weight of a result besides its differences and edits, and of each difference or edit.
+     */
+    private static final int RESULT_WEIGHT = 1 << 8;
+    private static final int DIFFERENCE_WEIGHT = 1 << 5;
+
+    private static final int STRIPES = 1 << 10;
+
+    private final Cache<List<String>, Entry> results;
+    private final AtomicLongArray stamps = new AtomicLongArray(STRIPES);
+
+    /**
+     * Build a new cache.
+     * @param maxWeight  rough maximum size in bytes of cached results, 0 disables caching
+     */
+    public ResultCache(long maxWeight) {
+        // A single segment, so the bound and the eviction order hold for all results, not per segment
+        this.results = CacheBuilder.newBuilder()
+                .concurrencyLevel(1)
+                .maximumWeight(maxWeight)
+                .weigher((List<String> key, Entry entry) -> entry.weight())
+                .build();
+    }
+
+    /**
+     * Get the cached result of a comparison, if any.
+     *
+     * @param userId  user Id
+     * @param cmpId   comparison Id
+     * @return  cached result, or null if none
+     */
+    public ComparisonResult get(String userId, String cmpId) {
+        Entry entry = results.getIfPresent(keyFrom(userId, cmpId));
+        return Objects.isNull(entry) ? null : entry.result;
+    }
+
+    /**
+     * Take a stamp for a comparison, to be given back when caching its result.
+     *
+     * @param userId  user Id
+     * @param cmpId   comparison Id
+     * @return  stamp
+     */
+    public long stamp(String userId, String cmpId) {
+        return stamps.get(stripe(keyFrom(userId, cmpId)));
+    }
+
+    /**
+     * Cache the result stored for a comparison version, unless the comparison was
+     * invalidated since the stamp was taken, or a newer version is cached.
+     *
+     * @param userId   user Id
+     * @param cmpId    comparison Id
+     * @param version  comparison version the result was stored for
+     * @param result   stored result
+     * @param stamp    stamp taken before reading the comparison
+     */
+    public void put(String userId, String cmpId, long version, ComparisonResult result, long stamp) {
+        List<String> key = keyFrom(userId, cmpId);
+        results.asMap().compute(key, (k, entry) -> {
+            if (stamps.get(stripe(key)) != stamp || (Objects.nonNull(entry) && entry.version >= version)) {
+                return entry;
+            }
+            return new Entry(version, result);
+        });
+    }
+
+    /**
+     * Invalidate the result of a comparison, which is about to change or has changed.
+     *
+     * @param userId  user Id
+     * @param cmpId   comparison Id
+     */
+    public void invalidate(String userId, String cmpId) {
+        List<String> key = keyFrom(userId, cmpId);
+        results.asMap().compute(key, (k, entry) -> {
+            stamps.incrementAndGet(stripe(key));
+            return null;
+        });
+    }
+
+    private List<String> keyFrom(String userId, String cmpId) {
+        return Arrays.asList(userId, cmpId);
+    }
+
+    private int stripe(List<String> key) {
+        return key.hashCode() & (STRIPES - 1);
+    }
+
+    /**
+     * Cached result, along with the comparison version it was stored for.
+     */
+    private static class Entry {
+
+        private final long version;
+        private final ComparisonResult result;
+
+        Entry(long version, ComparisonResult result) {
+            this.version = version;
+            this.result = result;
+        }
+
+        int weight() {
+            return RESULT_WEIGHT + DIFFERENCE_WEIGHT * (size(result.getDifferences()) + size(result.getEdits()));
+        }
+
+        private static int size(List<?> list) {
+            return Objects.isNull(list) ? 0 : list.size();
+        }
+    }
+}
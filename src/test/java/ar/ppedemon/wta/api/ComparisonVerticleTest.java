@@ -1,7 +1,8 @@
 package ar.ppedemon.wta.api;
 
-import ar.ppedemon.wta.model.Comparison;
+import ar.ppedemon.wta.model.ComparisonOptions;
 import ar.ppedemon.wta.model.ComparisonResult;
+import ar.ppedemon.wta.model.ComparisonStatus;
 import ar.ppedemon.wta.model.Span;
 import ar.ppedemon.wta.service.ComparisonService;
 import ar.ppedemon.wta.service.ResultWrapper;
@@ -9,6 +10,7 @@ import ar.ppedemon.wta.util.Base64Encoder;
 import ar.ppedemon.wta.util.JWTUtil;
 import ar.ppedemon.wta.util.RandomPort;
 import com.google.common.collect.Lists;
+import io.reactivex.Completable;
 import io.reactivex.Flowable;
 import io.reactivex.Maybe;
 import io.reactivex.Single;
@@ -54,6 +56,7 @@ class ComparisonVerticleTest {
     @BeforeEach
     void start(Vertx vertx, VertxTestContext context) {
         this.comparisonService = mock(ComparisonService.class);
+        when(comparisonService.initialize()).thenReturn(Completable.complete());
         ComparisonVerticle comparisonVerticle = new ComparisonVerticle(comparisonService, MAX_PAYLOAD_SIZE);
 
         int port = RandomPort.get();
@@ -235,7 +238,7 @@ class ComparisonVerticleTest {
     @Test
     @DisplayName("must return comparison results when performing a valid comparison")
     void compare_whenValidComparison_mustReturnComparisonResult(VertxTestContext context) {
-        when(comparisonService.compare(anyString(), anyString()))
+        when(comparisonService.compare(anyString(), anyString(), any(ComparisonOptions.class)))
                 .thenReturn(Maybe.just(ResultWrapper.ok(new ComparisonResult(
                         ComparisonResult.Status.DIFFERENT_LENGTH,
                         Lists.newArrayList(new Span(2, 10))
@@ -260,7 +263,7 @@ class ComparisonVerticleTest {
     @Test
     @DisplayName("must return 404 when comparing non existent comparisons")
     void compare_whenNonExistingComparison_mustReturn404(VertxTestContext context) {
-        when(comparisonService.compare(anyString(), anyString()))
+        when(comparisonService.compare(anyString(), anyString(), any(ComparisonOptions.class)))
                 .thenReturn(Maybe.empty());
 
         given()
@@ -279,7 +282,7 @@ class ComparisonVerticleTest {
     @Test
     @DisplayName("must return 400 when comparing an invalid comparison")
     void compare_whenInvalidComparison_mustReturn400(VertxTestContext context) {
-        when(comparisonService.compare(anyString(), anyString()))
+        when(comparisonService.compare(anyString(), anyString(), any(ComparisonOptions.class)))
                 .thenReturn(Maybe.just(ResultWrapper.error("Incomplete comparison")));
 
         given()
@@ -298,7 +301,7 @@ class ComparisonVerticleTest {
     @Test
     @DisplayName("must handle service errors when comparing")
     void compare_whenServiceError_mustReturn500(VertxTestContext context) {
-        when(comparisonService.compare(anyString(), anyString()))
+        when(comparisonService.compare(anyString(), anyString(), any(ComparisonOptions.class)))
                 .thenThrow(new RuntimeException("Service error"));
 
         given()
@@ -314,14 +317,30 @@ class ComparisonVerticleTest {
         context.completeNow();
     }
 
+    @Test
+    @DisplayName("must return 400 when comparing with invalid options")
+    void compare_whenInvalidOptions_mustReturn400(VertxTestContext context) {
+        given()
+                .headers("Authorization", jwtUtil.token(USER_ID))
+                .queryParam("maxDifferences", "-1")
+        .when()
+                .get("/diff/1")
+        .then()
+                .log().ifValidationFails()
+        .and().assertThat()
+                .statusCode(400)
+                .contentType(ContentType.JSON);
+
+        verify(comparisonService, never()).compare(anyString(), anyString(), any(ComparisonOptions.class));
+        context.completeNow();
+    }
+
     @Test
     @DisplayName("must return status of existing comparison")
     void getStatus_whenExistingComparison_mustReturnStatus(VertxTestContext context) {
-        when(comparisonService.get(anyString(), anyString())).thenReturn(Maybe.just(
-                new Comparison(USER_ID, "1")
-                        .setLeft("1")
-                        .setVersion(2)
-                        .setResult(new ComparisonResult(ComparisonResult.Status.EQUAL, Lists.newArrayList()))));
+        when(comparisonService.status(anyString(), anyString())).thenReturn(Maybe.just(
+                new ComparisonStatus(USER_ID, "1", 2, true, false,
+                        new ComparisonResult(ComparisonResult.Status.EQUAL, Lists.newArrayList()))));
 
         given()
                 .headers("Authorization", jwtUtil.token(USER_ID))
@@ -340,7 +359,7 @@ class ComparisonVerticleTest {
     @Test
     @DisplayName("must return 404 when getting status of non-existing comparison")
     void getStatus_whenNonExistingComparison_mustReturn404(VertxTestContext context) {
-        when(comparisonService.get(anyString(), anyString())).thenReturn(Maybe.empty());
+        when(comparisonService.status(anyString(), anyString())).thenReturn(Maybe.empty());
 
         given()
                 .headers("Authorization", jwtUtil.token(USER_ID))
@@ -358,7 +377,7 @@ class ComparisonVerticleTest {
     @Test
     @DisplayName("must handle service errors when getting status")
     void getStatus_whenServiceError_mustReturn500(VertxTestContext context) {
-        when(comparisonService.get(anyString(), anyString())).thenThrow(new RuntimeException("Service error"));
+        when(comparisonService.status(anyString(), anyString())).thenThrow(new RuntimeException("Service error"));
 
         given()
                 .headers("Authorization", jwtUtil.token(USER_ID))
@@ -429,6 +448,43 @@ class ComparisonVerticleTest {
         context.completeNow();
     }
 
+    @Test
+    @DisplayName("must report readiness without authorization")
+    void ready_whenServiceReady_mustReturn200(VertxTestContext context) {
+        when(comparisonService.ready()).thenReturn(Single.just(true));
+
+        given()
+                .basePath("")
+        .when()
+                .get("/ready")
+        .then()
+                .log().ifValidationFails()
+        .and().assertThat()
+                .statusCode(200)
+                .contentType(ContentType.JSON)
+                .body("ready", equalTo(true));
+
+        context.completeNow();
+    }
+
+    @Test
+    @DisplayName("must give 503 when service isn't ready")
+    void ready_whenServiceNotReady_mustReturn503(VertxTestContext context) {
+        when(comparisonService.ready()).thenReturn(Single.just(false));
+
+        given()
+                .basePath("")
+        .when()
+                .get("/ready")
+        .then()
+                .log().ifValidationFails()
+        .and().assertThat()
+                .statusCode(503)
+                .contentType(ContentType.JSON);
+
+        context.completeNow();
+    }
+
     private Response insertSide(String id, String side, String data) {
         return given()
                 .headers("Authorization", jwtUtil.token(USER_ID))
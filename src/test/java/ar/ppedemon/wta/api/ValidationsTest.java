@@ -1,5 +1,7 @@
 package ar.ppedemon.wta.api;
 
+import ar.ppedemon.wta.model.ComparisonOptions;
+import ar.ppedemon.wta.model.Granularity;
 import ar.ppedemon.wta.util.Base64Encoder;
 import io.vertx.ext.web.api.validation.ValidationException;
 import joptsimple.internal.Strings;
@@ -47,4 +49,40 @@ class ValidationsTest {
         Assertions.assertThrows(ValidationException.class, () -> validations.validBase64Text(
                 Strings.repeat('a', MAX_SIZE+1), MAX_SIZE));
     }
+
+    @Test
+    @DisplayName("absent comparison options must define a full comparison")
+    void comparisonOptions_whenAbsent_mustBeFull() {
+        Assertions.assertTrue(validations.comparisonOptions(null, null, null, null).isFull());
+    }
+
+    @Test
+    @DisplayName("valid comparison options must be parsed")
+    void comparisonOptions_whenValid_mustBeParsed() {
+        ComparisonOptions options = validations.comparisonOptions("true", "10", "1024", "line");
+        Assertions.assertTrue(options.isEqualityOnly());
+        Assertions.assertEquals(10, options.getMaxDifferences());
+        Assertions.assertEquals(1024, options.getMaxBytes());
+        Assertions.assertEquals(Granularity.LINE, options.getGranularity());
+    }
+
+    @Test
+    @DisplayName("non boolean equality only option must be invalid")
+    void comparisonOptions_whenEqualityOnlyNotBoolean_mustThrowException() {
+        Assertions.assertThrows(ValidationException.class, () -> validations.comparisonOptions("yes", null, null, null));
+    }
+
+    @Test
+    @DisplayName("non positive bounds must be invalid")
+    void comparisonOptions_whenBoundsNotPositive_mustThrowException() {
+        Assertions.assertThrows(ValidationException.class, () -> validations.comparisonOptions(null, "0", null, null));
+        Assertions.assertThrows(ValidationException.class, () -> validations.comparisonOptions(null, null, "x", null));
+    }
+
+    @Test
+    @DisplayName("unknown granularity must be invalid")
+    void comparisonOptions_whenUnknownGranularity_mustThrowException() {
+        Assertions.assertThrows(ValidationException.class,
+                () -> validations.comparisonOptions(null, null, null, "paragraph"));
+    }
 }
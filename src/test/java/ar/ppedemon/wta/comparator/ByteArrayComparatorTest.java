@@ -1,17 +1,23 @@
 package ar.ppedemon.wta.comparator;
 
 import ar.ppedemon.wta.model.Comparison;
+import ar.ppedemon.wta.model.ComparisonOptions;
 import ar.ppedemon.wta.model.ComparisonResult;
+import ar.ppedemon.wta.model.Edit;
+import ar.ppedemon.wta.model.Similarity;
 import ar.ppedemon.wta.model.Span;
 import ar.ppedemon.wta.util.Base64Encoder;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
 @DisplayName("Byte array comparator")
 public class ByteArrayComparatorTest {
 
-    private StringComparator comparator = new StringComparator();
+    private ByteArrayComparator comparator = new ByteArrayComparator();
     private Base64Encoder base64Encoder = new Base64Encoder();
 
     @Test
@@ -87,4 +93,202 @@ public class ByteArrayComparatorTest {
         Assertions.assertEquals(r.getDifferences().get(0), new Span(1, 2));
         Assertions.assertEquals(r.getDifferences().get(1), new Span(4, 2));
     }
+
+    @Test
+    @DisplayName("must report same spans when scanning in parallel")
+    void comparison_whenParallel_mustReportSameSpansAsSequential() {
+        int size = 1 << 20;
+        byte[] lhsBytes = new byte[size];
+        new Random(17).nextBytes(lhsBytes);
+        byte[] rhsBytes = lhsBytes.clone();
+
+        // Differences around chunk boundaries, plus a long one crossing several chunks
+        for (int boundary = 1 << 16; boundary < size; boundary += 1 << 16) {
+            rhsBytes[boundary - 1]++;
+            rhsBytes[boundary]++;
+        }
+        for (int i = 3 << 16; i < 7 << 16; i++) {
+            rhsBytes[i]++;
+        }
+
+        Comparison c = new Comparison("1", "1")
+                .setLeft(base64Encoder.encode(lhsBytes))
+                .setRight(base64Encoder.encode(rhsBytes));
+
+        ComparisonResult sequential = comparator.compare(c);
+        ComparisonResult parallel = new ByteArrayComparator().parallel(new ForkJoinPool(4), 1).compare(c);
+
+        Assertions.assertEquals(sequential.getStatus(), parallel.getStatus());
+        Assertions.assertEquals(sequential.getDifferences(), parallel.getDifferences());
+    }
+
+    @Test
+    @DisplayName("must report insertions, deletions and replacements for sides with different length")
+    void comparison_whenSidesWithDifferentLength_mustReportEdits() {
+        String lhs = base64Encoder.encode(new byte[] {10, 20, 30, 40, 50, 60, 70});
+        String rhs = base64Encoder.encode(new byte[] {10, 15, 20, 30, 45, 60});
+
+        Comparison c = new Comparison("1", "1").setLeft(lhs).setRight(rhs);
+        ComparisonResult r = new ByteArrayComparator().maxEditDistance(10).compare(c);
+
+        Assertions.assertEquals(ComparisonResult.Status.DIFFERENT_LENGTH, r.getStatus());
+        Assertions.assertEquals(3, r.getEdits().size());
+        Assertions.assertEquals(new Edit(Edit.Type.INSERT, 1, 0, 1, 1), r.getEdits().get(0));
+        Assertions.assertEquals(new Edit(Edit.Type.REPLACE, 3, 2, 4, 1), r.getEdits().get(1));
+        Assertions.assertEquals(new Edit(Edit.Type.DELETE, 6, 1, 6, 0), r.getEdits().get(2));
+    }
+
+    @Test
+    @DisplayName("must not report edits for sides farther apart than the maximum edit distance")
+    void comparison_whenSidesTooFarApart_mustNotReportEdits() {
+        String lhs = base64Encoder.encode(new byte[] {10, 20, 30, 40, 50, 60, 70});
+        String rhs = base64Encoder.encode(new byte[] {11, 21, 31, 41, 51, 61});
+
+        Comparison c = new Comparison("1", "1").setLeft(lhs).setRight(rhs);
+        ComparisonResult r = new ByteArrayComparator().maxEditDistance(10).compare(c);
+
+        Assertions.assertEquals(ComparisonResult.Status.DIFFERENT_LENGTH, r.getStatus());
+        Assertions.assertNull(r.getEdits());
+    }
+
+    @Test
+    @DisplayName("must stop at first difference when checking for equality only")
+    void comparison_whenEqualityOnly_mustReportNoSpans() {
+        String lhs = base64Encoder.encode(new byte[] {10, 20, 10, 20});
+        String rhs = base64Encoder.encode(new byte[] {20, 20, 20, 20});
+
+        Comparison c = new Comparison("1", "1").setLeft(lhs).setRight(rhs);
+        ComparisonResult r = comparator.compare(c, new ComparisonOptions(true, Integer.MAX_VALUE, Integer.MAX_VALUE));
+
+        Assertions.assertEquals(ComparisonResult.Status.EQUAL_LENGTH, r.getStatus());
+        Assertions.assertTrue(r.getDifferences().isEmpty());
+        Assertions.assertTrue(r.isTruncated());
+    }
+
+    @Test
+    @DisplayName("must report at most the maximum number of differences")
+    void comparison_whenMaxDifferences_mustReportFirstSpans() {
+        String lhs = base64Encoder.encode(new byte[] {10, 20, 10, 20, 10});
+        String rhs = base64Encoder.encode(new byte[] {20, 20, 20, 20, 20});
+
+        Comparison c = new Comparison("1", "1").setLeft(lhs).setRight(rhs);
+        ComparisonResult r = comparator.compare(c, new ComparisonOptions(false, 2, Integer.MAX_VALUE));
+
+        Assertions.assertEquals(2, r.getDifferences().size());
+        Assertions.assertEquals(new Span(0, 1), r.getDifferences().get(0));
+        Assertions.assertEquals(new Span(2, 1), r.getDifferences().get(1));
+        Assertions.assertTrue(r.isTruncated());
+    }
+
+    @Test
+    @DisplayName("must only scan the maximum number of bytes")
+    void comparison_whenMaxBytes_mustScanPrefix() {
+        String lhs = base64Encoder.encode(new byte[] {10, 20, 30, 40, 50});
+        String rhs = base64Encoder.encode(new byte[] {10, 20, 31, 41, 51});
+
+        Comparison c = new Comparison("1", "1").setLeft(lhs).setRight(rhs);
+        ComparisonResult r = comparator.compare(c, new ComparisonOptions(false, Integer.MAX_VALUE, 4));
+
+        Assertions.assertEquals(1, r.getDifferences().size());
+        Assertions.assertEquals(new Span(2, 2), r.getDifferences().get(0));
+        Assertions.assertTrue(r.isTruncated());
+    }
+
+    @Test
+    @DisplayName("must count differing bits when asked to")
+    void comparison_whenBitCounts_mustReportDifferingBits() {
+        String lhs = base64Encoder.encode(new byte[] {10, 20, 20, 10, 20, 20, 10});
+        String rhs = base64Encoder.encode(new byte[] {10, 30, 30, 10, 40, 40, 10});
+
+        Comparison c = new Comparison("1", "1").setLeft(lhs).setRight(rhs);
+        ComparisonResult r = new ByteArrayComparator().bitCounts(true).compare(c);
+
+        Assertions.assertEquals(2, r.getDifferences().size());
+        Assertions.assertEquals(new Span(1, 2, 4L), r.getDifferences().get(0));
+        Assertions.assertEquals(new Span(4, 2, 8L), r.getDifferences().get(1));
+        Assertions.assertEquals(Long.valueOf(12), r.getHammingDistance());
+    }
+
+    @Test
+    @DisplayName("must report similarity of sides with equal length")
+    void comparison_whenSidesWithSameLength_mustReportSimilarity() {
+        String lhs = base64Encoder.encode(new byte[] {10, 20, 10, 20, 10});
+        String rhs = base64Encoder.encode(new byte[] {20, 20, 20, 20, 10});
+
+        Comparison c = new Comparison("1", "1").setLeft(lhs).setRight(rhs);
+        ComparisonResult r = comparator.compare(c);
+
+        Assertions.assertEquals(new Similarity(0.6, 2, 2), r.getSimilarity());
+    }
+
+    @Test
+    @DisplayName("must report similarity of sides with different length from their edits")
+    void comparison_whenSidesWithDifferentLength_mustReportSimilarity() {
+        String lhs = base64Encoder.encode(new byte[] {10, 20, 30, 40, 50, 60, 70});
+        String rhs = base64Encoder.encode(new byte[] {10, 15, 20, 30, 45, 60});
+
+        Comparison c = new Comparison("1", "1").setLeft(lhs).setRight(rhs);
+        ComparisonResult r = new ByteArrayComparator()
+                .maxEditDistance(10)
+                .compare(c, new ComparisonOptions(false, 1, Integer.MAX_VALUE));
+
+        Assertions.assertEquals(1, r.getEdits().size());
+        Assertions.assertEquals(new Similarity(8.0 / 13, 3, 2), r.getSimilarity());
+    }
+
+    @Test
+    @DisplayName("must not report similarity if differences were left out")
+    void comparison_whenMaxDifferences_mustNotReportSimilarity() {
+        String lhs = base64Encoder.encode(new byte[] {10, 20, 10, 20, 10});
+        String rhs = base64Encoder.encode(new byte[] {20, 20, 20, 20, 20});
+
+        Comparison c = new Comparison("1", "1").setLeft(lhs).setRight(rhs);
+        ComparisonResult r = comparator.compare(c, new ComparisonOptions(false, 2, Integer.MAX_VALUE));
+
+        Assertions.assertNull(r.getSimilarity());
+    }
+
+    @Test
+    @DisplayName("must not report equality nor Hamming distance when differences might lie beyond the scanned bytes")
+    void comparison_whenMaxBytesAndNoDifferencesInPrefix_mustReportEqualLength() {
+        String lhs = base64Encoder.encode(new byte[] {10, 20, 30, 40, 50});
+        String rhs = base64Encoder.encode(new byte[] {10, 20, 30, 41, 51});
+
+        Comparison c = new Comparison("1", "1").setLeft(lhs).setRight(rhs);
+        ComparisonResult r = new ByteArrayComparator()
+                .bitCounts(true)
+                .compare(c, new ComparisonOptions(false, Integer.MAX_VALUE, 3));
+
+        Assertions.assertEquals(ComparisonResult.Status.EQUAL_LENGTH, r.getStatus());
+        Assertions.assertTrue(r.getDifferences().isEmpty());
+        Assertions.assertTrue(r.isTruncated());
+        Assertions.assertNull(r.getHammingDistance());
+    }
+
+    @Test
+    @DisplayName("bounded comparison must agree with the restricted full comparison")
+    void comparison_whenBounded_mustMatchRestrictedFullResult() {
+        String lhs = base64Encoder.encode(new byte[] {10, 20, 10, 20, 10, 20, 10});
+        String rhs = base64Encoder.encode(new byte[] {10, 30, 10, 30, 10, 30, 10});
+
+        Comparison c = new Comparison("1", "1").setLeft(lhs).setRight(rhs);
+        Comparator bitCounting = new ByteArrayComparator().bitCounts(true);
+        ComparisonResult full = bitCounting.compare(c);
+
+        ComparisonOptions[] bounds = {
+            new ComparisonOptions(true, Integer.MAX_VALUE, Integer.MAX_VALUE),
+            new ComparisonOptions(false, 2, Integer.MAX_VALUE),
+            new ComparisonOptions(false, Integer.MAX_VALUE, 1),
+            new ComparisonOptions(false, Integer.MAX_VALUE, 4),
+        };
+        for (ComparisonOptions options : bounds) {
+            ComparisonResult live = bitCounting.compare(c, options);
+            ComparisonResult restricted = full.restrict(options);
+
+            Assertions.assertEquals(live.getStatus(), restricted.getStatus());
+            Assertions.assertEquals(live.getDifferences(), restricted.getDifferences());
+            Assertions.assertEquals(live.isTruncated(), restricted.isTruncated());
+            Assertions.assertEquals(live.getHammingDistance(), restricted.getHammingDistance());
+        }
+    }
 }
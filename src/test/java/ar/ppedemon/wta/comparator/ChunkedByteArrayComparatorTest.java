@@ -0,0 +1,86 @@
+package ar.ppedemon.wta.comparator;
+
+import ar.ppedemon.wta.model.Comparison;
+import ar.ppedemon.wta.model.ComparisonResult;
+import ar.ppedemon.wta.model.Edit;
+import ar.ppedemon.wta.util.Base64Encoder;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Random;
+
+@DisplayName("Chunked byte array comparator")
+class ChunkedByteArrayComparatorTest {
+
+    private static final int SIZE = 1 << 18;
+
+    private ChunkedByteArrayComparator comparator = new ChunkedByteArrayComparator(ScanMode.WORD, 1 << 10);
+    private Base64Encoder base64Encoder = new Base64Encoder();
+
+    @Test
+    @DisplayName("must use exact edits for sides close enough")
+    void comparison_whenSidesCloseEnough_mustReportExactEdits() {
+        String lhs = base64Encoder.encode(new byte[] {10, 20, 30, 40});
+        String rhs = base64Encoder.encode(new byte[] {10, 20, 25, 30, 40});
+
+        Comparison c = new Comparison("1", "1").setLeft(lhs).setRight(rhs);
+        ComparisonResult r = comparator.maxEditDistance(10).compare(c);
+
+        Assertions.assertEquals(1, r.getEdits().size());
+        Assertions.assertEquals(new Edit(Edit.Type.INSERT, 2, 0, 2, 1), r.getEdits().get(0));
+    }
+
+    @Test
+    @DisplayName("must report a local edit for data inserted near the start of large sides")
+    void comparison_whenInsertionNearStart_mustReportLocalEdit() {
+        byte[] lhsBytes = random(SIZE);
+        byte[] rhsBytes = new byte[SIZE + 100];
+        System.arraycopy(lhsBytes, 0, rhsBytes, 0, 500);
+        System.arraycopy(random(100), 0, rhsBytes, 500, 100);
+        System.arraycopy(lhsBytes, 500, rhsBytes, 600, SIZE - 500);
+
+        Comparison c = new Comparison("1", "1")
+                .setLeft(base64Encoder.encode(lhsBytes))
+                .setRight(base64Encoder.encode(rhsBytes));
+        List<Edit> edits = comparator.compare(c).getEdits();
+
+        Assertions.assertEquals(1, edits.size());
+        Edit edit = edits.get(0);
+        Assertions.assertTrue(edit.getLhsOffset() <= 500 && edit.getLhsOffset() + edit.getLhsLength() >= 500);
+        Assertions.assertEquals(100, edit.getRhsLength() - edit.getLhsLength());
+        Assertions.assertTrue(edit.getRhsLength() < 1 << 13);
+    }
+
+    @Test
+    @DisplayName("must report moves for data relocated in large sides")
+    void comparison_whenBlockMoved_mustReportMove() {
+        byte[] lhsBytes = random(SIZE);
+        byte[] rhsBytes = new byte[SIZE + 1];
+
+        // Move a block in the middle of lhs to the end of rhs
+        int from = SIZE / 2;
+        int length = SIZE / 8;
+        System.arraycopy(lhsBytes, 0, rhsBytes, 0, from);
+        System.arraycopy(lhsBytes, from + length, rhsBytes, from, SIZE - from - length);
+        System.arraycopy(lhsBytes, from, rhsBytes, SIZE - length, length);
+
+        Comparison c = new Comparison("1", "1")
+                .setLeft(base64Encoder.encode(lhsBytes))
+                .setRight(base64Encoder.encode(rhsBytes));
+        List<Edit> edits = comparator.compare(c).getEdits();
+
+        int moved = edits.stream()
+                .filter(edit -> edit.getType() == Edit.Type.MOVE)
+                .mapToInt(Edit::getLhsLength)
+                .sum();
+        Assertions.assertTrue(moved > length / 2);
+    }
+
+    private byte[] random(int size) {
+        byte[] bytes = new byte[size];
+        new Random(size).nextBytes(bytes);
+        return bytes;
+    }
+}
@@ -0,0 +1,100 @@
+package ar.ppedemon.wta.comparator;
+
+import ar.ppedemon.wta.model.BlockFingerprints;
+import ar.ppedemon.wta.model.Comparison;
+import ar.ppedemon.wta.model.ComparisonResult;
+import ar.ppedemon.wta.model.Span;
+import ar.ppedemon.wta.util.Base64Encoder;
+import com.google.common.collect.Lists;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@DisplayName("Incremental comparator")
+class IncrementalComparatorTest {
+
+    private static final int SIZE = 10 * BlockFingerprints.BLOCK_SIZE + 100;
+
+    private Base64Encoder base64Encoder = new Base64Encoder();
+
+    @Test
+    @DisplayName("must report same spans as a full comparison after updating a side")
+    void comparison_whenSideUpdated_mustReportSameSpansAsFullComparison() {
+        Random random = new Random(17);
+        byte[] lhs = new byte[SIZE];
+        random.nextBytes(lhs);
+        byte[] rhs = lhs.clone();
+        rhs[10] ^= 1;
+        rhs[BlockFingerprints.BLOCK_SIZE - 1] ^= 1;
+        rhs[BlockFingerprints.BLOCK_SIZE] ^= 1;
+        rhs[5 * BlockFingerprints.BLOCK_SIZE + 7] ^= 1;
+
+        ByteArrayComparator full = new ByteArrayComparator();
+        Comparison previous = comparison(lhs, rhs);
+        ComparisonResult previousResult = full.compare(previous);
+
+        byte[] updated = rhs.clone();
+        updated[BlockFingerprints.BLOCK_SIZE] ^= 1;
+        updated[3 * BlockFingerprints.BLOCK_SIZE] ^= 1;
+        updated[SIZE - 1] ^= 1;
+
+        Comparison current = comparison(lhs, updated)
+                .setPreviousResult(previousResult)
+                .setPreviousLeftBlocks(previous.getLeftBlocks())
+                .setPreviousRightBlocks(previous.getRightBlocks());
+
+        ComparisonResult result = new IncrementalComparator(full).compare(current);
+
+        Assertions.assertEquals(ComparisonResult.Status.EQUAL_LENGTH, result.getStatus());
+        Assertions.assertEquals(full.compare(current).getDifferences(), result.getDifferences());
+        Assertions.assertEquals(new Span(BlockFingerprints.BLOCK_SIZE - 1, 1), result.getDifferences().get(1));
+    }
+
+    @Test
+    @DisplayName("must only compare changed blocks")
+    void comparison_whenSideUpdated_mustOnlyCompareChangedBlocks() {
+        byte[] lhs = new byte[SIZE];
+        byte[] rhs = lhs.clone();
+        rhs[2 * BlockFingerprints.BLOCK_SIZE + 1] = 1;
+
+        Comparator delegate = spy(new ByteArrayComparator());
+        Comparison current = comparison(lhs, rhs)
+                .setPreviousResult(new ComparisonResult(ComparisonResult.Status.EQUAL, Lists.newArrayList()))
+                .setPreviousLeftBlocks(BlockFingerprints.of(lhs))
+                .setPreviousRightBlocks(BlockFingerprints.of(lhs));
+
+        ComparisonResult result = new IncrementalComparator(delegate).compare(current);
+
+        Assertions.assertEquals(1, result.getDifferences().size());
+        Assertions.assertEquals(new Span(2 * BlockFingerprints.BLOCK_SIZE + 1, 1), result.getDifferences().get(0));
+        verify(delegate, times(1)).compare(any(Comparison.class));
+    }
+
+    @Test
+    @DisplayName("must fall back to a full comparison if side lengths changed")
+    void comparison_whenLengthChanged_mustCompareFully() {
+        byte[] lhs = new byte[SIZE];
+        byte[] rhs = new byte[SIZE + 1];
+
+        Comparison current = comparison(lhs, rhs)
+                .setPreviousResult(new ComparisonResult(ComparisonResult.Status.EQUAL, Lists.newArrayList()))
+                .setPreviousLeftBlocks(BlockFingerprints.of(lhs))
+                .setPreviousRightBlocks(BlockFingerprints.of(lhs));
+
+        ComparisonResult result = new IncrementalComparator(new ByteArrayComparator()).compare(current);
+        Assertions.assertEquals(ComparisonResult.Status.DIFFERENT_LENGTH, result.getStatus());
+    }
+
+    private Comparison comparison(byte[] lhs, byte[] rhs) {
+        return new Comparison("1", "1")
+                .setLeft(base64Encoder.encode(lhs))
+                .setRight(base64Encoder.encode(rhs))
+                .setLeftBlocks(BlockFingerprints.of(lhs))
+                .setRightBlocks(BlockFingerprints.of(rhs));
+    }
+}
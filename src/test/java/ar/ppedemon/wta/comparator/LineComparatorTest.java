@@ -0,0 +1,97 @@
+package ar.ppedemon.wta.comparator;
+
+import ar.ppedemon.wta.model.Comparison;
+import ar.ppedemon.wta.model.ComparisonOptions;
+import ar.ppedemon.wta.model.ComparisonResult;
+import ar.ppedemon.wta.model.Edit;
+import ar.ppedemon.wta.model.Granularity;
+import ar.ppedemon.wta.model.Span;
+import ar.ppedemon.wta.util.Base64Encoder;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+@DisplayName("Line comparator")
+class LineComparatorTest {
+
+    private LineComparator lineComparator = new LineComparator(Granularity.LINE, 100);
+    private LineComparator tokenComparator = new LineComparator(Granularity.TOKEN, 100);
+    private Base64Encoder base64Encoder = new Base64Encoder();
+
+    @Test
+    @DisplayName("must correctly report equality")
+    void comparison_whenEqualSides_mustReturnEqual() {
+        ComparisonResult r = lineComparator.compare(comparison("a,b\nc,d\n", "a,b\nc,d\n"));
+        Assertions.assertEquals(ComparisonResult.Status.EQUAL, r.getStatus());
+    }
+
+    @Test
+    @DisplayName("must report whole changed lines for sides of equal length")
+    void comparison_whenChangedLine_mustReportLineSpan() {
+        ComparisonResult r = lineComparator.compare(comparison("a,b\nc,d\ne,f\n", "a,b\nc,x\ne,f\n"));
+
+        Assertions.assertEquals(ComparisonResult.Status.EQUAL_LENGTH, r.getStatus());
+        Assertions.assertEquals(1, r.getDifferences().size());
+        Assertions.assertEquals(new Span(4, 4), r.getDifferences().get(0));
+        Assertions.assertEquals(new Edit(Edit.Type.REPLACE, 4, 4, 4, 4), r.getEdits().get(0));
+    }
+
+    @Test
+    @DisplayName("must report inserted and deleted lines as byte regions")
+    void comparison_whenInsertedAndDeletedLines_mustReportEdits() {
+        ComparisonResult r = lineComparator.compare(comparison("one\ntwo\nthree\n", "zero\none\nthree\n"));
+
+        Assertions.assertEquals(ComparisonResult.Status.DIFFERENT_LENGTH, r.getStatus());
+        Assertions.assertEquals(2, r.getEdits().size());
+        Assertions.assertEquals(new Edit(Edit.Type.INSERT, 0, 0, 0, 5), r.getEdits().get(0));
+        Assertions.assertEquals(new Edit(Edit.Type.DELETE, 4, 4, 9, 0), r.getEdits().get(1));
+    }
+
+    @Test
+    @DisplayName("must report changed tokens")
+    void comparison_whenChangedToken_mustReportTokenEdit() {
+        ComparisonResult r = tokenComparator.compare(comparison("the quick fox", "the slow fox"));
+
+        Assertions.assertEquals(ComparisonResult.Status.DIFFERENT_LENGTH, r.getStatus());
+        Assertions.assertEquals(1, r.getEdits().size());
+        Assertions.assertEquals(new Edit(Edit.Type.REPLACE, 4, 5, 4, 4), r.getEdits().get(0));
+    }
+
+    @Test
+    @DisplayName("must report a single edit for sides too far apart")
+    void comparison_whenSidesTooFarApart_mustReportSingleEdit() {
+        LineComparator comparator = new LineComparator(Granularity.LINE, 1);
+        ComparisonResult r = comparator.compare(comparison("a\nb\nc\nd\n", "a\nx\nc\ny\n"));
+
+        Assertions.assertEquals(1, r.getEdits().size());
+        Assertions.assertEquals(new Edit(Edit.Type.REPLACE, 2, 6, 2, 6), r.getEdits().get(0));
+    }
+
+    @Test
+    @DisplayName("must only check equality for bounded comparisons")
+    void comparison_whenBounded_mustOnlyCheckEquality() {
+        ComparisonResult r = lineComparator.compare(
+                comparison("a\nb\n", "a\nc\n"),
+                new ComparisonOptions(true, Integer.MAX_VALUE, Integer.MAX_VALUE, Granularity.LINE));
+
+        Assertions.assertEquals(ComparisonResult.Status.EQUAL_LENGTH, r.getStatus());
+        Assertions.assertNull(r.getEdits());
+        Assertions.assertTrue(r.isTruncated());
+    }
+
+    @Test
+    @DisplayName("must count differing bits of the bytes in the given units")
+    void differingBits_always_mustCountBitsOfUnitBytes() {
+        LineComparator.Units lhs = lineComparator.decode(base64Encoder.encode("a\nb\nc\n"));
+        LineComparator.Units rhs = lineComparator.decode(base64Encoder.encode("a\nc\nbb\n"));
+
+        Assertions.assertEquals(0, lineComparator.differingBits(lhs, rhs, 0, 1));
+        Assertions.assertEquals(Integer.bitCount('b' ^ 'c'), lineComparator.differingBits(lhs, rhs, 1, 2));
+        Assertions.assertEquals(Integer.bitCount('c' ^ 'b') + Integer.bitCount('\n' ^ 'b') + 8,
+                lineComparator.differingBits(lhs, rhs, 2, 3));
+    }
+
+    private Comparison comparison(String lhs, String rhs) {
+        return new Comparison("1", "1").setLeft(base64Encoder.encode(lhs)).setRight(base64Encoder.encode(rhs));
+    }
+}
@@ -0,0 +1,116 @@
+package ar.ppedemon.wta.comparator;
+
+import ar.ppedemon.wta.data.ComparisonDao;
+import ar.ppedemon.wta.data.SideSpool;
+import ar.ppedemon.wta.model.Comparison;
+import ar.ppedemon.wta.model.ComparisonOptions;
+import ar.ppedemon.wta.model.ComparisonResult;
+import ar.ppedemon.wta.model.Granularity;
+import ar.ppedemon.wta.model.Span;
+import ar.ppedemon.wta.util.Base64Encoder;
+import com.google.common.hash.Hashing;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+@DisplayName("Memory mapped comparator")
+class MappedComparatorTest {
+
+    private static final int THRESHOLD = 16;
+
+    private Base64Encoder base64Encoder = new Base64Encoder();
+    private SideSpool spool;
+    private MappedComparator comparator;
+
+    @BeforeEach
+    void init() throws IOException {
+        Path directory = Files.createTempDirectory("spool");
+        directory.toFile().deleteOnExit();
+        spool = new SideSpool(directory, THRESHOLD, 0L);
+        comparator = new MappedComparator(ScanMode.WORD, spool);
+    }
+
+    @Test
+    @DisplayName("must report same spans for spooled sides as a byte array comparator")
+    void comparison_whenSpooledSides_mustReportSameSpansAsByteArrayComparator() {
+        byte[] lhs = new byte[1000];
+        new Random(7).nextBytes(lhs);
+        byte[] rhs = lhs.clone();
+        rhs[0] ^= 1;
+        rhs[500] ^= 1;
+        rhs[501] ^= 1;
+        rhs[999] ^= 1;
+
+        Comparison c = spooled(lhs, rhs);
+        Assertions.assertTrue(spool.find(c.getLeftDigest()).isPresent());
+        Assertions.assertTrue(spool.find(c.getRightDigest()).isPresent());
+
+        ComparisonResult r = comparator.compare(c);
+        Assertions.assertEquals(ComparisonResult.Status.EQUAL_LENGTH, r.getStatus());
+        Assertions.assertEquals(new ByteArrayComparator().compare(c).getDifferences(), r.getDifferences());
+        Assertions.assertEquals(new Span(500, 2), r.getDifferences().get(1));
+    }
+
+    @Test
+    @DisplayName("must decode sides that weren't spooled")
+    void comparison_whenSmallSides_mustDecodeThem() {
+        Comparison c = spooled(new byte[] {10, 20, 30}, new byte[] {10, 21, 30});
+        Assertions.assertFalse(spool.find(c.getLeftDigest()).isPresent());
+
+        ComparisonResult r = comparator.compare(c);
+        Assertions.assertEquals(1, r.getDifferences().size());
+        Assertions.assertEquals(new Span(1, 1), r.getDifferences().get(0));
+    }
+
+    @Test
+    @DisplayName("must correctly report equality and different length of spooled sides")
+    void comparison_whenSpooledSides_mustReportStatus() {
+        byte[] lhs = new byte[100];
+        Assertions.assertEquals(ComparisonResult.Status.EQUAL, comparator.compare(spooled(lhs, lhs)).getStatus());
+        Assertions.assertEquals(ComparisonResult.Status.DIFFERENT_LENGTH,
+                comparator.compare(spooled(lhs, new byte[101])).getStatus());
+    }
+
+    @Test
+    @DisplayName("must compare spooled sides left out of comparisons, reading them for line granularity")
+    void comparison_whenSpooledSidesLeftOut_mustReadSpool() {
+        byte[] lhs = "one line\nanother line\n".getBytes();
+        byte[] rhs = "one line\nchanged line\n".getBytes();
+        Comparison c = spooled(lhs, rhs).setLeft(null).setRight(null);
+        Assertions.assertTrue(c.valid());
+
+        Comparator stored = new StoredSideComparator(
+                new GranularityComparator(new IncrementalComparator(comparator), 1000),
+                null,
+                spool,
+                new StreamingComparator(ScanMode.WORD, 4));
+
+        ComparisonResult bytes = stored.compare(c, ComparisonOptions.full());
+        ComparisonResult expected = new ByteArrayComparator().compare(spooled(lhs, rhs));
+        Assertions.assertEquals(expected.getDifferences(), bytes.getDifferences());
+
+        ComparisonResult lines = stored.compare(
+                c, new ComparisonOptions(false, Integer.MAX_VALUE, Integer.MAX_VALUE, Granularity.LINE));
+        Assertions.assertEquals(ComparisonResult.Status.EQUAL_LENGTH, lines.getStatus());
+        Assertions.assertEquals(1, lines.getEdits().size());
+    }
+
+    private Comparison spooled(byte[] lhs, byte[] rhs) {
+        String lhsDigest = Hashing.sha256().hashBytes(lhs).toString();
+        String rhsDigest = Hashing.sha256().hashBytes(rhs).toString();
+        spool.spool("1", "1", ComparisonDao.Side.LEFT, lhs, lhsDigest);
+        spool.spool("1", "1", ComparisonDao.Side.RIGHT, rhs, rhsDigest);
+
+        return new Comparison("1", "1")
+                .setLeft(base64Encoder.encode(lhs))
+                .setRight(base64Encoder.encode(rhs))
+                .setLeftDigest(lhsDigest)
+                .setRightDigest(rhsDigest);
+    }
+}
@@ -0,0 +1,95 @@
+package ar.ppedemon.wta.comparator;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+import java.nio.ByteBuffer;
+
+@DisplayName("Scan modes")
+class ScanModeTest {
+
+    private static final int SIZE = 37;
+
+    @ParameterizedTest
+    @EnumSource(ScanMode.class)
+    @DisplayName("must report range end for equal arrays")
+    void mismatch_whenEqualArrays_mustReturnRangeEnd(ScanMode scanMode) {
+        byte[] lhs = bytes();
+        byte[] rhs = bytes();
+        Assertions.assertEquals(SIZE, scanMode.mismatch(lhs, rhs, 0, SIZE));
+        Assertions.assertEquals(20, scanMode.mismatch(lhs, rhs, 3, 20));
+    }
+
+    @ParameterizedTest
+    @EnumSource(ScanMode.class)
+    @DisplayName("must locate exact mismatch at any position within a word")
+    void mismatch_whenSingleDifference_mustReturnItsPosition(ScanMode scanMode) {
+        for (int i = 0; i < SIZE; i++) {
+            byte[] lhs = bytes();
+            byte[] rhs = bytes();
+            rhs[i]++;
+            Assertions.assertEquals(i, scanMode.mismatch(lhs, rhs, 0, SIZE));
+            Assertions.assertEquals(i >= 5 ? i : SIZE, scanMode.mismatch(lhs, rhs, 5, SIZE));
+        }
+    }
+
+    @ParameterizedTest
+    @EnumSource(ScanMode.class)
+    @DisplayName("must not look past the end of the range")
+    void mismatch_whenDifferenceOutOfRange_mustReturnRangeEnd(ScanMode scanMode) {
+        byte[] lhs = bytes();
+        byte[] rhs = bytes();
+        rhs[30]++;
+        Assertions.assertEquals(30, scanMode.mismatch(lhs, rhs, 0, 30));
+    }
+
+    @ParameterizedTest
+    @EnumSource(ScanMode.class)
+    @DisplayName("must locate end of differing region")
+    void match_whenDifferingRegion_mustReturnFirstEqualPosition(ScanMode scanMode) {
+        byte[] lhs = bytes();
+        byte[] rhs = bytes();
+        for (int i = 4; i < 13; i++) {
+            rhs[i]++;
+        }
+        Assertions.assertEquals(13, scanMode.match(lhs, rhs, 4, SIZE));
+        Assertions.assertEquals(10, scanMode.match(lhs, rhs, 4, 10));
+    }
+
+    @ParameterizedTest
+    @EnumSource(ScanMode.class)
+    @DisplayName("must count differing bits in arrays as in buffers")
+    void differingBits_always_mustMatchBufferCount(ScanMode scanMode) {
+        byte[] lhs = bytes();
+        byte[] rhs = bytes();
+        rhs[3] ^= 0x0f;
+        rhs[17] ^= (byte) 0x81;
+        rhs[36] ^= 0x01;
+        Assertions.assertEquals(7, scanMode.differingBits(lhs, rhs, 0, SIZE));
+        Assertions.assertEquals(3, scanMode.differingBits(lhs, rhs, 4, SIZE));
+        Assertions.assertEquals(
+                scanMode.differingBits(ByteBuffer.wrap(lhs), ByteBuffer.wrap(rhs), 2, 30),
+                scanMode.differingBits(lhs, rhs, 2, 30));
+    }
+
+    @Test
+    @DisplayName("must read array words big endian at any offset")
+    void longAt_always_mustReadBigEndianWords() {
+        byte[] bytes = bytes();
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        for (int i = 0; i + Long.BYTES <= SIZE; i++) {
+            Assertions.assertEquals(buffer.getLong(i), Words.longAt(bytes, i));
+        }
+    }
+
+    private byte[] bytes() {
+        byte[] bytes = new byte[SIZE];
+        for (int i = 0; i < SIZE; i++) {
+            bytes[i] = (byte)(i * 7);
+        }
+        return bytes;
+    }
+}
@@ -0,0 +1,145 @@
+package ar.ppedemon.wta.comparator;
+
+import ar.ppedemon.wta.data.ComparisonDao;
+import ar.ppedemon.wta.data.SideChunkStore;
+import ar.ppedemon.wta.model.BlockFingerprints;
+import ar.ppedemon.wta.model.Comparison;
+import ar.ppedemon.wta.model.ComparisonOptions;
+import ar.ppedemon.wta.model.ComparisonResult;
+import ar.ppedemon.wta.model.Granularity;
+import ar.ppedemon.wta.model.SideChunks;
+import ar.ppedemon.wta.model.SideCodec;
+import ar.ppedemon.wta.model.Span;
+import ar.ppedemon.wta.util.Base64Encoder;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.util.zip.Deflater;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@DisplayName("Stored side comparator")
+class StoredSideComparatorTest {
+
+    private static final byte[] LHS = new byte[] {10, 20, 30, 40, 50, 60, 70, 80, 90, 100};
+    private static final byte[] RHS = new byte[] {10, 20, 30, 41, 51, 60, 70, 80, 90, 101};
+
+    private Base64Encoder base64Encoder = new Base64Encoder();
+    private SideChunkStore chunkStore;
+    private Comparator delegate;
+    private StoredSideComparator comparator;
+
+    @BeforeEach
+    void init() {
+        chunkStore = mock(SideChunkStore.class);
+        delegate = spy(new GranularityComparator(new ByteArrayComparator().maxEditDistance(1000), 1000));
+        comparator = new StoredSideComparator(delegate, chunkStore, new StreamingComparator(ScanMode.WORD, 4));
+
+        when(chunkStore.open(anyString(), anyString(), eq(ComparisonDao.Side.LEFT), anyString(), any(SideChunks.class)))
+                .thenAnswer(invocation -> new ByteArrayInputStream(LHS));
+        when(chunkStore.open(anyString(), anyString(), eq(ComparisonDao.Side.RIGHT), anyString(), any(SideChunks.class)))
+                .thenAnswer(invocation -> new ByteArrayInputStream(RHS));
+    }
+
+    @Test
+    @DisplayName("must delegate comparisons without chunked sides")
+    void comparison_whenNoChunkedSides_mustDelegate() {
+        Comparison c = new Comparison("1", "1").setLeft(base64Encoder.encode(LHS)).setRight(base64Encoder.encode(RHS));
+        comparator.compare(c, ComparisonOptions.full());
+
+        verify(delegate, times(1)).compare(eq(c), any(ComparisonOptions.class));
+        verifyZeroInteractions(chunkStore);
+    }
+
+    @Test
+    @DisplayName("must stream chunked sides for byte granularity")
+    void comparison_whenChunkedSides_mustStreamChunks() {
+        Comparison c = new Comparison("1", "1")
+                .setLeftChunks(new SideChunks(LHS.length, 4))
+                .setRightChunks(new SideChunks(RHS.length, 4))
+                .setLeftDigest("lhs")
+                .setRightDigest("rhs");
+        ComparisonResult r = comparator.compare(c, ComparisonOptions.full());
+
+        Assertions.assertEquals(ComparisonResult.Status.EQUAL_LENGTH, r.getStatus());
+        Assertions.assertEquals(2, r.getDifferences().size());
+        Assertions.assertEquals(new Span(3, 2), r.getDifferences().get(0));
+        Assertions.assertEquals(new Span(9, 1), r.getDifferences().get(1));
+        verify(delegate, never()).compare(any(Comparison.class), any(ComparisonOptions.class));
+    }
+
+    @Test
+    @DisplayName("must compare chunked and inline sides")
+    void comparison_whenOneChunkedSide_mustCompareWithInlineSide() {
+        Comparison c = new Comparison("1", "1")
+                .setLeft(base64Encoder.encode(RHS))
+                .setRightChunks(new SideChunks(RHS.length, 4))
+                .setRightDigest("rhs");
+        ComparisonResult r = comparator.compare(c, ComparisonOptions.full());
+
+        Assertions.assertEquals(ComparisonResult.Status.EQUAL, r.getStatus());
+        verify(chunkStore, never())
+                .open(anyString(), anyString(), eq(ComparisonDao.Side.LEFT), anyString(), any(SideChunks.class));
+    }
+
+    @Test
+    @DisplayName("must read chunked sides for line granularity")
+    void comparison_whenChunkedSidesAndLineGranularity_mustDelegateWithInlineSides() {
+        Comparison c = new Comparison("1", "1")
+                .setLeftChunks(new SideChunks(LHS.length, 4))
+                .setRightChunks(new SideChunks(RHS.length, 4))
+                .setLeftDigest("lhs")
+                .setRightDigest("rhs");
+        ComparisonOptions options = new ComparisonOptions(false, Integer.MAX_VALUE, Integer.MAX_VALUE, Granularity.LINE);
+        ComparisonResult r = comparator.compare(c, options);
+
+        Assertions.assertEquals(ComparisonResult.Status.EQUAL_LENGTH, r.getStatus());
+        verify(delegate, times(1)).compare(argThat(inline ->
+                base64Encoder.encode(LHS).equals(inline.getLeft())
+                        && base64Encoder.encode(RHS).equals(inline.getRight())), eq(options));
+    }
+
+    @Test
+    @DisplayName("must stream encoded sides of equal length")
+    void comparison_whenEncodedSidesOfEqualLength_mustStreamDecodedSides() {
+        Comparison c = new Comparison("1", "1")
+                .setLeft(base64Encoder.encode(SideCodec.DEFLATE.encode(LHS, Deflater.BEST_SPEED)))
+                .setRight(base64Encoder.encode(SideCodec.DEFLATE.encode(RHS, Deflater.BEST_SPEED)))
+                .setLeftCodec(SideCodec.DEFLATE)
+                .setRightCodec(SideCodec.DEFLATE)
+                .setLeftBlocks(BlockFingerprints.of(LHS))
+                .setRightBlocks(BlockFingerprints.of(RHS));
+        ComparisonResult r = comparator.compare(c, ComparisonOptions.full());
+
+        Assertions.assertEquals(ComparisonResult.Status.EQUAL_LENGTH, r.getStatus());
+        Assertions.assertEquals(2, r.getDifferences().size());
+        Assertions.assertEquals(new Span(3, 2), r.getDifferences().get(0));
+        Assertions.assertEquals(new Span(9, 1), r.getDifferences().get(1));
+        verify(delegate, never()).compare(any(Comparison.class), any(ComparisonOptions.class));
+    }
+
+    @Test
+    @DisplayName("must decode encoded sides of different length before delegating")
+    void comparison_whenEncodedSidesOfDifferentLength_mustDelegateWithDecodedSides() {
+        byte[] shorter = new byte[] {10, 20, 30, 40};
+        Comparison c = new Comparison("1", "1")
+                .setLeft(base64Encoder.encode(SideCodec.DEFLATE.encode(LHS, Deflater.BEST_SPEED)))
+                .setRight(base64Encoder.encode(shorter))
+                .setLeftCodec(SideCodec.DEFLATE)
+                .setLeftBlocks(BlockFingerprints.of(LHS))
+                .setRightBlocks(BlockFingerprints.of(shorter));
+        ComparisonResult r = comparator.compare(c, ComparisonOptions.full());
+
+        Assertions.assertEquals(ComparisonResult.Status.DIFFERENT_LENGTH, r.getStatus());
+        Assertions.assertNotNull(r.getEdits());
+        verify(delegate, times(1)).compare(argThat(plain ->
+                base64Encoder.encode(LHS).equals(plain.getLeft())
+                        && base64Encoder.encode(shorter).equals(plain.getRight())), any(ComparisonOptions.class));
+    }
+}
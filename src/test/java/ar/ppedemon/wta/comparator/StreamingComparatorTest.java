@@ -0,0 +1,109 @@
+package ar.ppedemon.wta.comparator;
+
+import ar.ppedemon.wta.model.Comparison;
+import ar.ppedemon.wta.model.ComparisonOptions;
+import ar.ppedemon.wta.model.ComparisonResult;
+import ar.ppedemon.wta.model.Span;
+import ar.ppedemon.wta.util.Base64Encoder;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+@DisplayName("Streaming comparator")
+class StreamingComparatorTest {
+
+    private StreamingComparator comparator = new StreamingComparator(ScanMode.WORD, 4);
+    private Base64Encoder base64Encoder = new Base64Encoder();
+
+    @Test
+    @DisplayName("must correctly report equality")
+    void comparison_whenEqualSides_mustReturnEqual() {
+        String enc = base64Encoder.encode(new byte[] {10, 20, 30, 40, 50, 60, 70, 80, 90});
+        Comparison c = new Comparison("1", "1").setLeft(enc).setRight(enc);
+        ComparisonResult r = comparator.compare(c);
+        Assertions.assertEquals(r.getStatus(), ComparisonResult.Status.EQUAL);
+    }
+
+    @Test
+    @DisplayName("must correctly report inequality")
+    void comparison_whenSidesWithDifferentLength_mustReturnDifferentSizes() {
+        String lhs = base64Encoder.encode(new byte[] {10, 20, 30, 40});
+        String rhs = base64Encoder.encode(new byte[] {10, 20, 30});
+        Comparison c = new Comparison("1", "1").setLeft(lhs).setRight(rhs);
+        ComparisonResult r = comparator.compare(c);
+        Assertions.assertEquals(r.getStatus(), ComparisonResult.Status.DIFFERENT_LENGTH);
+    }
+
+    @Test
+    @DisplayName("must report full length span for totally different sides of equal length")
+    void comparison_whenDifferentSidesWithSameLength_mustReturnSingleSpan() {
+        String lhs = base64Encoder.encode(new byte[] {10, 20, 30, 40, 50, 60, 70, 80, 90});
+        String rhs = base64Encoder.encode(new byte[] {11, 21, 31, 41, 51, 61, 71, 81, 91});
+
+        Comparison c = new Comparison("1", "1").setLeft(lhs).setRight(rhs);
+        ComparisonResult r = comparator.compare(c);
+
+        Assertions.assertEquals(1, r.getDifferences().size());
+        Assertions.assertEquals(r.getDifferences().get(0), new Span(0, 9));
+    }
+
+    @Test
+    @DisplayName("must report spans crossing buffer boundaries")
+    void comparison_whenSpansCrossBuffers_mustReportWholeSpans() {
+        String lhs = base64Encoder.encode(new byte[] {10, 20, 30, 40, 50, 60, 70, 80, 90, 100});
+        String rhs = base64Encoder.encode(new byte[] {10, 20, 30, 41, 51, 60, 70, 81, 91, 101});
+
+        Comparison c = new Comparison("1", "1").setLeft(lhs).setRight(rhs);
+        ComparisonResult r = comparator.compare(c);
+
+        Assertions.assertEquals(2, r.getDifferences().size());
+        Assertions.assertEquals(r.getDifferences().get(0), new Span(3, 2));
+        Assertions.assertEquals(r.getDifferences().get(1), new Span(7, 3));
+    }
+
+    @Test
+    @DisplayName("must handle inner spans")
+    void comparison_whenSideInnerDefferences_mustReportSpans() {
+        String lhs = base64Encoder.encode(new byte[] {10, 20, 20, 10, 20, 20, 10});
+        String rhs = base64Encoder.encode(new byte[] {10, 30, 30, 10, 40, 40, 10});
+
+        Comparison c = new Comparison("1", "1").setLeft(lhs).setRight(rhs);
+        ComparisonResult r = comparator.compare(c);
+
+        Assertions.assertEquals(2, r.getDifferences().size());
+        Assertions.assertEquals(r.getDifferences().get(0), new Span(1, 2));
+        Assertions.assertEquals(r.getDifferences().get(1), new Span(4, 2));
+    }
+
+    @Test
+    @DisplayName("must stop decoding when reaching the maximum number of differences or bytes")
+    void comparison_whenBounded_mustReportFirstSpans() {
+        String lhs = base64Encoder.encode(new byte[] {10, 20, 20, 10, 20, 20, 10});
+        String rhs = base64Encoder.encode(new byte[] {10, 30, 30, 10, 40, 40, 10});
+        Comparison c = new Comparison("1", "1").setLeft(lhs).setRight(rhs);
+
+        ComparisonResult r = comparator.compare(c, new ComparisonOptions(false, 1, Integer.MAX_VALUE));
+        Assertions.assertEquals(1, r.getDifferences().size());
+        Assertions.assertEquals(new Span(1, 2), r.getDifferences().get(0));
+        Assertions.assertTrue(r.isTruncated());
+
+        r = comparator.compare(c, new ComparisonOptions(false, Integer.MAX_VALUE, 5));
+        Assertions.assertEquals(2, r.getDifferences().size());
+        Assertions.assertEquals(new Span(4, 1), r.getDifferences().get(1));
+        Assertions.assertTrue(r.isTruncated());
+    }
+
+    @Test
+    @DisplayName("must count differing bits of spans crossing buffers")
+    void comparison_whenBitCounts_mustReportDifferingBits() {
+        String lhs = base64Encoder.encode(new byte[] {10, 20, 20, 20, 20, 10});
+        String rhs = base64Encoder.encode(new byte[] {10, 21, 23, 19, 27, 10});
+
+        Comparison c = new Comparison("1", "1").setLeft(lhs).setRight(rhs);
+        ComparisonResult r = new StreamingComparator(ScanMode.WORD, 4).bitCounts(true).compare(c);
+
+        Assertions.assertEquals(1, r.getDifferences().size());
+        Assertions.assertEquals(new Span(1, 4, 10L), r.getDifferences().get(0));
+        Assertions.assertEquals(Long.valueOf(10), r.getHammingDistance());
+    }
+}
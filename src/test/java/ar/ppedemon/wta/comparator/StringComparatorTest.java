@@ -87,4 +87,18 @@ class StringComparatorTest {
         Assertions.assertEquals(r.getDifferences().get(0), new Span(1, 2));
         Assertions.assertEquals(r.getDifferences().get(1), new Span(4, 2));
     }
+
+    @Test
+    @DisplayName("must report spans in code points for characters outside the BMP")
+    void comparison_whenSurrogatePairs_mustReportCodePointSpans() {
+        String lhs = base64Encoder.encode("a\uD83D\uDE00b\uD83D\uDE00c");
+        String rhs = base64Encoder.encode("a\uD83D\uDE01b\uD83D\uDE00d");
+
+        Comparison c = new Comparison("1", "1").setLeft(lhs).setRight(rhs);
+        ComparisonResult r = comparator.compare(c);
+
+        Assertions.assertEquals(2, r.getDifferences().size());
+        Assertions.assertEquals(r.getDifferences().get(0), new Span(1, 1));
+        Assertions.assertEquals(r.getDifferences().get(1), new Span(4, 1));
+    }
 }
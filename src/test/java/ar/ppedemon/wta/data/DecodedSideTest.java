@@ -0,0 +1,30 @@
+package ar.ppedemon.wta.data;
+
+import ar.ppedemon.wta.model.BlockFingerprints;
+import com.google.common.hash.Hashing;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.Base64;
+import java.util.Random;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+
+@DisplayName("Decoded side")
+class DecodedSideTest {
+
+    @Test
+    @DisplayName("must compute digest and block fingerprints of the whole side in one pass")
+    void decode_always_mustComputeDigestAndBlocks() {
+        byte[] data = new byte[BlockFingerprints.BLOCK_SIZE * 3 + 17];
+        new Random(42).nextBytes(data);
+
+        DecodedSide side = DecodedSide.decode(Base64.getEncoder().encodeToString(data));
+
+        assertThat(side.data(), equalTo(data));
+        assertThat(side.digest(), equalTo(Hashing.sha256().hashBytes(data).toString()));
+        assertThat(side.blocks().getLength(), equalTo(data.length));
+        assertThat(side.blocks().getHashes(), equalTo(BlockFingerprints.of(data).getHashes()));
+    }
+}
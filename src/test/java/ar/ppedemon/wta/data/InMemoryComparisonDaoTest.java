@@ -0,0 +1,119 @@
+package ar.ppedemon.wta.data;
+
+import ar.ppedemon.wta.model.Comparison;
+import ar.ppedemon.wta.model.ComparisonResult;
+import ar.ppedemon.wta.util.Base64Encoder;
+import com.google.common.collect.Lists;
+import io.vertx.junit5.VertxExtension;
+import io.vertx.reactivex.core.Vertx;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+import java.util.UUID;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.nullValue;
+
+@ExtendWith(VertxExtension.class)
+@DisplayName("In memory comparison dao")
+class InMemoryComparisonDaoTest {
+
+    private static final String CMP_ID = "123";
+    private static final String USER_ID = UUID.randomUUID().toString();
+    private static final ComparisonResult EQUAL = new ComparisonResult(ComparisonResult.Status.EQUAL, Lists.newArrayList());
+
+    private Base64Encoder base64Encoder = new Base64Encoder();
+    private InMemoryComparisonDao comparisonDao;
+
+    @BeforeEach
+    void init(Vertx vertx) {
+        comparisonDao = new InMemoryComparisonDao(vertx, 1 << 20);
+    }
+
+    @Test
+    @DisplayName("upsert must answer whether comparison was created, and increment version")
+    void upsert_always_mustCreateOrUpdateComparison() {
+        assertThat(comparisonDao.upsertSide(USER_ID, CMP_ID, ComparisonDao.Side.LEFT, encode("Hi")).blockingGet(), equalTo(true));
+        assertThat(comparisonDao.upsertSide(USER_ID, CMP_ID, ComparisonDao.Side.RIGHT, encode("Ho")).blockingGet(), equalTo(false));
+
+        Comparison comparison = comparisonDao.get(USER_ID, CMP_ID).blockingGet();
+        assertThat(comparison.getVersion(), equalTo(2L));
+        assertThat(comparison.getLeft(), equalTo(encode("Hi")));
+        assertThat(comparison.getRight(), equalTo(encode("Ho")));
+        assertThat(comparison.getLeftDigest(), notNullValue());
+        assertThat(comparison.getRightBlocks(), notNullValue());
+    }
+
+    @Test
+    @DisplayName("must answer empty for non-existing comparisons")
+    void get_whenNonExistingComparison_mustReturnEmpty() {
+        comparisonDao.get(USER_ID, CMP_ID).test().assertNoValues().assertComplete();
+        comparisonDao.status(USER_ID, CMP_ID).test().assertNoValues().assertComplete();
+    }
+
+    @Test
+    @DisplayName("must store results only if sides didn't change since they were read")
+    void updateResult_whenStaleVersion_mustNotUpdate() {
+        comparisonDao.upsertSide(USER_ID, CMP_ID, ComparisonDao.Side.LEFT, encode("Hi")).blockingGet();
+        comparisonDao.upsertSide(USER_ID, CMP_ID, ComparisonDao.Side.RIGHT, encode("Hi")).blockingGet();
+        Comparison read = comparisonDao.get(USER_ID, CMP_ID).blockingGet();
+
+        comparisonDao.upsertSide(USER_ID, CMP_ID, ComparisonDao.Side.RIGHT, encode("Ho")).blockingGet();
+        assertThat(comparisonDao.updateResult(read, EQUAL).blockingGet(), equalTo(false));
+        assertThat(comparisonDao.status(USER_ID, CMP_ID).blockingGet().getResult(), nullValue());
+
+        Comparison current = comparisonDao.get(USER_ID, CMP_ID).blockingGet();
+        assertThat(comparisonDao.updateResult(current, EQUAL).blockingGet(), equalTo(true));
+        assertThat(comparisonDao.status(USER_ID, CMP_ID).blockingGet().getResult(), equalTo(EQUAL));
+    }
+
+    @Test
+    @DisplayName("upsert must keep invalidated result as previous result")
+    void upsert_whenResult_mustKeepPreviousResult() {
+        comparisonDao.upsertSide(USER_ID, CMP_ID, ComparisonDao.Side.LEFT, encode("Hi")).blockingGet();
+        comparisonDao.upsertSide(USER_ID, CMP_ID, ComparisonDao.Side.RIGHT, encode("Hi")).blockingGet();
+        Comparison read = comparisonDao.get(USER_ID, CMP_ID).blockingGet();
+        comparisonDao.updateResult(read, EQUAL).blockingGet();
+
+        comparisonDao.upsertSide(USER_ID, CMP_ID, ComparisonDao.Side.RIGHT, encode("Ho")).blockingGet();
+
+        Comparison comparison = comparisonDao.get(USER_ID, CMP_ID).blockingGet();
+        assertThat(comparison.getResult(), nullValue());
+        assertThat(comparison.getPreviousResult(), equalTo(EQUAL));
+        assertThat(comparison.getPreviousRightBlocks(), equalTo(read.getRightBlocks()));
+    }
+
+    @Test
+    @DisplayName("deletion must answer whether comparison existed")
+    void delete_always_mustRemoveComparison() {
+        comparisonDao.upsertSide(USER_ID, CMP_ID, ComparisonDao.Side.LEFT, encode("Hi")).blockingGet();
+
+        assertThat(comparisonDao.delete(USER_ID, CMP_ID).blockingGet(), equalTo(true));
+        assertThat(comparisonDao.delete(USER_ID, CMP_ID).blockingGet(), equalTo(false));
+        comparisonDao.get(USER_ID, CMP_ID).test().assertNoValues();
+    }
+
+    @Test
+    @DisplayName("must evict least recently used comparisons when exceeding its bound")
+    void upsert_whenBoundExceeded_mustEvictLeastRecentlyUsed(Vertx vertx) {
+        String side = encode(new String(new char[3000]));
+        comparisonDao = new InMemoryComparisonDao(vertx, 3 * side.length());
+
+        comparisonDao.upsertSide(USER_ID, "1", ComparisonDao.Side.LEFT, side).blockingGet();
+        comparisonDao.upsertSide(USER_ID, "2", ComparisonDao.Side.LEFT, side).blockingGet();
+        comparisonDao.get(USER_ID, "1").blockingGet();
+        comparisonDao.upsertSide(USER_ID, "3", ComparisonDao.Side.LEFT, side).blockingGet();
+
+        assertThat(comparisonDao.get(USER_ID, "1").blockingGet(), notNullValue());
+        assertThat(comparisonDao.get(USER_ID, "2").blockingGet(), nullValue());
+        assertThat(comparisonDao.get(USER_ID, "3").blockingGet(), notNullValue());
+    }
+
+    private String encode(String data) {
+        return base64Encoder.encode(data);
+    }
+}
@@ -0,0 +1,196 @@
+package ar.ppedemon.wta.data;
+
+import ar.ppedemon.wta.model.Comparison;
+import ar.ppedemon.wta.model.ComparisonResult;
+import ar.ppedemon.wta.util.Base64Encoder;
+import com.google.common.collect.Lists;
+import io.vertx.junit5.VertxExtension;
+import io.vertx.reactivex.core.Vertx;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.lessThan;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.nullValue;
+
+@ExtendWith(VertxExtension.class)
+@DisplayName("Log structured comparison dao")
+class LogComparisonDaoTest {
+
+    private static final String CMP_ID = "123";
+    private static final String USER_ID = UUID.randomUUID().toString();
+    private static final ComparisonResult EQUAL = new ComparisonResult(ComparisonResult.Status.EQUAL, Lists.newArrayList());
+    private static final long SEGMENT_SIZE = 1 << 10;
+
+    private Base64Encoder base64Encoder = new Base64Encoder();
+    private Path directory;
+    private LogComparisonDao comparisonDao;
+
+    @BeforeEach
+    void init(Vertx vertx) throws IOException {
+        directory = Files.createTempDirectory("log");
+        directory.toFile().deleteOnExit();
+        comparisonDao = open(vertx);
+    }
+
+    @Test
+    @DisplayName("upsert must answer whether comparison was created, and increment version")
+    void upsert_always_mustCreateOrUpdateComparison() {
+        assertThat(comparisonDao.upsertSide(USER_ID, CMP_ID, ComparisonDao.Side.LEFT, encode("Hi")).blockingGet(), equalTo(true));
+        assertThat(comparisonDao.upsertSide(USER_ID, CMP_ID, ComparisonDao.Side.RIGHT, encode("Ho")).blockingGet(), equalTo(false));
+
+        Comparison comparison = comparisonDao.get(USER_ID, CMP_ID).blockingGet();
+        assertThat(comparison.getVersion(), equalTo(2L));
+        assertThat(comparison.getLeft(), equalTo(encode("Hi")));
+        assertThat(comparison.getRight(), equalTo(encode("Ho")));
+        assertThat(comparisonDao.status(USER_ID, CMP_ID).blockingGet().isLhsReady(), equalTo(true));
+    }
+
+    @Test
+    @DisplayName("must store results only if sides didn't change since they were read")
+    void updateResult_whenStaleVersion_mustNotUpdate() {
+        comparisonDao.upsertSide(USER_ID, CMP_ID, ComparisonDao.Side.LEFT, encode("Hi")).blockingGet();
+        comparisonDao.upsertSide(USER_ID, CMP_ID, ComparisonDao.Side.RIGHT, encode("Hi")).blockingGet();
+        Comparison read = comparisonDao.get(USER_ID, CMP_ID).blockingGet();
+
+        comparisonDao.upsertSide(USER_ID, CMP_ID, ComparisonDao.Side.RIGHT, encode("Ho")).blockingGet();
+        assertThat(comparisonDao.updateResult(read, EQUAL).blockingGet(), equalTo(false));
+
+        Comparison current = comparisonDao.get(USER_ID, CMP_ID).blockingGet();
+        assertThat(comparisonDao.updateResult(current, EQUAL).blockingGet(), equalTo(true));
+        assertThat(comparisonDao.status(USER_ID, CMP_ID).blockingGet().getResult(), equalTo(EQUAL));
+    }
+
+    @Test
+    @DisplayName("must recover comparisons, results and deletions when reopened")
+    void initialize_whenReopened_mustRecoverComparisons(Vertx vertx) {
+        comparisonDao.upsertSide(USER_ID, CMP_ID, ComparisonDao.Side.LEFT, encode("Hi")).blockingGet();
+        comparisonDao.upsertSide(USER_ID, CMP_ID, ComparisonDao.Side.RIGHT, encode("Hi")).blockingGet();
+        comparisonDao.updateResult(comparisonDao.get(USER_ID, CMP_ID).blockingGet(), EQUAL).blockingGet();
+        comparisonDao.upsertSide(USER_ID, "gone", ComparisonDao.Side.LEFT, encode("Bye")).blockingGet();
+        comparisonDao.delete(USER_ID, "gone").blockingGet();
+
+        LogComparisonDao reopened = open(vertx);
+        Comparison comparison = reopened.get(USER_ID, CMP_ID).blockingGet();
+        assertThat(comparison.getVersion(), equalTo(2L));
+        assertThat(comparison.getRight(), equalTo(encode("Hi")));
+        assertThat(comparison.getResult(), equalTo(EQUAL));
+        assertThat(reopened.get(USER_ID, "gone").blockingGet(), nullValue());
+    }
+
+    @Test
+    @DisplayName("must drop torn records at the end of the log when reopened")
+    void initialize_whenTornRecord_mustDropIt(Vertx vertx) throws IOException {
+        comparisonDao.upsertSide(USER_ID, CMP_ID, ComparisonDao.Side.LEFT, encode("Hi")).blockingGet();
+        Files.write(segments().get(segments().size() - 1), new byte[] {0, 0, 0, 100, 1, 2, 3}, StandardOpenOption.APPEND);
+
+        LogComparisonDao reopened = open(vertx);
+        assertThat(reopened.get(USER_ID, CMP_ID).blockingGet().getLeft(), equalTo(encode("Hi")));
+        assertThat(reopened.upsertSide(USER_ID, CMP_ID, ComparisonDao.Side.RIGHT, encode("Ho")).blockingGet(), equalTo(false));
+        assertThat(open(vertx).get(USER_ID, CMP_ID).blockingGet().getRight(), equalTo(encode("Ho")));
+    }
+
+    @Test
+    @DisplayName("must discard changes that can't be synced, and stop accepting changes")
+    void upsert_whenSyncFails_mustDiscardChangeAndStop(Vertx vertx) {
+        AtomicBoolean failing = new AtomicBoolean();
+        comparisonDao = new LogComparisonDao(vertx, directory, SEGMENT_SIZE, 1L << 30, 0.5) {
+            @Override
+            void sync(LogSegment segment) throws IOException {
+                if (failing.get()) {
+                    throw new IOException("Disk failure");
+                }
+                super.sync(segment);
+            }
+        };
+        comparisonDao.initialize().blockingAwait();
+        comparisonDao.upsertSide(USER_ID, CMP_ID, ComparisonDao.Side.LEFT, encode("Hi")).blockingGet();
+
+        failing.set(true);
+        Assertions.assertThrows(RuntimeException.class, () ->
+                comparisonDao.upsertSide(USER_ID, CMP_ID, ComparisonDao.Side.RIGHT, encode("Ho")).blockingGet());
+        assertThat(comparisonDao.status(USER_ID, CMP_ID).blockingGet().getVersion(), equalTo(1L));
+        assertThat(comparisonDao.ready().blockingGet(), equalTo(false));
+
+        failing.set(false);
+        Assertions.assertThrows(RuntimeException.class, () ->
+                comparisonDao.upsertSide(USER_ID, "other", ComparisonDao.Side.LEFT, encode("Ho")).blockingGet());
+        assertThat(comparisonDao.get(USER_ID, "other").blockingGet(), nullValue());
+
+        LogComparisonDao reopened = open(vertx);
+        assertThat(reopened.get(USER_ID, CMP_ID).blockingGet().getVersion(), equalTo(1L));
+        assertThat(reopened.get(USER_ID, CMP_ID).blockingGet().getRight(), nullValue());
+        assertThat(reopened.ready().blockingGet(), equalTo(true));
+    }
+
+    @Test
+    @DisplayName("compaction must keep live comparisons only, and survive reopening")
+    void compact_whenMostlyGarbage_mustKeepLiveComparisons(Vertx vertx) throws IOException {
+        String side = encode(new String(new char[300]));
+        for (int i = 0; i < 40; i++) {
+            comparisonDao.upsertSide(USER_ID, String.valueOf(i % 4), ComparisonDao.Side.LEFT, side).blockingGet();
+        }
+        comparisonDao.upsertSide(USER_ID, "3", ComparisonDao.Side.RIGHT, encode("Hi")).blockingGet();
+        int before = segments().size();
+
+        comparisonDao.compact().blockingAwait();
+        assertThat(segments().size(), lessThan(before));
+        assertThat(comparisonDao.get(USER_ID, "3").blockingGet().getRight(), equalTo(encode("Hi")));
+
+        comparisonDao.upsertSide(USER_ID, "4", ComparisonDao.Side.LEFT, encode("Ho")).blockingGet();
+        LogComparisonDao reopened = open(vertx);
+        for (int i = 0; i < 4; i++) {
+            Comparison comparison = reopened.get(USER_ID, String.valueOf(i)).blockingGet();
+            assertThat(comparison, notNullValue());
+            assertThat(comparison.getVersion(), equalTo(i == 3 ? 11L : 10L));
+            assertThat(comparison.getLeft(), equalTo(side));
+        }
+        assertThat(reopened.get(USER_ID, "4").blockingGet().getLeft(), equalTo(encode("Ho")));
+    }
+
+    @Test
+    @DisplayName("must not compact segments holding mostly live data")
+    void compact_whenMostlyLive_mustDoNothing() throws IOException {
+        String side = encode(new String(new char[300]));
+        for (int i = 0; i < 8; i++) {
+            comparisonDao.upsertSide(USER_ID, String.valueOf(i), ComparisonDao.Side.LEFT, side).blockingGet();
+        }
+        List<Path> before = segments();
+
+        comparisonDao.compact().blockingAwait();
+        assertThat(segments(), hasSize(before.size()));
+    }
+
+    private LogComparisonDao open(Vertx vertx) {
+        // A new DAO on the same directory, as if the service was restarted
+        LogComparisonDao dao = new LogComparisonDao(vertx, directory, SEGMENT_SIZE, 1L << 30, 0.5);
+        dao.initialize().blockingAwait();
+        return dao;
+    }
+
+    private List<Path> segments() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.sorted().collect(Collectors.toList());
+        }
+    }
+
+    private String encode(String data) {
+        return base64Encoder.encode(data);
+    }
+}
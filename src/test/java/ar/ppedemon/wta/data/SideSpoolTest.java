@@ -0,0 +1,81 @@
+package ar.ppedemon.wta.data;
+
+import com.google.common.hash.Hashing;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+
+@DisplayName("Side spool")
+class SideSpoolTest {
+
+    private static final byte[] SIDE = "A side long enough for being spooled".getBytes();
+    private static final byte[] OTHER_SIDE = "Another side long enough for being spooled".getBytes();
+
+    private Path directory;
+    private SideSpool spool;
+
+    @BeforeEach
+    void init() throws IOException {
+        directory = Files.createTempDirectory("spool");
+        directory.toFile().deleteOnExit();
+        spool = new SideSpool(directory, 16, 0L);
+    }
+
+    @Test
+    @DisplayName("must only spool sides at least as long as the threshold")
+    void spool_whenSmallSide_mustNotSpoolIt() {
+        byte[] small = "Small".getBytes();
+        spool.spool("u", "1", ComparisonDao.Side.LEFT, small, digest(small));
+        spool.spool("u", "1", ComparisonDao.Side.RIGHT, SIDE, digest(SIDE));
+
+        assertThat(spool.find(digest(small)).isPresent(), equalTo(false));
+        assertThat(spool.find(digest(SIDE)).isPresent(), equalTo(true));
+        assertThat(spool.spooled("u", "1"), equalTo(false));
+    }
+
+    @Test
+    @DisplayName("sweep must keep referenced sides, and remove sides replaced or released")
+    void sweep_always_mustRemoveUnreferencedSides() {
+        spool.spool("u", "1", ComparisonDao.Side.LEFT, SIDE, digest(SIDE));
+        spool.spool("u", "1", ComparisonDao.Side.RIGHT, SIDE, digest(SIDE));
+        spool.spool("u", "2", ComparisonDao.Side.LEFT, OTHER_SIDE, digest(OTHER_SIDE));
+        assertThat(spool.spooled("u", "1"), equalTo(true));
+        assertThat(spool.sweep(), equalTo(0));
+
+        // Still referenced by the right side
+        spool.spool("u", "1", ComparisonDao.Side.LEFT, OTHER_SIDE, digest(OTHER_SIDE));
+        assertThat(spool.sweep(), equalTo(0));
+
+        spool.release("u", "1");
+        assertThat(spool.sweep(), equalTo(1));
+        assertThat(spool.find(digest(SIDE)).isPresent(), equalTo(false));
+        assertThat(spool.find(digest(OTHER_SIDE)).isPresent(), equalTo(true));
+
+        spool.release("u", "2");
+        assertThat(spool.sweep(), equalTo(1));
+        assertThat(spool.find(digest(OTHER_SIDE)).isPresent(), equalTo(false));
+    }
+
+    @Test
+    @DisplayName("sweep must keep unreferenced sides during the grace period")
+    void sweep_whenGracePeriod_mustKeepUnreferencedSides() throws IOException {
+        spool = new SideSpool(directory, 16, 60000L);
+        spool.spool("u", "1", ComparisonDao.Side.LEFT, SIDE, digest(SIDE));
+        spool.release("u", "1");
+        Files.write(directory.resolve("unknown"), SIDE);
+
+        assertThat(spool.sweep(), equalTo(0));
+        assertThat(spool.find(digest(SIDE)).isPresent(), equalTo(true));
+    }
+
+    private String digest(byte[] data) {
+        return Hashing.sha256().hashBytes(data).toString();
+    }
+}
@@ -0,0 +1,87 @@
+package ar.ppedemon.wta.data;
+
+import ar.ppedemon.wta.model.Comparison;
+import ar.ppedemon.wta.util.Base64Encoder;
+import io.vertx.junit5.VertxExtension;
+import io.vertx.reactivex.core.Vertx;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.UUID;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.nullValue;
+
+@ExtendWith(VertxExtension.class)
+@DisplayName("Spooling comparison dao")
+class SpoolingComparisonDaoTest {
+
+    private static final String CMP_ID = "123";
+    private static final String USER_ID = UUID.randomUUID().toString();
+    private static final int THRESHOLD = 16;
+
+    private Base64Encoder base64Encoder = new Base64Encoder();
+    private SideSpool spool;
+    private SpoolingComparisonDao comparisonDao;
+
+    @BeforeEach
+    void init(Vertx vertx) throws IOException {
+        Path directory = Files.createTempDirectory("log");
+        directory.toFile().deleteOnExit();
+        Path spoolDirectory = Files.createTempDirectory("spool");
+        spoolDirectory.toFile().deleteOnExit();
+
+        spool = new SideSpool(spoolDirectory, THRESHOLD, 60000L);
+        LogComparisonDao delegate = new LogComparisonDao(vertx, directory, 1 << 20, 1L << 30, 0.5).spooled(spool);
+        comparisonDao = new SpoolingComparisonDao(delegate, spool, vertx);
+        comparisonDao.initialize().blockingAwait();
+    }
+
+    @Test
+    @DisplayName("must read comparisons without sides if both sides are spooled")
+    void get_whenSpooledSides_mustLeaveSidesOut() {
+        String side = encode("A side long enough for being spooled");
+        comparisonDao.upsertSide(USER_ID, CMP_ID, ComparisonDao.Side.LEFT, side).blockingGet();
+        comparisonDao.upsertSide(USER_ID, CMP_ID, ComparisonDao.Side.RIGHT, side).blockingGet();
+
+        Comparison comparison = comparisonDao.get(USER_ID, CMP_ID).blockingGet();
+        assertThat(comparison.valid(), equalTo(true));
+        assertThat(comparison.getLeft(), nullValue());
+        assertThat(comparison.getRight(), nullValue());
+        assertThat(spool.find(comparison.getLeftDigest()).isPresent(), equalTo(true));
+    }
+
+    @Test
+    @DisplayName("must read comparisons with sides unless both sides are spooled")
+    void get_whenSmallSide_mustReadSides() {
+        String side = encode("A side long enough for being spooled");
+        comparisonDao.upsertSide(USER_ID, CMP_ID, ComparisonDao.Side.LEFT, side).blockingGet();
+        comparisonDao.upsertSide(USER_ID, CMP_ID, ComparisonDao.Side.RIGHT, encode("Small")).blockingGet();
+
+        Comparison comparison = comparisonDao.get(USER_ID, CMP_ID).blockingGet();
+        assertThat(comparison.getLeft(), notNullValue());
+        assertThat(comparison.getRight(), equalTo(encode("Small")));
+    }
+
+    @Test
+    @DisplayName("deletion must release spooled sides")
+    void delete_always_mustReleaseSpooledSides() {
+        String side = encode("A side long enough for being spooled");
+        comparisonDao.upsertSide(USER_ID, CMP_ID, ComparisonDao.Side.LEFT, side).blockingGet();
+        comparisonDao.upsertSide(USER_ID, CMP_ID, ComparisonDao.Side.RIGHT, side).blockingGet();
+
+        comparisonDao.delete(USER_ID, CMP_ID).blockingGet();
+        assertThat(spool.spooled(USER_ID, CMP_ID), equalTo(false));
+    }
+
+    private String encode(String data) {
+        return base64Encoder.encode(data);
+    }
+}
@@ -2,8 +2,14 @@ package ar.ppedemon.wta.service;
 
 import ar.ppedemon.wta.comparator.Comparator;
 import ar.ppedemon.wta.data.ComparisonDao;
+import ar.ppedemon.wta.data.InMemoryComparisonDao;
 import ar.ppedemon.wta.model.Comparison;
+import ar.ppedemon.wta.model.ComparisonOptions;
 import ar.ppedemon.wta.model.ComparisonResult;
+import ar.ppedemon.wta.model.Edit;
+import ar.ppedemon.wta.model.Granularity;
+import ar.ppedemon.wta.model.SideChunks;
+import ar.ppedemon.wta.model.Span;
 import ar.ppedemon.wta.util.Base64Encoder;
 import com.google.common.collect.Lists;
 import io.reactivex.Maybe;
@@ -23,6 +29,7 @@ import java.util.concurrent.TimeUnit;
 
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.nullValue;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.*;
 
@@ -45,6 +52,11 @@ class PersistentComparisonServiceTest {
         this.comparisonDao = mock(ComparisonDao.class);
         this.comparator = mock(Comparator.class);
         this.comparisonService = new PersistentComparisonService(comparisonDao, comparator, vertx);
+
+        when(comparisonDao.upsertSide(anyString(), anyString(), any(ComparisonDao.Side.class), anyString()))
+                .thenReturn(Single.just(true));
+        when(comparisonDao.delete(anyString(), anyString())).thenReturn(Single.just(true));
+        when(comparisonDao.getWithoutSides(anyString(), anyString())).thenCallRealMethod();
     }
 
     @Test
@@ -85,11 +97,19 @@ class PersistentComparisonServiceTest {
         assertThat(values.get(1), equalTo(CMP_ID));
     }
 
+    @Test
+    @DisplayName("must get comparison status from dao")
+    void status_always_mustInvokeDaoCorrectly() {
+        comparisonService.status(USER_ID, CMP_ID);
+        verify(comparisonDao).status(USER_ID, CMP_ID);
+        verify(comparisonDao, never()).get(anyString(), anyString());
+    }
+
     @Test
     @DisplayName("return empty computation when comparing on non-existing comparison")
     void comparing_nonExistingComparison_mustReturnEmpty() {
         when(comparisonDao.get(anyString(), anyString())).thenReturn(Maybe.empty());
-        Maybe<ResultWrapper<ComparisonResult>> result = comparisonService.compare(USER_ID, CMP_ID);
+        Maybe<ResultWrapper<ComparisonResult>> result = comparisonService.compare(USER_ID, CMP_ID, ComparisonOptions.full());
         result.test().assertNoValues();
     }
 
@@ -99,7 +119,7 @@ class PersistentComparisonServiceTest {
         when(comparisonDao.get(anyString(), anyString()))
                 .thenReturn(Maybe.just(new Comparison(CMP_ID, USER_ID).setLeft("abc")));
 
-        Maybe<ResultWrapper<ComparisonResult>> result = comparisonService.compare(USER_ID, CMP_ID);
+        Maybe<ResultWrapper<ComparisonResult>> result = comparisonService.compare(USER_ID, CMP_ID, ComparisonOptions.full());
         result.test().assertValue(ResultWrapper::fail);
     }
 
@@ -112,12 +132,12 @@ class PersistentComparisonServiceTest {
                         .setRight("abc")
                         .setResult(new ComparisonResult(ComparisonResult.Status.EQUAL, Lists.newArrayList()))));
 
-        Maybe<ResultWrapper<ComparisonResult>> result = comparisonService.compare(USER_ID, CMP_ID);
+        Maybe<ResultWrapper<ComparisonResult>> result = comparisonService.compare(USER_ID, CMP_ID, ComparisonOptions.full());
         result.test()
                 .assertValue(ResultWrapper::success)
                 .assertValue(wrapper -> wrapper.result().isEqual());
 
-        verify(comparator, never()).compare(any(Comparison.class));
+        verify(comparator, never()).compare(any(Comparison.class), any(ComparisonOptions.class));
     }
 
     @Test
@@ -131,23 +151,275 @@ class PersistentComparisonServiceTest {
         when(comparisonDao.updateResult(any(Comparison.class), any(ComparisonResult.class)))
                 .thenReturn(Single.just(true));
 
-        when(comparator.compare(any(Comparison.class)))
+        when(comparator.compare(any(Comparison.class), any(ComparisonOptions.class)))
                 .thenReturn(new ComparisonResult(ComparisonResult.Status.EQUAL, Lists.newArrayList()));
 
-        Maybe<ResultWrapper<ComparisonResult>> result = comparisonService.compare(USER_ID, CMP_ID);
+        Maybe<ResultWrapper<ComparisonResult>> result = comparisonService.compare(USER_ID, CMP_ID, ComparisonOptions.full());
         result.test()
                 //Wait for computation completion, since compare is called outside the event loop
                 .awaitDone(5, TimeUnit.SECONDS)
                 .assertValue(ResultWrapper::success)
                 .assertValue(wrapper -> wrapper.result().isEqual());
 
-        verify(comparator, times(1)).compare(any(Comparison.class));
+        verify(comparator, times(1)).compare(any(Comparison.class), any(ComparisonOptions.class));
 
         verify(comparisonDao, times(1)).updateResult(
                 any(Comparison.class),
                 any(ComparisonResult.class));
     }
 
+    @Test
+    @DisplayName("comparison with chunked sides must be computed")
+    void comparing_whenChunkedSides_mustInvokeComparator() {
+        when(comparisonDao.get(anyString(), anyString()))
+                .thenReturn(Maybe.just(new Comparison(CMP_ID, USER_ID)
+                        .setLeft("abc")
+                        .setRightChunks(new SideChunks(1 << 23, 1 << 20))));
+
+        when(comparisonDao.updateResult(any(Comparison.class), any(ComparisonResult.class)))
+                .thenReturn(Single.just(true));
+
+        when(comparator.compare(any(Comparison.class), any(ComparisonOptions.class)))
+                .thenReturn(new ComparisonResult(ComparisonResult.Status.DIFFERENT_LENGTH, Lists.newArrayList()));
+
+        Maybe<ResultWrapper<ComparisonResult>> result = comparisonService.compare(USER_ID, CMP_ID, ComparisonOptions.full());
+        result.test()
+                .awaitDone(5, TimeUnit.SECONDS)
+                .assertValue(ResultWrapper::success);
+
+        verify(comparator, times(1)).compare(any(Comparison.class), any(ComparisonOptions.class));
+    }
+
+    @Test
+    @DisplayName("comparison with equal digests must be equal without invoking comparator")
+    void comparing_whenEqualDigests_mustNotInvokeComparator() {
+        when(comparisonDao.get(anyString(), anyString()))
+                .thenReturn(Maybe.just(new Comparison(CMP_ID, USER_ID)
+                        .setLeft("abc")
+                        .setRight("abc")
+                        .setLeftDigest("digest")
+                        .setRightDigest("digest")));
+
+        when(comparisonDao.updateResult(any(Comparison.class), any(ComparisonResult.class)))
+                .thenReturn(Single.just(true));
+
+        Maybe<ResultWrapper<ComparisonResult>> result = comparisonService.compare(USER_ID, CMP_ID, ComparisonOptions.full());
+        result.test()
+                .assertValue(ResultWrapper::success)
+                .assertValue(wrapper -> wrapper.result().isEqual());
+
+        verify(comparator, never()).compare(any(Comparison.class), any(ComparisonOptions.class));
+        verify(comparisonDao, times(1)).updateResult(any(Comparison.class), any(ComparisonResult.class));
+    }
+
+    @Test
+    @DisplayName("comparison with equal digests must be answered without reading sides")
+    void comparing_whenEqualDigests_mustNotReadSides() {
+        when(comparisonDao.getWithoutSides(anyString(), anyString()))
+                .thenReturn(Maybe.just(new Comparison(CMP_ID, USER_ID)
+                        .setLeftDigest("digest")
+                        .setRightDigest("digest")));
+
+        when(comparisonDao.updateResult(any(Comparison.class), any(ComparisonResult.class)))
+                .thenReturn(Single.just(true));
+
+        comparisonService.compare(USER_ID, CMP_ID, ComparisonOptions.full()).test()
+                .assertValue(ResultWrapper::success)
+                .assertValue(wrapper -> wrapper.result().isEqual());
+
+        verify(comparisonDao, never()).get(anyString(), anyString());
+        verify(comparator, never()).compare(any(Comparison.class), any(ComparisonOptions.class));
+    }
+
+    @Test
+    @DisplayName("comparison with different digests must read sides for the comparator")
+    void comparing_whenDifferentDigests_mustReadSides() {
+        when(comparisonDao.getWithoutSides(anyString(), anyString()))
+                .thenReturn(Maybe.just(new Comparison(CMP_ID, USER_ID)
+                        .setLeftDigest("digest")
+                        .setRightDigest("other")));
+        when(comparisonDao.get(anyString(), anyString()))
+                .thenReturn(Maybe.just(new Comparison(CMP_ID, USER_ID)
+                        .setLeft("abc")
+                        .setRight("abd")
+                        .setLeftDigest("digest")
+                        .setRightDigest("other")));
+
+        when(comparisonDao.updateResult(any(Comparison.class), any(ComparisonResult.class)))
+                .thenReturn(Single.just(true));
+        when(comparator.compare(any(Comparison.class), any(ComparisonOptions.class)))
+                .thenReturn(new ComparisonResult(ComparisonResult.Status.EQUAL_LENGTH, Lists.newArrayList()));
+
+        comparisonService.compare(USER_ID, CMP_ID, ComparisonOptions.full()).test()
+                .awaitDone(5, TimeUnit.SECONDS)
+                .assertValue(ResultWrapper::success);
+
+        ArgumentCaptor<Comparison> captor = ArgumentCaptor.forClass(Comparison.class);
+        verify(comparator, times(1)).compare(captor.capture(), any(ComparisonOptions.class));
+        assertThat(captor.getValue().getLeft(), equalTo("abc"));
+    }
+
+    @Test
+    @DisplayName("comparison with equal digests must report a zero Hamming distance iif comparator counts bits")
+    void comparing_whenEqualDigestsAndBitCounts_mustReportZeroHammingDistance() {
+        when(comparisonDao.get(anyString(), anyString()))
+                .thenReturn(Maybe.just(new Comparison(CMP_ID, USER_ID)
+                        .setLeft("abc")
+                        .setRight("abc")
+                        .setLeftDigest("digest")
+                        .setRightDigest("digest")));
+
+        when(comparisonDao.updateResult(any(Comparison.class), any(ComparisonResult.class)))
+                .thenReturn(Single.just(true));
+
+        comparisonService.compare(USER_ID, CMP_ID, ComparisonOptions.full()).test()
+                .assertValue(wrapper -> wrapper.result().getHammingDistance() == null);
+
+        when(comparator.countsBits()).thenReturn(true);
+        comparisonService.compare(USER_ID, CMP_ID, ComparisonOptions.full()).test()
+                .assertValue(wrapper -> Long.valueOf(0L).equals(wrapper.result().getHammingDistance()));
+    }
+
+    @Test
+    @DisplayName("cached comparison must be restricted to the given options")
+    void comparing_whenCachedComparisonAndBoundedOptions_mustRestrictResult() {
+        when(comparisonDao.get(anyString(), anyString()))
+                .thenReturn(Maybe.just(new Comparison(CMP_ID, USER_ID)
+                        .setLeft("abc")
+                        .setRight("abd")
+                        .setResult(new ComparisonResult(
+                                ComparisonResult.Status.EQUAL_LENGTH,
+                                Lists.newArrayList(new Span(0, 1), new Span(2, 1))))));
+
+        Maybe<ResultWrapper<ComparisonResult>> result = comparisonService.compare(
+                USER_ID, CMP_ID, new ComparisonOptions(false, 1, Integer.MAX_VALUE));
+        result.test()
+                .assertValue(ResultWrapper::success)
+                .assertValue(wrapper -> wrapper.result().getDifferences().size() == 1)
+                .assertValue(wrapper -> wrapper.result().isTruncated());
+
+        verify(comparator, never()).compare(any(Comparison.class), any(ComparisonOptions.class));
+    }
+
+    @Test
+    @DisplayName("truncated comparison result must not be stored")
+    void comparing_whenTruncatedResult_mustNotUpdateResult() {
+        when(comparisonDao.get(anyString(), anyString()))
+                .thenReturn(Maybe.just(new Comparison(CMP_ID, USER_ID)
+                        .setLeft("abc")
+                        .setRight("abd")));
+
+        when(comparator.compare(any(Comparison.class), any(ComparisonOptions.class)))
+                .thenReturn(new ComparisonResult(
+                        ComparisonResult.Status.EQUAL_LENGTH, Lists.newArrayList(), null, true));
+
+        Maybe<ResultWrapper<ComparisonResult>> result = comparisonService.compare(
+                USER_ID, CMP_ID, new ComparisonOptions(true, Integer.MAX_VALUE, Integer.MAX_VALUE));
+        result.test()
+                .awaitDone(5, TimeUnit.SECONDS)
+                .assertValue(ResultWrapper::success)
+                .assertValue(wrapper -> wrapper.result().isTruncated());
+
+        verify(comparisonDao, never()).updateResult(any(Comparison.class), any(ComparisonResult.class));
+    }
+
+    @Test
+    @DisplayName("line comparison must ignore cached byte result and must not be stored")
+    void comparing_whenLineGranularity_mustComputeAndNotUpdateResult() {
+        when(comparisonDao.get(anyString(), anyString()))
+                .thenReturn(Maybe.just(new Comparison(CMP_ID, USER_ID)
+                        .setLeft("abc")
+                        .setRight("abd")
+                        .setResult(new ComparisonResult(
+                                ComparisonResult.Status.EQUAL_LENGTH,
+                                Lists.newArrayList(new Span(2, 1))))));
+
+        when(comparator.compare(any(Comparison.class), any(ComparisonOptions.class)))
+                .thenReturn(new ComparisonResult(
+                        ComparisonResult.Status.EQUAL_LENGTH,
+                        Lists.newArrayList(new Span(0, 3)),
+                        Lists.newArrayList(Edit.of(0, 3, 0, 3))));
+
+        Maybe<ResultWrapper<ComparisonResult>> result = comparisonService.compare(
+                USER_ID, CMP_ID, new ComparisonOptions(false, Integer.MAX_VALUE, Integer.MAX_VALUE, Granularity.LINE));
+        result.test()
+                .awaitDone(5, TimeUnit.SECONDS)
+                .assertValue(ResultWrapper::success)
+                .assertValue(wrapper -> wrapper.result().getEdits().size() == 1);
+
+        verify(comparator, times(1)).compare(any(Comparison.class), any(ComparisonOptions.class));
+        verify(comparisonDao, never()).updateResult(any(Comparison.class), any(ComparisonResult.class));
+    }
+
+    @Test
+    @DisplayName("cached result must be returned without reading comparison")
+    void comparing_whenResultCached_mustNotReadComparison(Vertx vertx) {
+        comparisonService = new PersistentComparisonService(comparisonDao, comparator, vertx, new ResultCache(1 << 20));
+        when(comparisonDao.get(anyString(), anyString()))
+                .thenReturn(Maybe.just(new Comparison(CMP_ID, USER_ID)
+                        .setLeft("abc")
+                        .setRight("abc")
+                        .setVersion(2)
+                        .setResult(new ComparisonResult(ComparisonResult.Status.EQUAL, Lists.newArrayList()))));
+
+        comparisonService.compare(USER_ID, CMP_ID, ComparisonOptions.full()).test().assertValue(ResultWrapper::success);
+        comparisonService.compare(USER_ID, CMP_ID, ComparisonOptions.full())
+                .test()
+                .assertValue(ResultWrapper::success)
+                .assertValue(wrapper -> wrapper.result().isEqual());
+
+        verify(comparisonDao, times(1)).get(anyString(), anyString());
+    }
+
+    @Test
+    @DisplayName("upserting or deleting must invalidate cached result")
+    void comparing_whenChangedAfterCaching_mustReadComparison(Vertx vertx) {
+        comparisonService = new PersistentComparisonService(comparisonDao, comparator, vertx, new ResultCache(1 << 20));
+        when(comparisonDao.get(anyString(), anyString()))
+                .thenReturn(Maybe.just(new Comparison(CMP_ID, USER_ID)
+                        .setLeft("abc")
+                        .setRight("abc")
+                        .setVersion(2)
+                        .setResult(new ComparisonResult(ComparisonResult.Status.EQUAL, Lists.newArrayList()))));
+
+        comparisonService.compare(USER_ID, CMP_ID, ComparisonOptions.full()).test().assertValue(ResultWrapper::success);
+        comparisonService.upsertRight(USER_ID, CMP_ID, base64Encoder.encode("Hi")).test().assertValue(true);
+        comparisonService.compare(USER_ID, CMP_ID, ComparisonOptions.full()).test().assertValue(ResultWrapper::success);
+        comparisonService.delete(USER_ID, CMP_ID).test().assertValue(true);
+        comparisonService.compare(USER_ID, CMP_ID, ComparisonOptions.full()).test().assertValue(ResultWrapper::success);
+
+        verify(comparisonDao, times(3)).get(anyString(), anyString());
+    }
+
+    @Test
+    @DisplayName("evicting a comparison from memory must invalidate cached result")
+    void comparing_whenEvictedAfterCaching_mustReturnEmpty(Vertx vertx) {
+        String side = base64Encoder.encode(new String(new char[3000]));
+        ResultCache resultCache = new ResultCache(1 << 20);
+        InMemoryComparisonDao memoryDao = new InMemoryComparisonDao(vertx, 3 * side.length())
+                .evicted(resultCache::invalidate);
+        comparisonService = new PersistentComparisonService(memoryDao, comparator, vertx, resultCache);
+
+        comparisonService.upsertLeft(USER_ID, CMP_ID, side).blockingGet();
+        comparisonService.upsertRight(USER_ID, CMP_ID, side).blockingGet();
+        comparisonService.compare(USER_ID, CMP_ID, ComparisonOptions.full()).test().assertValue(ResultWrapper::success);
+        assertThat(resultCache.get(USER_ID, CMP_ID).isEqual(), equalTo(true));
+
+        // Least recently used, so evicted when storing another comparison exceeds the bound
+        comparisonService.upsertLeft(USER_ID, "other", side).blockingGet();
+        assertThat(memoryDao.get(USER_ID, CMP_ID).blockingGet(), nullValue());
+        comparisonService.compare(USER_ID, CMP_ID, ComparisonOptions.full()).test().assertNoValues().assertComplete();
+    }
+
+    @Test
+    @DisplayName("readiness must be checked by dao")
+    void ready_always_mustInvokeDao() {
+        when(comparisonDao.ready()).thenReturn(Single.just(false));
+
+        comparisonService.ready().test().assertValue(false);
+        verify(comparisonDao, times(1)).ready();
+    }
+
     @Test
     @DisplayName("deletion must invoke correctly dao deletion")
     void deletion_always_mustInvokeDaoCorrectly() {